@@ -1,5 +1,6 @@
 package io.jmix.ai.backend;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -24,10 +25,24 @@ public class AsyncConfig implements WebMvcConfigurer {
         configurer.setTaskExecutor(executor);
     }
 
+    /**
+     * Runs the blocking parts of chat streams (memory reads, tool execution, reranker calls).
+     * By default every stream gets its own virtual thread, and the number of concurrent streams is
+     * bounded by {@code chat.streaming.max-concurrent} (see {@code StreamConcurrencyLimiter})
+     * instead of by a thread count. {@code chat.streaming.virtual-threads=false} restores the
+     * fixed pool of {@code chat.streaming.threads} platform threads.
+     */
     @Bean("streamingScheduler")
-    public Scheduler streamingScheduler() {
+    public Scheduler streamingScheduler(@Value("${chat.streaming.virtual-threads:true}") boolean virtualThreads,
+                                        @Value("${chat.streaming.threads:8}") int threads) {
+        if (virtualThreads) {
+            return Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("streaming-", 0).factory()),
+                    "streaming"
+            );
+        }
         return Schedulers.fromExecutorService(
-                Executors.newFixedThreadPool(8, r -> {
+                Executors.newFixedThreadPool(threads, r -> {
                     Thread t = new Thread(r);
                     t.setName("streaming-" + t.threadId());
                     t.setDaemon(true);
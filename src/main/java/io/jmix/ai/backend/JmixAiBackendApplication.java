@@ -4,10 +4,16 @@ import com.google.common.base.Strings;
 import com.vaadin.flow.component.page.AppShellConfigurator;
 import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.theme.Theme;
+import io.jmix.ai.backend.chat.CachingChatMemoryRepository;
+import io.jmix.ai.backend.cluster.ClusterNotifications;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
 import org.springframework.ai.chat.memory.repository.jdbc.PostgresChatMemoryRepositoryDialect;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
@@ -20,6 +26,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
+import java.time.Duration;
 
 @Push
 @Theme(value = "jmix-ai-backend")
@@ -55,6 +62,27 @@ public class JmixAiBackendApplication implements AppShellConfigurator {
                 .build();
     }
 
+    @Bean
+    @Primary
+    CachingChatMemoryRepository cachingChatMemoryRepository(
+            JdbcChatMemoryRepository jdbcChatMemoryRepository,
+            ClusterNotifications clusterNotifications,
+            MeterRegistry meterRegistry,
+            @Value("${chat.memory.cache.max-conversations:5000}") int maxConversations,
+            @Value("${chat.memory.cache.ttl:30m}") Duration ttl,
+            @Value("${chat.memory.cache.flush-interval:100ms}") Duration flushInterval) {
+        return new CachingChatMemoryRepository(jdbcChatMemoryRepository, clusterNotifications, meterRegistry,
+                maxConversations, ttl, flushInterval);
+    }
+
+    @Bean
+    ChatMemory chatMemory(CachingChatMemoryRepository cachingChatMemoryRepository) {
+        return MessageWindowChatMemory.builder()
+                .chatMemoryRepository(cachingChatMemoryRepository)
+                .maxMessages(10)
+                .build();
+    }
+
     @EventListener
     public void printApplicationUrl(final ApplicationStartedEvent event) {
         LoggerFactory.getLogger(JmixAiBackendApplication.class).info("Application started at "
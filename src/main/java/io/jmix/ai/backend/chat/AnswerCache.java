@@ -0,0 +1,318 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.entity.JmixVersion;
+import io.jmix.ai.backend.entity.Parameters;
+import io.jmix.ai.backend.vectorstore.CorpusGeneration;
+import io.jmix.core.event.EntityChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Answers to first-turn questions, reused for repeated questions when the client sends
+ * {@code cache_enabled: true}.
+ * <p>
+ * The exact layer is keyed by the normalized question (case, whitespace and trailing punctuation
+ * ignored), the Jmix version and the parameters version. The optional semantic layer
+ * ({@code chat.answer-cache.semantic.enabled}) embeds the question and reuses the answer of a
+ * cached question of the same Jmix and parameters versions whose embedding has a cosine
+ * similarity of at least {@code chat.answer-cache.semantic.min-similarity}.
+ * <p>
+ * Only questions without conversation history are cached and answered: a follow-up depends on
+ * its conversation. A served answer is recorded in the conversation memory, so follow-ups work
+ * as usual. All entries are dropped when the corpus generation moves or a {@link Parameters}
+ * entity changes; entries also expire after {@code chat.answer-cache.ttl}. Counter
+ * {@code jmix.ai.chat.answer.cache} reports lookups by result (exact, semantic, miss).
+ */
+@Component
+public class AnswerCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AnswerCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.]+$");
+
+    public record CachedAnswer(String text, List<String> sources) {
+    }
+
+    private record Key(String question, String jmixVersion, String parametersVersion) {
+    }
+
+    private record Entry(CachedAnswer answer, @Nullable float[] embedding, long expiresAtNanos) {
+    }
+
+    /**
+     * Result of {@link #lookup}: the cached answer if there was a hit, and what is needed to
+     * {@link #store} the answer otherwise.
+     */
+    public static final class Lookup {
+
+        private final Key key;
+        private final long generation;
+        @Nullable
+        private final float[] embedding;
+        @Nullable
+        private final CachedAnswer answer;
+
+        private Lookup(Key key, long generation, @Nullable float[] embedding, @Nullable CachedAnswer answer) {
+            this.key = key;
+            this.generation = generation;
+            this.embedding = embedding;
+            this.answer = answer;
+        }
+
+        @Nullable
+        public CachedAnswer getAnswer() {
+            return answer;
+        }
+    }
+
+    private final ChatMemory chatMemory;
+    private final EmbeddingModel embeddingModel;
+    private final CorpusGeneration corpusGeneration;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final boolean semanticEnabled;
+    private final double minSimilarity;
+
+    // access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long filledAtGeneration;
+
+    private final Counter exactHits;
+    private final Counter semanticHits;
+    private final Counter misses;
+
+    public AnswerCache(ChatMemory chatMemory,
+                       EmbeddingModel embeddingModel,
+                       CorpusGeneration corpusGeneration,
+                       MeterRegistry meterRegistry,
+                       @Value("${chat.answer-cache.enabled:true}") boolean enabled,
+                       @Value("${chat.answer-cache.max-entries:2000}") int maxEntries,
+                       @Value("${chat.answer-cache.ttl:24h}") Duration ttl,
+                       @Value("${chat.answer-cache.semantic.enabled:false}") boolean semanticEnabled,
+                       @Value("${chat.answer-cache.semantic.min-similarity:0.95}") double minSimilarity) {
+        this.chatMemory = chatMemory;
+        this.embeddingModel = embeddingModel;
+        this.corpusGeneration = corpusGeneration;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.semanticEnabled = semanticEnabled;
+        this.minSimilarity = minSimilarity;
+        this.filledAtGeneration = corpusGeneration.get();
+
+        exactHits = counter(meterRegistry, "exact", "Questions answered from the cache by exact match");
+        semanticHits = counter(meterRegistry, "semantic", "Questions answered from the cache by embedding similarity");
+        misses = counter(meterRegistry, "miss", "Cacheable questions not found in the cache");
+        Gauge.builder("jmix.ai.chat.answer.cache.size", this, AnswerCache::size)
+                .description("Answers currently held in the answer cache")
+                .register(meterRegistry);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("jmix.ai.chat.answer.cache")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Looks up an answer for the question. Returns null when the question is not cacheable:
+     * caching is disabled or the conversation already has history.
+     */
+    @Nullable
+    public Lookup lookup(String question, @Nullable String conversationId, JmixVersion jmixVersion,
+                         String parametersVersion) {
+        if (!enabled || !isFirstTurn(conversationId)) {
+            return null;
+        }
+        Key key = new Key(normalize(question), jmixVersion.getId(), parametersVersion);
+        long generation = corpusGeneration.get();
+        Entry exact = get(key);
+        if (exact != null) {
+            exactHits.increment();
+            return new Lookup(key, generation, exact.embedding(), exact.answer());
+        }
+        float[] embedding = null;
+        if (semanticEnabled) {
+            try {
+                embedding = embeddingModel.embed(key.question());
+            } catch (RuntimeException e) {
+                log.warn("Failed to embed the question for the semantic answer cache", e);
+            }
+            CachedAnswer similar = embedding != null ? findSimilar(key, embedding) : null;
+            if (similar != null) {
+                semanticHits.increment();
+                return new Lookup(key, generation, embedding, similar);
+            }
+        }
+        misses.increment();
+        return new Lookup(key, generation, embedding, null);
+    }
+
+    /**
+     * Caches the answer produced after a missed {@link #lookup}.
+     */
+    public void store(Lookup lookup, CachedAnswer answer) {
+        if (lookup.answer != null || answer.text().isBlank()
+                // answered from the corpus as it was before the change
+                || lookup.generation != corpusGeneration.get()) {
+            return;
+        }
+        synchronized (entries) {
+            checkGeneration();
+            entries.put(lookup.key, new Entry(answer, lookup.embedding, System.nanoTime() + ttl.toNanos()));
+            if (entries.size() > maxEntries) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Passes the stream through and, if it completes normally, caches its answer and sources.
+     */
+    public Flux<StreamingEvent> storing(Lookup lookup, Flux<StreamingEvent> stream) {
+        StringBuilder text = new StringBuilder();
+        List<String> sources = new ArrayList<>();
+        return stream
+                .doOnNext(event -> {
+                    switch (event.value()) {
+                        case EventStreamValueHolder.Content content -> text.append(content.text());
+                        case EventStreamValueHolder.Metadata metadata -> sources.add(metadata.source());
+                        default -> {
+                        }
+                    }
+                })
+                .doOnComplete(() -> store(lookup, new CachedAnswer(text.toString(), List.copyOf(sources))));
+    }
+
+    /**
+     * Records a question answered from the cache in the conversation memory, as a model call would.
+     */
+    public void recordExchange(@Nullable String conversationId, String question, CachedAnswer answer) {
+        if (conversationId != null) {
+            chatMemory.add(conversationId, List.of(new UserMessage(question), new AssistantMessage(answer.text())));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onParametersChanged(EntityChangedEvent<Parameters> event) {
+        // answers of the previous version can no longer match; free the memory right away
+        clear();
+    }
+
+    public static String normalize(String question) {
+        String collapsed = WHITESPACE.matcher(question.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+
+    private boolean isFirstTurn(@Nullable String conversationId) {
+        return conversationId == null || chatMemory.get(conversationId).isEmpty();
+    }
+
+    @Nullable
+    private Entry get(Key key) {
+        synchronized (entries) {
+            checkGeneration();
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    @Nullable
+    private CachedAnswer findSimilar(Key key, float[] embedding) {
+        synchronized (entries) {
+            checkGeneration();
+            CachedAnswer best = null;
+            double bestSimilarity = minSimilarity;
+            for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Key, Entry> candidate = it.next();
+                Entry entry = candidate.getValue();
+                if (isExpired(entry)) {
+                    it.remove();
+                    continue;
+                }
+                if (entry.embedding() == null
+                        || !candidate.getKey().jmixVersion().equals(key.jmixVersion())
+                        || !candidate.getKey().parametersVersion().equals(key.parametersVersion())) {
+                    continue;
+                }
+                double similarity = cosineSimilarity(embedding, entry.embedding());
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    best = entry.answer();
+                }
+            }
+            return best;
+        }
+    }
+
+    // must hold the entries lock
+    private void checkGeneration() {
+        long current = corpusGeneration.get();
+        if (current != filledAtGeneration) {
+            log.debug("Corpus generation changed, dropping {} cached answers", entries.size());
+            entries.clear();
+            filledAtGeneration = current;
+        }
+    }
+
+    private static boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.expiresAtNanos() > 0;
+    }
+
+    static double cosineSimilarity(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0.0;
+        }
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0.0 || normB == 0.0 ? 0.0 : dot / Math.sqrt(normA * normB);
+    }
+}
@@ -0,0 +1,116 @@
+package io.jmix.ai.backend.chat;
+
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sums the cached prompt tokens OpenAI reports for the model calls of one chat request.
+ * <p>
+ * Spring AI adds up prompt and completion tokens over tool-calling rounds but drops the
+ * provider-specific usage details on the way, so {@link UsageTrackingOpenAiApi} reports every
+ * call to the counter of the current request: found in a thread-local for blocking calls
+ * ({@link #call}) and in the Reactor context for streams ({@link #stream}).
+ * <p>
+ * The prompt and completion tokens of each call are summed as well. Spring AI reports its total
+ * only with the last chunk of a stream, so a stream cancelled before then has nothing else to
+ * tell what the finished rounds, such as the turn that called the tools, used. The text streamed
+ * since the last reported usage belongs to the round still running and is counted in characters.
+ */
+public final class CachedTokensCounter {
+
+    private static final String CONTEXT_KEY = CachedTokensCounter.class.getName();
+    private static final ThreadLocal<CachedTokensCounter> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger tokens = new AtomicInteger();
+    private final AtomicInteger promptTokens = new AtomicInteger();
+    private final AtomicInteger completionTokens = new AtomicInteger();
+    private final AtomicInteger unreportedChars = new AtomicInteger();
+
+    public int get() {
+        return tokens.get();
+    }
+
+    /** Prompt tokens of the model calls that reported their usage. */
+    public int getPromptTokens() {
+        return promptTokens.get();
+    }
+
+    /** Completion tokens of the model calls that reported their usage. */
+    public int getCompletionTokens() {
+        return completionTokens.get();
+    }
+
+    /** Characters streamed by a model call that has not reported its usage yet. */
+    public int getUnreportedChars() {
+        return unreportedChars.get();
+    }
+
+    void add(@Nullable OpenAiApi.Usage usage) {
+        tokens.addAndGet(cachedTokens(usage));
+        if (usage != null) {
+            promptTokens.addAndGet(usage.promptTokens() != null ? usage.promptTokens() : 0);
+            completionTokens.addAndGet(usage.completionTokens() != null ? usage.completionTokens() : 0);
+        }
+    }
+
+    /** Counts a chunk of a streamed call: its text until the call reports its usage, then the usage. */
+    void add(OpenAiApi.ChatCompletionChunk chunk) {
+        if (chunk.usage() != null) {
+            add(chunk.usage());
+            unreportedChars.set(0);
+            return;
+        }
+        if (chunk.choices() != null) {
+            for (OpenAiApi.ChatCompletionChunk.ChunkChoice choice : chunk.choices()) {
+                if (choice.delta() != null && choice.delta().content() != null) {
+                    unreportedChars.addAndGet(choice.delta().content().length());
+                }
+            }
+        }
+    }
+
+    /** Runs a blocking model call, counting the cached tokens of every round it makes. */
+    public <T> T call(Supplier<T> action) {
+        CachedTokensCounter previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /** Makes the counter visible to the model calls of a stream, including tool-calling rounds. */
+    public <T> Flux<T> stream(Flux<T> stream) {
+        return stream.contextWrite(context -> context.put(CONTEXT_KEY, this));
+    }
+
+    @Nullable
+    static CachedTokensCounter current() {
+        return CURRENT.get();
+    }
+
+    @Nullable
+    static CachedTokensCounter from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    /** {@code usage.prompt_tokens_details.cached_tokens}, or 0 when not reported. */
+    static int cachedTokens(@Nullable OpenAiApi.Usage usage) {
+        if (usage != null
+                && usage.promptTokensDetails() != null
+                && usage.promptTokensDetails().cachedTokens() != null) {
+            return usage.promptTokensDetails().cachedTokens();
+        }
+        return 0;
+    }
+}
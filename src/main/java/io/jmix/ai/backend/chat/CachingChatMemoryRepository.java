@@ -0,0 +1,229 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.cluster.ClusterNotifications;
+import io.jmix.core.UuidProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the message windows of active conversations in memory in front of a JDBC repository.
+ * <p>
+ * {@link org.springframework.ai.chat.memory.MessageWindowChatMemory} reads the whole window and
+ * saves it back on every message, so a turn costs several queries and two rewrites. Here reads of
+ * a cached conversation never reach the database, and saves update the cache and mark the
+ * conversation dirty: a background flush writes only the latest window of each dirty
+ * conversation, every {@code chat.memory.cache.flush-interval}, so the two saves of a turn
+ * collapse into one write. Until the flush a dirty window is always served from memory.
+ * <p>
+ * The cache holds at most {@code chat.memory.cache.max-conversations} conversations, each for at
+ * most {@code chat.memory.cache.ttl} since it was last loaded or saved. After a flush, other
+ * nodes are told via {@link ClusterNotifications} to drop their copy of the conversation, so a
+ * conversation whose turns land on different nodes stays consistent.
+ */
+public class CachingChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingChatMemoryRepository.class);
+
+    static final String CHANNEL = "chat_memory_changed";
+
+    private record Entry(List<Message> messages, long expiresAtNanos) {
+    }
+
+    private final ChatMemoryRepository delegate;
+    private final ClusterNotifications clusterNotifications;
+    private final int maxConversations;
+    private final Duration ttl;
+    // identifies this node's notifications, which must not evict its own fresh entries
+    private final String nodeId = UuidProvider.createUuid().toString();
+
+    // access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // latest unsaved window per conversation
+    private final Map<String, List<Message>> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingChatMemoryRepository(ChatMemoryRepository delegate,
+                                       ClusterNotifications clusterNotifications,
+                                       MeterRegistry meterRegistry,
+                                       int maxConversations,
+                                       Duration ttl,
+                                       Duration flushInterval) {
+        this.delegate = delegate;
+        this.clusterNotifications = clusterNotifications;
+        this.maxConversations = maxConversations;
+        this.ttl = ttl;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-memory-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        clusterNotifications.subscribe(CHANNEL, this::onRemoteChange, this::evictClean);
+
+        hits = Counter.builder("jmix.ai.chat.memory.cache")
+                .description("Conversation reads served from memory")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("jmix.ai.chat.memory.cache")
+                .description("Conversation reads that went to the database")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.chat.memory.cache.dirty", dirty, Map::size)
+                .description("Conversations with saved messages not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        flush();
+        return delegate.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Message> pending = dirty.get(conversationId);
+        if (pending != null) {
+            hits.increment();
+            return pending;
+        }
+        synchronized (cache) {
+            Entry entry = cache.get(conversationId);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos() < 0) {
+                    hits.increment();
+                    return entry.messages();
+                }
+                cache.remove(conversationId);
+            }
+        }
+        misses.increment();
+        List<Message> messages = List.copyOf(delegate.findByConversationId(conversationId));
+        synchronized (cache) {
+            // a save that raced with the load is newer: keep it
+            if (!dirty.containsKey(conversationId) && !cache.containsKey(conversationId)) {
+                put(conversationId, messages);
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        List<Message> window = List.copyOf(messages);
+        synchronized (cache) {
+            dirty.put(conversationId, window);
+            put(conversationId, window);
+        }
+    }
+
+    /**
+     * Takes the flush lock: a flush that has already read the dirty window would otherwise write
+     * it back after the rows are deleted.
+     */
+    @Override
+    public synchronized void deleteByConversationId(String conversationId) {
+        synchronized (cache) {
+            dirty.remove(conversationId);
+            cache.remove(conversationId);
+        }
+        delegate.deleteByConversationId(conversationId);
+        clusterNotifications.publish(CHANNEL, nodeId + ":" + conversationId);
+    }
+
+    /**
+     * Writes the latest window of every dirty conversation. Excludes
+     * {@link #deleteByConversationId}, so a deleted conversation is never written back.
+     */
+    public synchronized void flush() {
+        for (String conversationId : List.copyOf(dirty.keySet())) {
+            List<Message> window = dirty.get(conversationId);
+            if (window == null) {
+                continue;
+            }
+            try {
+                delegate.saveAll(conversationId, window);
+            } catch (RuntimeException e) {
+                // stays dirty and is retried by the next flush
+                log.warn("Failed to write the memory of conversation {}", conversationId, e);
+                continue;
+            }
+            // a newer window saved meanwhile stays dirty
+            dirty.remove(conversationId, window);
+            clusterNotifications.publish(CHANNEL, nodeId + ":" + conversationId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // keep the scheduled task alive
+            log.error("Chat memory flush failed", e);
+        }
+    }
+
+    private void put(String conversationId, List<Message> messages) {
+        synchronized (cache) {
+            cache.put(conversationId, new Entry(messages, System.nanoTime() + ttl.toNanos()));
+            if (cache.size() > maxConversations) {
+                Iterator<String> eldest = cache.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void onRemoteChange(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        String conversationId = payload.substring(separator + 1);
+        synchronized (cache) {
+            if (!dirty.containsKey(conversationId)) {
+                cache.remove(conversationId);
+            }
+        }
+    }
+
+    /** Notifications may have been missed: whatever was not saved here may be stale. */
+    private void evictClean() {
+        synchronized (cache) {
+            cache.keySet().removeIf(conversationId -> !dirty.containsKey(conversationId));
+        }
+    }
+}
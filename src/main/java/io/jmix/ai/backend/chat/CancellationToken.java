@@ -0,0 +1,72 @@
+package io.jmix.ai.backend.chat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Signals that the client of a chat request went away and its remaining work should stop.
+ * <p>
+ * {@link ChatImpl} cancels the token when a stream subscription is disposed and passes it to
+ * the tool execution in the tool context under {@link #CONTEXT_KEY}, where
+ * {@link ParallelToolCallingManager} interrupts running tool calls and skips later ones.
+ */
+public final class CancellationToken {
+
+    private static final Logger log = LoggerFactory.getLogger(CancellationToken.class);
+
+    public static final String CONTEXT_KEY = "jmix.ai.cancellationToken";
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            callbacks.forEach(CancellationToken::runQuietly);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Registers a callback run on cancellation, right away if the token is already cancelled.
+     * The callback may run more than once and must be idempotent. Returns an action removing it.
+     */
+    public Runnable onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (cancelled.get()) {
+            runQuietly(callback);
+        }
+        return () -> callbacks.remove(callback);
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled.get()) {
+            throw new CancellationException("The chat request was cancelled");
+        }
+    }
+
+    /**
+     * Returns the token stored in a tool context map, or null if the request has none.
+     */
+    @Nullable
+    public static CancellationToken from(@Nullable Map<String, Object> toolContext) {
+        return toolContext != null && toolContext.get(CONTEXT_KEY) instanceof CancellationToken token ? token : null;
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.warn("Cancellation callback failed", e);
+        }
+    }
+}
@@ -27,14 +27,20 @@ public interface Chat {
             @Nullable List<Document> retrievedDocuments,
             @Nullable List<String> sourceLinks,
             int promptTokens,
+            int cachedPromptTokens,
             int completionTokens,
             int responseTime
     ) {
 
         public StructuredResponse(String text, List<String> logMessages, @Nullable List<Document> retrievedDocuments,
                                   int promptTokens, int completionTokens, int responseTime) {
+            this(text, logMessages, retrievedDocuments, promptTokens, 0, completionTokens, responseTime);
+        }
+
+        public StructuredResponse(String text, List<String> logMessages, @Nullable List<Document> retrievedDocuments,
+                                  int promptTokens, int cachedPromptTokens, int completionTokens, int responseTime) {
             this(text, logMessages, retrievedDocuments, getSourceLinks(retrievedDocuments),
-                    promptTokens, completionTokens, responseTime);
+                    promptTokens, cachedPromptTokens, completionTokens, responseTime);
         }
 
         private static List<String> getSourceLinks(@Nullable List<Document> retrievedDocuments) {
@@ -0,0 +1,177 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.entity.JmixVersion;
+import io.jmix.ai.backend.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs identical concurrent first-turn chat requests once.
+ * <p>
+ * When a suggested question is rolled out, many users send the same text within seconds. Requests
+ * with the same normalized text (as in {@link AnswerCache}), Jmix version and parameters version
+ * and no conversation history get the same answer, so while one of them is being answered the
+ * others attach to it instead of running their own retrieval and model calls. A structured
+ * follower gets the leader's response; a streaming follower gets the leader's events, replayed
+ * from the start if it arrives late. The caller records the exchange in each follower's
+ * conversation.
+ * <p>
+ * A shared stream runs the leader's request once, when its first client subscribes, and is never
+ * run again: a client subscribing after it completed gets the whole recorded stream. It keeps
+ * running while any of its clients is connected and is cancelled when the last one disconnects;
+ * a follower subscribing after that cannot get a complete answer from it and runs its own request
+ * instead, as a leader. Disabled with {@code chat.coalescing.enabled=false}. Counter
+ * {@code jmix.ai.requests.coalesced} reports requests by operation (chat, chat-stream) and role.
+ */
+@Component
+public class ChatCoalescer {
+
+    public record Key(String question, String jmixVersion, String parametersVersion) {
+    }
+
+    private final ChatMemory chatMemory;
+    private final boolean enabled;
+
+    private final SingleFlight<Key, Chat.StructuredResponse> calls;
+    private final Map<Key, Flight> streams = new ConcurrentHashMap<>();
+    private final Counter streamLeaders;
+    private final Counter streamFollowers;
+
+    public ChatCoalescer(ChatMemory chatMemory,
+                         MeterRegistry meterRegistry,
+                         @Value("${chat.coalescing.enabled:true}") boolean enabled) {
+        this.chatMemory = chatMemory;
+        this.enabled = enabled;
+        this.calls = new SingleFlight<>("chat", meterRegistry);
+        streamLeaders = SingleFlight.counter(meterRegistry, "chat-stream", "leader",
+                "Chat streams that ran because no identical stream was in flight");
+        streamFollowers = SingleFlight.counter(meterRegistry, "chat-stream", "follower",
+                "Chat streams replaying an identical stream in flight");
+    }
+
+    /**
+     * Returns the coalescing key of a request, or null when the request must run on its own:
+     * coalescing is disabled or the conversation already has history.
+     */
+    @Nullable
+    public Key key(String question, @Nullable String conversationId, JmixVersion jmixVersion,
+                   String parametersVersion) {
+        if (!enabled || (conversationId != null && !chatMemory.get(conversationId).isEmpty())) {
+            return null;
+        }
+        return new Key(AnswerCache.normalize(question), jmixVersion.getId(), parametersVersion);
+    }
+
+    public SingleFlight.Shared<Chat.StructuredResponse> call(Key key, Supplier<Chat.StructuredResponse> request) {
+        return calls.call(key, request);
+    }
+
+    /**
+     * Returns the stream of the identical request in flight, or starts the supplied one and shares
+     * it with the requests arriving until it terminates. {@code following} is applied to the
+     * stream only when the request actually follows another one, e.g. to record the exchange in
+     * its own conversation; a request that runs its own stream records it as usual.
+     */
+    public Flux<StreamingEvent> stream(Key key, Supplier<Flux<StreamingEvent>> request,
+                                       UnaryOperator<Flux<StreamingEvent>> following) {
+        Flight created = new Flight(key, request);
+        Flight flight = streams.putIfAbsent(key, created);
+        boolean leader = flight == null;
+        Flight joined = leader ? created : flight;
+        return Flux.defer(() -> {
+            Flux<StreamingEvent> events = joined.attach();
+            if (events == null) {
+                // every client of the flight left before this one came: run this request by itself
+                streamLeaders.increment();
+                return request.get();
+            }
+            (leader ? streamLeaders : streamFollowers).increment();
+            return leader ? events : following.apply(events);
+        });
+    }
+
+    /**
+     * One run of a request shared by its clients. The events are recorded in a replay sink, so
+     * every client gets them from the start, and the request is subscribed at most once.
+     */
+    private final class Flight {
+
+        private final Key key;
+        private final Supplier<Flux<StreamingEvent>> request;
+        private final Sinks.Many<StreamingEvent> events = Sinks.many().replay().all();
+        private final Disposable.Swap upstream = Disposables.swap();
+
+        // guarded by this
+        private int clients;
+        private boolean connected;
+        private boolean terminated;
+        private boolean abandoned;
+
+        Flight(Key key, Supplier<Flux<StreamingEvent>> request) {
+            this.key = key;
+            this.request = request;
+        }
+
+        /**
+         * Adds a client and runs the request for the first one. Returns the events for the client,
+         * or null if the flight was cancelled because all its clients left.
+         */
+        @Nullable
+        Flux<StreamingEvent> attach() {
+            boolean connect;
+            synchronized (this) {
+                if (abandoned) {
+                    return null;
+                }
+                clients++;
+                connect = !connected;
+                connected = true;
+            }
+            Flux<StreamingEvent> client = events.asFlux().doOnCancel(this::detach);
+            if (connect) {
+                upstream.update(Flux.defer(request).subscribe(
+                        events::tryEmitNext,
+                        error -> terminate(() -> events.tryEmitError(error)),
+                        () -> terminate(events::tryEmitComplete)));
+            }
+            return client;
+        }
+
+        private void detach() {
+            synchronized (this) {
+                if (--clients > 0 || terminated) {
+                    return;
+                }
+                abandoned = true;
+            }
+            streams.remove(key, this);
+            upstream.dispose();
+        }
+
+        private void terminate(Runnable signal) {
+            synchronized (this) {
+                terminated = true;
+            }
+            // requests arriving from now on start a new flight
+            streams.remove(key, this);
+            signal.run();
+        }
+    }
+
+    int streamsInFlight() {
+        return streams.size();
+    }
+}
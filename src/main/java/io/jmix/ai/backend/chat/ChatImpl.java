@@ -2,37 +2,28 @@ package io.jmix.ai.backend.chat;
 
 import io.jmix.ai.backend.chatlog.ChatLogManager;
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.CompiledParameters;
 import io.jmix.ai.backend.parameters.ParametersRepository;
 import io.jmix.ai.backend.retrieval.AbstractRagTool;
 import io.jmix.ai.backend.retrieval.RetrievalUtils;
+import io.jmix.ai.backend.retrieval.SpeculativeRetrieval;
 import io.jmix.ai.backend.retrieval.ToolEventListener;
 import io.jmix.ai.backend.retrieval.ToolsManager;
 import io.jmix.core.UuidProvider;
-import io.micrometer.observation.Observation;
-import io.micrometer.observation.ObservationHandler;
-import io.micrometer.observation.ObservationRegistry;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
-import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
 import org.springframework.ai.chat.messages.AbstractMessage;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
-import org.springframework.ai.chat.observation.ChatModelObservationContext;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.openai.OpenAiChatModel;
-import org.springframework.ai.openai.OpenAiChatOptions;
-import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
@@ -45,11 +36,18 @@ import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import static org.apache.commons.lang3.StringUtils.abbreviate;
@@ -59,72 +57,137 @@ public class ChatImpl implements Chat {
 
     private static final Logger log = LoggerFactory.getLogger(ChatImpl.class);
 
+    private static final String RETRIEVED_CONTEXT_HEADER = "The search tools are not available in this"
+            + " conversation. They were run on the user's question instead; answer from their results below.";
+
     private final ParametersRepository parametersRepository;
-    private final ChatMemory chatMemory;
-    private final ObservationRegistry observationRegistry;
+    private final ChatModelRegistry chatModelRegistry;
     private final ToolsManager toolsManager;
     private final ChatLogManager chatLogManager;
     private final Scheduler streamingScheduler;
+    private final StreamConcurrencyLimiter streamConcurrencyLimiter;
     private final SystemPromptResolver systemPromptResolver;
+    private final TokenUsageMetrics tokenUsageMetrics;
+    private final PipelineMetrics pipelineMetrics;
+    private final SpeculativeRetrieval speculativeRetrieval;
+    private final ParallelToolCallingManager toolCallingManager;
 
-    public ChatImpl(JdbcChatMemoryRepository chatMemoryRepository,
+    public ChatImpl(ChatModelRegistry chatModelRegistry,
                     ParametersRepository parametersRepository,
                     @Qualifier("streamingScheduler") Scheduler streamingScheduler,
+                    StreamConcurrencyLimiter streamConcurrencyLimiter,
                     ToolsManager toolsManager,
                     ChatLogManager chatLogManager,
-                    SystemPromptResolver systemPromptResolver) {
+                    SystemPromptResolver systemPromptResolver,
+                    TokenUsageMetrics tokenUsageMetrics,
+                    PipelineMetrics pipelineMetrics,
+                    SpeculativeRetrieval speculativeRetrieval,
+                    ParallelToolCallingManager toolCallingManager) {
+        this.chatModelRegistry = chatModelRegistry;
         this.parametersRepository = parametersRepository;
         this.streamingScheduler = streamingScheduler;
+        this.streamConcurrencyLimiter = streamConcurrencyLimiter;
         this.chatLogManager = chatLogManager;
         this.systemPromptResolver = systemPromptResolver;
-
-        chatMemory = MessageWindowChatMemory.builder()
-                .chatMemoryRepository(chatMemoryRepository)
-                .maxMessages(10)
-                .build();
-
-        observationRegistry = ObservationRegistry.create();
-        observationRegistry.observationConfig().observationHandler(getChatObservationHandler());
         this.toolsManager = toolsManager;
+        this.tokenUsageMetrics = tokenUsageMetrics;
+        this.pipelineMetrics = pipelineMetrics;
+        this.speculativeRetrieval = speculativeRetrieval;
+        this.toolCallingManager = toolCallingManager;
     }
 
     private record ChatRequestContext(
             String conversationId,
             ChatModel chatModel,
             ChatClient.ChatClientRequestSpec request,
-            List<Document> retrievedDocuments
+            List<Document> retrievedDocuments,
+            // cancels the speculative retrievals no tool call has taken; run when the request ends
+            Runnable discardSpeculation,
+            // in retrieval-first mode runs the tools and completes the prompt; run before the model call
+            Runnable retrieveFirst,
+            HedgePolicy hedgePolicy
     ) {
     }
 
     private ChatRequestContext prepareRequest(String userPrompt, String parametersYaml,
                                               @Nullable String conversationId,
                                               JmixVersion jmixVersion,
-                                              ToolEventListener listener) {
+                                              ToolEventListener listener,
+                                              @Nullable CancellationToken cancellation) {
+        long start = System.nanoTime();
         String nonNullConversationId = conversationId != null
                 ? conversationId : UuidProvider.createUuid().toString();
 
-        ParametersReader parametersReader = parametersRepository.getReader(parametersYaml);
-        ChatModel chatModel = buildChatModel(parametersReader);
-        ChatClient chatClient = buildClient(chatModel);
-
-        List<Document> retrievedDocuments = new ArrayList<>();
-        List<AbstractRagTool> tools = toolsManager.getTools(parametersYaml, retrievedDocuments, listener, jmixVersion);
-
-        String systemMessageTemplate = parametersReader.getString("systemMessage");
-        String systemPrompt = systemPromptResolver.resolve(systemMessageTemplate, jmixVersion);
+        CompiledParameters parameters = parametersRepository.compile(parametersYaml);
+        pipelineMetrics.recordParametersLoad(System.nanoTime() - start);
+        ChatModelRegistry.PooledChatModel pooled = chatModelRegistry.get(
+                parameters.getSection("model", ChatModelRegistry.ChatModelKey::of));
+        HedgePolicy hedgePolicy = parameters.getSection("hedge", HedgePolicy::read);
+
+        // tools of one turn run concurrently (ParallelToolCallingManager) and append to this list
+        List<Document> retrievedDocuments = new CopyOnWriteArrayList<>();
+        List<AbstractRagTool> tools = toolsManager.getTools(parameters, retrievedDocuments, listener, jmixVersion);
+
+        // OpenAI caches the longest previously seen prompt prefix: tool definitions, then the system
+        // message, then the history (the memory advisor keeps the system message first). Tools come
+        // in plan order with memoized definitions, and the system message is resolved once per
+        // parameters and Jmix version, so the prefix is byte-identical across requests.
+        SystemMessage systemMessage = parameters.getSection("systemMessage:" + jmixVersion.getId(),
+                reader -> new SystemMessage(systemPromptResolver.resolve(reader.getString("systemMessage"), jmixVersion)));
+
+        if (parameters.getSection("pipelineMode", PipelineMode::read) == PipelineMode.RETRIEVAL_FIRST) {
+            // no tool callbacks: the messages are added once the tools have run on the question
+            ChatClient.ChatClientRequestSpec request = pooled.chatClient().prompt();
+            request.advisors(a -> a.param(ChatMemory.CONVERSATION_ID, nonNullConversationId));
+            Runnable retrieveFirst = () -> request.messages(buildPrompt(userPrompt, systemMessage,
+                    retrieveContext(tools, userPrompt, cancellation)).getInstructions());
+
+            pipelineMetrics.recordPreparation(jmixVersion, modelName(pooled.chatModel()), System.nanoTime() - start);
+            return new ChatRequestContext(nonNullConversationId, pooled.chatModel(), request, retrievedDocuments,
+                    () -> {}, retrieveFirst, hedgePolicy);
+        }
 
-        ChatClient.ChatClientRequestSpec request = chatClient.prompt(buildPrompt(userPrompt, systemPrompt));
+        ChatClient.ChatClientRequestSpec request = pooled.chatClient().prompt(buildPrompt(userPrompt, systemMessage, null));
         request.advisors(a -> a.param(ChatMemory.CONVERSATION_ID, nonNullConversationId));
         request.toolCallbacks(tools.stream().map(AbstractRagTool::getToolCallback).toList());
+        if (cancellation != null) {
+            // read by ParallelToolCallingManager, which stops the tool calls of a cancelled request
+            request.toolContext(Map.of(CancellationToken.CONTEXT_KEY, cancellation));
+        }
+
+        // the tools search with the raw question while the first model call decides what to search for
+        Runnable discardSpeculation = speculativeRetrieval.start(parameters, tools, userPrompt);
 
-        return new ChatRequestContext(nonNullConversationId, chatModel, request, retrievedDocuments);
+        pipelineMetrics.recordPreparation(jmixVersion, modelName(pooled.chatModel()), System.nanoTime() - start);
+        return new ChatRequestContext(nonNullConversationId, pooled.chatModel(), request, retrievedDocuments,
+                discardSpeculation, () -> {}, hedgePolicy);
+    }
+
+    /**
+     * Runs every tool on the user question concurrently, as a model turn calling all of them would,
+     * and returns their outputs as one system message. The tools report the usual events.
+     */
+    private SystemMessage retrieveContext(List<AbstractRagTool> tools, String userPrompt,
+                                          @Nullable CancellationToken cancellation) {
+        List<ParallelToolCallingManager.DirectCall> calls = tools.stream()
+                .map(tool -> new ParallelToolCallingManager.DirectCall(tool.getToolName(), () -> tool.execute(userPrompt)))
+                .toList();
+        List<String> outputs = toolCallingManager.callAll(calls, cancellation);
+
+        StringBuilder context = new StringBuilder(RETRIEVED_CONTEXT_HEADER);
+        for (int i = 0; i < tools.size(); i++) {
+            context.append("\n\n## ").append(tools.get(i).getToolName()).append("\n\n").append(outputs.get(i));
+        }
+        return new SystemMessage(context.toString());
     }
 
     @Override
     public StructuredResponse requestStructured(String userPrompt, String parametersYaml, @Nullable String conversationId,
                                                 @Nullable JmixVersion jmixVersion, @Nullable Consumer<String> externalLogger) {
         long start = System.currentTimeMillis();
-        List<String> logMessages = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        // filled by the listener from concurrently running tool calls
+        List<String> logMessages = new CopyOnWriteArrayList<>();
         JmixVersion version = jmixVersion != null ? jmixVersion : JmixVersion.V2;
 
         ToolEventListener listener = new ToolEventListener() {
@@ -144,8 +207,10 @@ public class ChatImpl implements Chat {
             }
 
             @Override
-            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs) {
-                String msg = "Reranked documents (%d): %s".formatted(documents.size(), formatDocScores(documents));
+            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs,
+                                       int savedTokens) {
+                String msg = "Reranked documents (%d)%s: %s".formatted(
+                        documents.size(), formatSavedTokens(savedTokens), formatDocScores(documents));
                 if (externalLogger != null) externalLogger.accept(msg);
                 RetrievalUtils.addLogMessage(log, logMessages, msg);
             }
@@ -164,31 +229,38 @@ public class ChatImpl implements Chat {
             }
         };
 
-        ChatRequestContext ctx = prepareRequest(userPrompt, parametersYaml, conversationId, version, listener);
+        ChatRequestContext ctx = prepareRequest(userPrompt, parametersYaml, conversationId, version, listener, null);
         MDC.put("cid", ctx.conversationId());
         try {
             RetrievalUtils.addLogMessage(log, logMessages, "Model: %s, User prompt: %s".formatted(
                     ctx.chatModel().getDefaultOptions(), abbreviate(userPrompt, 200)));
 
-            ChatResponse chatResponse = ctx.request().call().chatResponse();
+            CachedTokensCounter cachedTokens = new CachedTokensCounter();
+            ctx.retrieveFirst().run();
+            ChatResponse chatResponse = cachedTokens.call(() -> ctx.request().call().chatResponse());
             List<Document> uniqueSortedDocuments = RetrievalUtils.getUniqueSortedDocuments(ctx.retrievedDocuments());
 
             if (chatResponse == null) {
                 RetrievalUtils.addLogMessage(log, logMessages, "No response received from the chat model");
+                pipelineMetrics.recordTotal("chat", version, modelName(ctx.chatModel()), System.nanoTime() - startNanos);
                 return new StructuredResponse("", logMessages, uniqueSortedDocuments, 0, 0, 0);
             }
             String responseText = Objects.requireNonNullElse(getContentFromChatResponse(chatResponse), "");
             var usage = chatResponse.getMetadata().getUsage();
             int promptTokens = usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
             int completionTokens = usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+            int cachedPromptTokens = cachedTokens.get();
+            tokenUsageMetrics.record(promptTokens, cachedPromptTokens, completionTokens);
+            pipelineMetrics.recordTotal("chat", version, modelName(ctx.chatModel()), System.nanoTime() - startNanos);
 
             long responseTime = System.currentTimeMillis() - start;
-            RetrievalUtils.addLogMessage(log, logMessages, "Received response in %d ms [promptTokens: %d, completionTokens: %d]:\n%s".formatted(
-                    responseTime, promptTokens, completionTokens, abbreviate(responseText, 100)));
+            RetrievalUtils.addLogMessage(log, logMessages, "Received response in %d ms [promptTokens: %d, cachedPromptTokens: %d, completionTokens: %d]:\n%s".formatted(
+                    responseTime, promptTokens, cachedPromptTokens, completionTokens, abbreviate(responseText, 100)));
 
             return new StructuredResponse(responseText, logMessages, uniqueSortedDocuments,
-                    promptTokens, completionTokens, (int) responseTime);
+                    promptTokens, cachedPromptTokens, completionTokens, (int) responseTime);
         } finally {
+            ctx.discardSpeculation().run();
             MDC.remove("cid");
         }
     }
@@ -199,11 +271,15 @@ public class ChatImpl implements Chat {
      * <p>Events always arrive in this order:
      * <pre>
      * RequestInfo
-     *   → [ToolCallStart → ToolRetrieved → ToolReranked → ToolCallEnd]*
+     *   → [ToolCallStart → ToolRetrieved → ToolReranked → [ToolSources] → ToolCallEnd]*
      *   → TokensStart → Content* → TokensEnd
      *   → [SourcesStart → Metadata*]
      *   → RequestEnd
      * </pre>
+     * Tool calls requested in the same turn run concurrently: the events of each call keep
+     * this order, but the events of different calls may interleave.
+     * With {@code pipeline.mode: retrieval-first} every tool is called once with the question
+     * before the single model call, with the same events.
      *
      * <p><b>Why Reactor here:</b> Spring AI executes tools synchronously (blocking),
      * but streams content tokens from OpenAI as a reactive {@code Flux}. We need to merge
@@ -223,6 +299,10 @@ public class ChatImpl implements Chat {
      *
      * <p>Console logging and ChatLog persistence are applied transparently
      * by {@link #withDiagnostics} — callers see a clean event stream.
+     *
+     * <p>Disposing the subscription (a client disconnect) cancels the OpenAI stream, interrupts
+     * tool calls still running, prevents further model turns, and saves a ChatLog with the
+     * partial token usage.
      */
     @Override
     public Flux<StreamingEvent> requestStream(String userPrompt,
@@ -236,12 +316,18 @@ public class ChatImpl implements Chat {
         // NOTE: returned Flux is single-subscription only (unicast sink).
         // Do not cache, share, or resubscribe — each call to requestStream
         // must create a fresh subscription.
+        CancellationToken cancellation = new CancellationToken();
+        // summed over the model calls of all tool-calling rounds, like the usage Spring AI reports;
+        // also read when the stream is cancelled before that usage arrives
+        CachedTokensCounter cachedTokens = new CachedTokensCounter();
         Flux<EventStreamValueHolder> stream = Flux.defer(() -> {
             // Event buffer: tool execution is synchronous (blocking), but we need to
             // deliver tool events into a reactive stream. This sink acts as a queue —
             // the listener pushes events in, the flux reads them out.
             Sinks.Many<EventStreamValueHolder> toolCallSink = Sinks.many().unicast().onBackpressureBuffer();
             long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            AtomicBoolean firstToken = new AtomicBoolean();
             AtomicInteger promptTokensRef = new AtomicInteger();
             AtomicInteger completionTokensRef = new AtomicInteger();
             // -- Blocking setup: loads config from DB, creates OpenAI client, resolves tools --
@@ -253,13 +339,14 @@ public class ChatImpl implements Chat {
             // so any logging during tool execution (e.g. Reranker) includes conversation id.
             ToolEventListener listener = createStreamingListener(toolCallSink, cid);
             ChatRequestContext ctx = prepareRequest(
-                    userPrompt, parametersYaml, conversationId, version, listener);
+                    userPrompt, parametersYaml, conversationId, version, listener, cancellation);
 
             // Tool events (ToolCallStart, ToolRetrieved, etc.) are pushed into the sink
             // by the listener during Spring AI's synchronous tool execution.
             var toolEvents = toolCallSink.asFlux();
 
             // Request metadata — model config and user prompt
+            String model = modelName(ctx.chatModel());
             var requestInfo = emit(new EventStreamValueHolder.RequestInfo(
                     ctx.chatModel().getDefaultOptions().toString(), userPrompt));
 
@@ -267,15 +354,23 @@ public class ChatImpl implements Chat {
             // we extract the text and capture token usage from the last chunk.
             // IMPORTANT: doOnComplete closes the tool sink. Without this, mergeWith
             // below would wait for more tool events forever and the stream would hang.
-            var content = ctx.request().stream().chatResponse()
+            // In retrieval-first mode the tools run at subscription, where a tool-calling model
+            // would call them, so the tool events keep their place before the content.
+            var content = cachedTokens.stream(ctx.hedgePolicy().stream(Flux.defer(() -> {
+                        ctx.retrieveFirst().run();
+                        return ctx.request().stream().chatResponse();
+                    })))
                     .<EventStreamValueHolder>concatMap(chunk -> {
                         captureTokenUsage(chunk, promptTokensRef, completionTokensRef);
                         String text = getContentFromChatResponse(chunk);
+                        if (text != null && !text.isEmpty() && firstToken.compareAndSet(false, true)) {
+                            pipelineMetrics.recordFirstToken(version, model, System.nanoTime() - startNanos);
+                        }
                         return (text != null && !text.isEmpty())
                                 ? Flux.just(new EventStreamValueHolder.Content(text))
                                 : Flux.empty();
                     })
-                    .doOnComplete(toolCallSink::tryEmitComplete);
+                    .doOnComplete(() -> completeSerialized(toolCallSink));
 
             // Source URLs — Flux.defer because the document list is empty right now,
             // it gets filled during tool execution (which happens during content streaming).
@@ -288,9 +383,11 @@ public class ChatImpl implements Chat {
 
             // Final summary — Flux.defer because token counts and duration
             // are only known after all content has been streamed.
-            Flux<EventStreamValueHolder> summary = Flux.defer(() -> emit(
-                    new EventStreamValueHolder.RequestEnd(promptTokensRef.get(), completionTokensRef.get(),
-                            System.currentTimeMillis() - startTime)));
+            Flux<EventStreamValueHolder> summary = Flux.defer(() -> {
+                pipelineMetrics.recordTotal("chat-stream", version, model, System.nanoTime() - startNanos);
+                return emit(new EventStreamValueHolder.RequestEnd(promptTokensRef.get(), cachedTokens.get(),
+                        completionTokensRef.get(), System.currentTimeMillis() - startTime));
+            });
 
             // -- Assembly --
             // concatWith = "after this finishes, play the next one" (strict order)
@@ -307,13 +404,14 @@ public class ChatImpl implements Chat {
                     .concatWith(summary);
 
             return toolEvents
-                    .mergeWith(mainSequence);
+                    .mergeWith(mainSequence)
+                    .doFinally(signal -> ctx.discardSpeculation().run());
         });
 
         // Wrap each event with conversationId for logging/persistence,
         // then apply cross-cutting diagnostics (console log + ChatLog save).
         String cid = conversationId != null ? conversationId : "";
-        return withDiagnostics(stream.map(event -> StreamingEvent.of(cid, event)));
+        return withDiagnostics(stream.map(event -> StreamingEvent.of(cid, event)), cancellation, cachedTokens);
     }
 
     /** Wraps a single event as a Flux — DSL helper for readable stream assembly. */
@@ -340,66 +438,118 @@ public class ChatImpl implements Chat {
      * Cross-cutting diagnostics applied to every stream regardless of caller:
      * <ul>
      *   <li>{@code doOnNext} — logs each event to console with conversation id in MDC
-     *       (via {@link #runWithConvId}), so logback pattern {@code [%X{cid}]} works</li>
-     *   <li>{@code doOnComplete} — extracts all data from accumulated events and
-     *       persists a ChatLog entity (no external mutable state — everything from events)</li>
+     *       (via {@link #runWithConvId}), so logback pattern {@code [%X{cid}]} works, and folds
+     *       it into a {@link StreamLog}</li>
+     *   <li>{@code doOnComplete} — persists a ChatLog entity from the {@link StreamLog}
+     *       (no external mutable state — everything from events)</li>
+     *   <li>{@code doOnCancel} — the client went away: cancels the token so that running tool
+     *       calls are interrupted, and persists a ChatLog of what was streamed so far, with the
+     *       token usage {@code usage} collected from the model calls made until then</li>
+     *   <li>{@code streamConcurrencyLimiter.limit} — holds an execution slot for the
+     *       lifetime of the stream, so the number of concurrent streams stays bounded
+     *       even when each one runs on its own virtual thread</li>
      *   <li>{@code subscribeOn(streamingScheduler)} — runs the entire chain on a
-     *       dedicated thread pool, keeping Tomcat servlet threads free</li>
+     *       dedicated scheduler, keeping Tomcat servlet threads free</li>
      * </ul>
      */
-    private Flux<StreamingEvent> withDiagnostics(Flux<StreamingEvent> stream) {
-        List<StreamingEvent> eventLog = Collections.synchronizedList(new ArrayList<>());
-        return stream
+    Flux<StreamingEvent> withDiagnostics(Flux<StreamingEvent> stream, CancellationToken cancellation,
+                                         CachedTokensCounter usage) {
+        StreamLog streamLog = new StreamLog();
+        Flux<StreamingEvent> diagnosed = stream
                 .doOnNext(holder -> {
-                    eventLog.add(holder);
+                    streamLog.add(holder);
                     runWithConvId(holder.conversationId(), () -> logEventToConsole(holder));
                 })
-                .doOnComplete(() -> persistChatLog(eventLog))
+                .doOnComplete(() -> persistChatLog(streamLog, false, usage))
+                .doOnCancel(() -> {
+                    cancellation.cancel();
+                    persistChatLog(streamLog, true, usage);
+                });
+        return streamConcurrencyLimiter.limit(diagnosed)
                 .subscribeOn(streamingScheduler);
     }
 
     /**
-     * Persists a ChatLog from accumulated stream events.
-     * All data (conversationId, sources, tokens, duration, log lines) is extracted
-     * from the events — no external mutable state needed.
+     * What the ChatLog of a stream needs, folded in as the events pass: log lines of everything but
+     * the content, source URLs and the final token counts. Content chunks are not kept, so the
+     * memory of a stream does not grow with the answer.
+     * <p>
+     * Events arrive one at a time, but a cancellation may persist the log while an event is being
+     * added, so the state is held in concurrent collections and atomics rather than under a lock.
      */
-    private void persistChatLog(List<StreamingEvent> holders) {
-        if (holders.isEmpty()) return;
-        String conversationId = holders.getFirst().conversationId();
-        List<String> logLines = new ArrayList<>();
-        List<String> sourceUrls = new ArrayList<>();
-        int promptTokens = 0;
-        int completionTokens = 0;
-        long totalDurationMs = 0;
-
-        for (StreamingEvent holder : holders) {
-            String ts = formatTimestamp(holder.timestamp());
+    private static final class StreamLog {
+
+        private final Queue<String> logLines = new ConcurrentLinkedQueue<>();
+        private final Queue<String> sourceUrls = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<StreamingEvent> first = new AtomicReference<>();
+        private final AtomicReference<EventStreamValueHolder.RequestEnd> end = new AtomicReference<>();
+
+        void add(StreamingEvent holder) {
+            first.compareAndSet(null, holder);
             switch (holder.value()) {
                 case EventStreamValueHolder.RequestInfo ri ->
-                    logLines.add("%s Model: %s, User prompt: %s".formatted(ts, ri.model(), ri.userPrompt()));
+                        logLines.add("%s Model: %s, User prompt: %s".formatted(ts(holder), ri.model(), ri.userPrompt()));
                 case EventStreamValueHolder.ToolCallStart tc ->
-                        logLines.add("%s >>> Using %s: %s%s".formatted(ts, tc.tool(), tc.query(), formatRequested(tc.requested())));
+                        logLines.add("%s >>> Using %s: %s%s".formatted(ts(holder), tc.tool(), tc.query(), formatRequested(tc.requested())));
                 case EventStreamValueHolder.ToolRetrieved tr ->
-                        logLines.add("%s Found documents (%d) in %d ms: %s".formatted(ts, tr.documents().size(), tr.durationMs(), formatDocScores(tr.documents())));
+                        logLines.add("%s Found documents (%d) in %d ms: %s".formatted(ts(holder), tr.documents().size(), tr.durationMs(), formatDocScores(tr.documents())));
                 case EventStreamValueHolder.ToolReranked tr ->
-                        logLines.add("%s Reranked documents (%d) in %d ms: %s".formatted(ts, tr.documents().size(), tr.durationMs(), formatDocScores(tr.documents())));
+                        logLines.add("%s Reranked documents (%d) in %d ms%s: %s".formatted(ts(holder), tr.documents().size(), tr.durationMs(), formatSavedTokens(tr.savedTokens()), formatDocScores(tr.documents())));
                 case EventStreamValueHolder.ToolCallEnd tc ->
-                        logLines.add("%s %s done in %d ms".formatted(ts, tc.tool(), tc.totalDurationMs()));
+                        logLines.add("%s %s done in %d ms".formatted(ts(holder), tc.tool(), tc.totalDurationMs()));
                 case EventStreamValueHolder.Metadata m -> sourceUrls.add(m.source());
                 case EventStreamValueHolder.RequestEnd re -> {
-                    promptTokens = re.promptTokens();
-                    completionTokens = re.completionTokens();
-                    totalDurationMs = re.totalDurationMs();
-                    logLines.add("%s Received response in %d ms [promptTokens: %d, completionTokens: %d]"
-                            .formatted(ts, re.totalDurationMs(), re.promptTokens(), re.completionTokens()));
+                    end.set(re);
+                    logLines.add("%s Received response in %d ms [promptTokens: %d, cachedPromptTokens: %d, completionTokens: %d]"
+                            .formatted(ts(holder), re.totalDurationMs(), re.promptTokens(), re.cachedPromptTokens(), re.completionTokens()));
                 }
                 default -> {}
             }
         }
 
-        chatLogManager.saveStreamResponse(conversationId, logLines,
+        private static String ts(StreamingEvent holder) {
+            return formatTimestamp(holder.timestamp());
+        }
+    }
+
+    /**
+     * Persists a ChatLog from the aggregated stream events.
+     * A cancelled stream has no RequestEnd: its duration is measured up to now, and its token
+     * usage is what the model calls finished so far reported to {@code usage}, plus the
+     * completion tokens of the call still running estimated from the text it streamed (OpenAI
+     * reports usage only in the final chunk of a call).
+     */
+    private void persistChatLog(StreamLog streamLog, boolean cancelled, CachedTokensCounter usage) {
+        StreamingEvent first = streamLog.first.get();
+        if (first == null) return;
+        List<String> logLines = new ArrayList<>(streamLog.logLines);
+        List<String> sourceUrls = List.copyOf(streamLog.sourceUrls);
+        EventStreamValueHolder.RequestEnd end = streamLog.end.get();
+        int promptTokens = end != null ? end.promptTokens() : 0;
+        int cachedPromptTokens = end != null ? end.cachedPromptTokens() : 0;
+        int completionTokens = end != null ? end.completionTokens() : 0;
+        long totalDurationMs = end != null ? end.totalDurationMs() : 0;
+
+        if (cancelled) {
+            totalDurationMs = System.currentTimeMillis() - first.timestamp().toEpochMilli();
+            promptTokens = usage.getPromptTokens();
+            cachedPromptTokens = usage.get();
+            completionTokens = usage.getCompletionTokens() + estimateTokens(usage.getUnreportedChars());
+            logLines.add("%s Cancelled by the client after %d ms; token usage is partial [promptTokens: %d, cachedPromptTokens: %d, completionTokens: ~%d]"
+                    .formatted(formatTimestamp(Instant.now()), totalDurationMs, promptTokens, cachedPromptTokens, completionTokens));
+        } else {
+            // estimates of cancelled streams would skew the cache hit ratio
+            tokenUsageMetrics.record(promptTokens, cachedPromptTokens, completionTokens);
+        }
+
+        chatLogManager.saveStreamResponse(first.conversationId(), logLines,
                 sourceUrls.isEmpty() ? null : String.join(",", sourceUrls),
-                promptTokens, completionTokens, (int) totalDurationMs);
+                promptTokens, cachedPromptTokens, completionTokens, (int) totalDurationMs);
+    }
+
+    /** Rough token count of streamed text, about four characters per token for English. */
+    private static int estimateTokens(int chars) {
+        return (chars + 3) / 4;
     }
 
     /** Logs significant stream events to console with conversation id. MDC "cid" is set by runWithConvId. */
@@ -412,12 +562,12 @@ public class ChatImpl implements Chat {
             case EventStreamValueHolder.ToolRetrieved tr ->
                     log.info("Found documents ({}): {}", tr.documents().size(), formatDocScores(tr.documents()));
             case EventStreamValueHolder.ToolReranked tr ->
-                    log.info("Reranked documents ({}): {}", tr.documents().size(), formatDocScores(tr.documents()));
+                    log.info("Reranked documents ({}){}: {}", tr.documents().size(), formatSavedTokens(tr.savedTokens()), formatDocScores(tr.documents()));
             case EventStreamValueHolder.ToolCallEnd tc ->
                     log.info("{} done in {} ms", tc.tool(), tc.totalDurationMs());
             case EventStreamValueHolder.RequestEnd re ->
-                    log.info("Received response in {} ms [promptTokens: {}, completionTokens: {}]",
-                            re.totalDurationMs(), re.promptTokens(), re.completionTokens());
+                    log.info("Received response in {} ms [promptTokens: {}, cachedPromptTokens: {}, completionTokens: {}]",
+                            re.totalDurationMs(), re.promptTokens(), re.cachedPromptTokens(), re.completionTokens());
             default -> {}
         }
     }
@@ -463,6 +613,11 @@ public class ChatImpl implements Chat {
                         .formatted(requested.results(), requested.vectorFetch());
     }
 
+    /** Renders the tokens cut by the tool output budget; empty when everything fit. */
+    private static String formatSavedTokens(int savedTokens) {
+        return savedTokens > 0 ? " (budget saved ~%d tokens)".formatted(savedTokens) : "";
+    }
+
     private List<String> extractSourceUrls(List<Document> documents) {
         return documents.stream()
                 .map(doc -> doc.getMetadata().get("url"))
@@ -472,29 +627,56 @@ public class ChatImpl implements Chat {
                 .toList();
     }
 
+    /**
+     * Tool calls of one turn run on several threads, while a unicast sink rejects concurrent
+     * emissions; the sink's own monitor serializes them.
+     */
+    private static void emitSerialized(Sinks.Many<EventStreamValueHolder> sink, EventStreamValueHolder event) {
+        synchronized (sink) {
+            sink.tryEmitNext(event);
+        }
+    }
+
+    private static void completeSerialized(Sinks.Many<EventStreamValueHolder> sink) {
+        synchronized (sink) {
+            sink.tryEmitComplete();
+        }
+    }
+
     private ToolEventListener createStreamingListener(Sinks.Many<EventStreamValueHolder> toolCallSink,
                                                        String conversationId) {
+        Set<String> emittedSources = ConcurrentHashMap.newKeySet();
         return new ToolEventListener() {
             @Override
             public void onToolCallStart(String tool, String query,
                                         @Nullable EventStreamValueHolder.RequestedRetrieval requested) {
                 MDC.put("cid", conversationId);
-                toolCallSink.tryEmitNext(new EventStreamValueHolder.ToolCallStart(tool, query, requested));
+                emitSerialized(toolCallSink, new EventStreamValueHolder.ToolCallStart(tool, query, requested));
             }
 
             @Override
             public void onToolRetrieved(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs) {
-                toolCallSink.tryEmitNext(new EventStreamValueHolder.ToolRetrieved(tool, documents, durationMs));
+                emitSerialized(toolCallSink, new EventStreamValueHolder.ToolRetrieved(tool, documents, durationMs));
+            }
+
+            @Override
+            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs,
+                                       int savedTokens) {
+                emitSerialized(toolCallSink, new EventStreamValueHolder.ToolReranked(tool, documents, durationMs, savedTokens));
             }
 
             @Override
-            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs) {
-                toolCallSink.tryEmitNext(new EventStreamValueHolder.ToolReranked(tool, documents, durationMs));
+            public void onToolSources(String tool, List<String> urls) {
+                // each source once per request, by the first call that found it
+                List<String> newSources = urls.stream().filter(emittedSources::add).toList();
+                if (!newSources.isEmpty()) {
+                    emitSerialized(toolCallSink, new EventStreamValueHolder.ToolSources(tool, newSources));
+                }
             }
 
             @Override
             public void onToolCallEnd(String tool, long totalDurationMs) {
-                toolCallSink.tryEmitNext(new EventStreamValueHolder.ToolCallEnd(tool, totalDurationMs));
+                emitSerialized(toolCallSink, new EventStreamValueHolder.ToolCallEnd(tool, totalDurationMs));
                 MDC.remove("cid");
             }
 
@@ -505,6 +687,11 @@ public class ChatImpl implements Chat {
         };
     }
 
+    @Nullable
+    private static String modelName(ChatModel chatModel) {
+        return chatModel.getDefaultOptions().getModel();
+    }
+
     @Nullable
     private static String getContentFromChatResponse(@Nullable ChatResponse chatResponse) {
         return Optional.ofNullable(chatResponse)
@@ -514,66 +701,13 @@ public class ChatImpl implements Chat {
                 .orElse(null);
     }
 
-    private Prompt buildPrompt(String userPrompt, String systemPrompt) {
-        return new Prompt(List.of(
-                new SystemMessage(systemPrompt),
-                new UserMessage(userPrompt)
-        ));
-    }
-
-    private ChatModel buildChatModel(ParametersReader parametersReader) {
-        String openaiApiKey = System.getenv("OPENAI_API_KEY");
-        if (StringUtils.isBlank(openaiApiKey)) {
-            throw new IllegalStateException("OPENAI_API_KEY environment variable is not set");
-        }
-        OpenAiApi openAiApi = OpenAiApi.builder()
-                .apiKey(openaiApiKey)
-                .build();
-
-        OpenAiChatOptions.Builder optionsBuilder = OpenAiChatOptions.builder()
-                .model(parametersReader.getString("model.name", "gpt-5"));
-
-        Double temperature = parametersReader.getDouble("model.temperature", null);
-        if (temperature != null)
-            optionsBuilder.temperature(temperature);
-
-        String reasoningEffort = parametersReader.getString("model.reasoningEffort", null);
-        if (reasoningEffort != null)
-            optionsBuilder.reasoningEffort(reasoningEffort);
-
-        OpenAiChatOptions openAiChatOptions = optionsBuilder
-                .streamUsage(true)
-                .build();
-
-        return OpenAiChatModel.builder()
-                .openAiApi(openAiApi)
-                .defaultOptions(openAiChatOptions)
-                .observationRegistry(observationRegistry)
-                .build();
-    }
-
-    private ChatClient buildClient(ChatModel chatModel) {
-        return ChatClient.builder(chatModel)
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
-                .build();
-    }
-
-    private ObservationHandler<ChatModelObservationContext> getChatObservationHandler() {
-        return new ObservationHandler<>() {
-            @Override
-            public void onStart(ChatModelObservationContext context) {
-                log.trace("LLM Request:\n{}", context.getRequest());
-            }
-
-            @Override
-            public void onStop(ChatModelObservationContext context) {
-                log.trace("LLM Response:\n{}", context.getResponse());
-            }
-
-            @Override
-            public boolean supportsContext(Observation.Context context) {
-                return context instanceof ChatModelObservationContext;
-            }
-        };
+    /**
+     * The retrieved context goes after the system message and the history the memory advisor
+     * inserts, so the cached prompt prefix stays the same, and is not stored in the memory.
+     */
+    private Prompt buildPrompt(String userPrompt, SystemMessage systemMessage, @Nullable SystemMessage context) {
+        return new Prompt(context == null
+                ? List.of(systemMessage, new UserMessage(userPrompt))
+                : List.of(systemMessage, context, new UserMessage(userPrompt)));
     }
 }
@@ -0,0 +1,189 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.entity.Parameters;
+import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.core.event.EntityChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.observation.ChatModelObservationContext;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out shared chat models and clients keyed by the effective model options.
+ * <p>
+ * {@link OpenAiChatModel} and {@link ChatClient} are immutable and thread-safe, so one instance per
+ * distinct option set serves all concurrent requests. All models share one
+ * {@link HedgingOpenAiApi} built over a single JDK {@link HttpClient}, which pools keep-alive
+ * TLS connections for both blocking and streaming calls.
+ * <p>
+ * Entries are dropped when a {@link Parameters} entity changes, so option sets that are no longer
+ * configured do not linger.
+ */
+@Component
+public class ChatModelRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatModelRegistry.class);
+
+    private static final String DEFAULT_MODEL = "gpt-5";
+
+    private final String apiKey;
+    private final int maxSize;
+    private final ChatMemory chatMemory;
+    private final ParallelToolCallingManager toolCallingManager;
+    private final ObservationRegistry observationRegistry;
+    private final OpenAiApi openAiApi;
+    private final Map<ChatModelKey, PooledChatModel> models = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ChatModelRegistry(@Value("${spring.ai.openai.api-key:}") String apiKey,
+                             @Value("${chat.openai.connect-timeout:10s}") Duration connectTimeout,
+                             @Value("${chat.openai.read-timeout:5m}") Duration readTimeout,
+                             @Value("${chat.model-registry.max-size:32}") int maxSize,
+                             ChatMemory chatMemory,
+                             ParallelToolCallingManager toolCallingManager,
+                             MeterRegistry meterRegistry) {
+        // the api-key property already resolves OPENAI_API_KEY (spring.ai.openai.api-key=${OPENAI_API_KEY:})
+        this.apiKey = apiKey;
+        this.maxSize = maxSize;
+        this.chatMemory = chatMemory;
+        this.toolCallingManager = toolCallingManager;
+
+        observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(getChatObservationHandler());
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        openAiApi = new HedgingOpenAiApi(StringUtils.defaultIfBlank(apiKey, "unset"),
+                RestClient.builder().requestFactory(requestFactory),
+                WebClient.builder().clientConnector(new JdkClientHttpConnector(httpClient)),
+                meterRegistry);
+
+        hits = Counter.builder("jmix.ai.chat.model.registry")
+                .description("Chat model lookups served by an already built client")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("jmix.ai.chat.model.registry")
+                .description("Chat model lookups that had to build a new client")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.chat.model.registry.size", models, Map::size)
+                .description("Number of distinct chat model option sets currently held")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Effective model options; equal keys share one model and client.
+     */
+    public record ChatModelKey(String name, @Nullable Double temperature, @Nullable String reasoningEffort) {
+
+        public static ChatModelKey of(ParametersReader reader) {
+            return new ChatModelKey(
+                    reader.getString("model.name", DEFAULT_MODEL),
+                    reader.getDouble("model.temperature", null),
+                    reader.getString("model.reasoningEffort", null));
+        }
+    }
+
+    public record PooledChatModel(ChatModel chatModel, ChatClient chatClient) {
+    }
+
+    public PooledChatModel get(ChatModelKey key) {
+        if (StringUtils.isBlank(apiKey)) {
+            throw new IllegalStateException("OPENAI API key is not set (spring.ai.openai.api-key or OPENAI_API_KEY)");
+        }
+        PooledChatModel existing = models.get(key);
+        if (existing != null) {
+            hits.increment();
+            return existing;
+        }
+        if (models.size() >= maxSize) {
+            // option sets come from a handful of parameter versions; overflowing means they churned
+            log.debug("Chat model registry reached {} entries, clearing", maxSize);
+            models.clear();
+        }
+        return models.computeIfAbsent(key, k -> {
+            misses.increment();
+            return build(k);
+        });
+    }
+
+    public void invalidate() {
+        models.clear();
+    }
+
+    @TransactionalEventListener
+    public void onParametersChanged(EntityChangedEvent<Parameters> event) {
+        invalidate();
+    }
+
+    private PooledChatModel build(ChatModelKey key) {
+        OpenAiChatOptions.Builder optionsBuilder = OpenAiChatOptions.builder()
+                .model(key.name());
+        if (key.temperature() != null)
+            optionsBuilder.temperature(key.temperature());
+        if (key.reasoningEffort() != null)
+            optionsBuilder.reasoningEffort(key.reasoningEffort());
+
+        ChatModel chatModel = OpenAiChatModel.builder()
+                .openAiApi(openAiApi)
+                .defaultOptions(optionsBuilder.streamUsage(true).build())
+                .toolCallingManager(toolCallingManager)
+                .observationRegistry(observationRegistry)
+                .build();
+        ChatClient chatClient = ChatClient.builder(chatModel)
+                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
+                .build();
+        log.info("Built chat model {}", key);
+        return new PooledChatModel(chatModel, chatClient);
+    }
+
+    private ObservationHandler<ChatModelObservationContext> getChatObservationHandler() {
+        return new ObservationHandler<>() {
+            @Override
+            public void onStart(ChatModelObservationContext context) {
+                log.trace("LLM Request:\n{}", context.getRequest());
+            }
+
+            @Override
+            public void onStop(ChatModelObservationContext context) {
+                log.trace("LLM Response:\n{}", context.getResponse());
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return context instanceof ChatModelObservationContext;
+            }
+        };
+    }
+}
@@ -12,7 +12,7 @@ import java.util.List;
  * <p>Full event sequence:
  * <pre>
  * RequestInfo
- *   → ToolCallStart → ToolRetrieved → ToolReranked → ToolCallEnd   (per tool, may repeat)
+ *   → ToolCallStart → ToolRetrieved → ToolReranked → [ToolSources] → ToolCallEnd   (per tool, may repeat)
  *   → TokensStart → Content* → TokensEnd
  *   → [SourcesStart → Metadata*]
  * → RequestEnd
@@ -24,6 +24,7 @@ import java.util.List;
         @JsonSubTypes.Type(value = EventStreamValueHolder.ToolCallStart.class, name = "tool_call_start"),
         @JsonSubTypes.Type(value = EventStreamValueHolder.ToolRetrieved.class, name = "tool_retrieved"),
         @JsonSubTypes.Type(value = EventStreamValueHolder.ToolReranked.class, name = "tool_reranked"),
+        @JsonSubTypes.Type(value = EventStreamValueHolder.ToolSources.class, name = "tool_sources"),
         @JsonSubTypes.Type(value = EventStreamValueHolder.ToolCallEnd.class, name = "tool_call_end"),
         @JsonSubTypes.Type(value = EventStreamValueHolder.TokensStart.class, name = "tokens_start"),
         @JsonSubTypes.Type(value = EventStreamValueHolder.Content.class, name = "content"),
@@ -38,7 +39,9 @@ public sealed interface EventStreamValueHolder {
 
     record RequestInfo(String model, String userPrompt) implements EventStreamValueHolder {}
 
-    record RequestEnd(int promptTokens, int completionTokens, long totalDurationMs) implements EventStreamValueHolder {}
+    /** {@code cachedPromptTokens} is the part of {@code promptTokens} served from OpenAI's prompt cache. */
+    record RequestEnd(int promptTokens, int cachedPromptTokens, int completionTokens,
+                      long totalDurationMs) implements EventStreamValueHolder {}
 
     // --- Tool execution lifecycle ---
 
@@ -54,7 +57,18 @@ public sealed interface EventStreamValueHolder {
 
     record ToolRetrieved(String tool, List<DocScore> documents, long durationMs) implements EventStreamValueHolder {}
 
-    record ToolReranked(String tool, List<DocScore> documents, long durationMs) implements EventStreamValueHolder {}
+    /**
+     * {@code savedTokens} is the estimated size cut from the selection to fit the tool output
+     * budget (see {@code tools.<name>.maxTokens} and {@code tools.turnMaxTokens}).
+     */
+    record ToolReranked(String tool, List<DocScore> documents, long durationMs,
+                        int savedTokens) implements EventStreamValueHolder {}
+
+    /**
+     * Source URLs of the documents a tool call added to the answer that no earlier call of the
+     * request added; the final {@link Metadata} events still list all of them.
+     */
+    record ToolSources(String tool, List<String> sources) implements EventStreamValueHolder {}
 
     record ToolCallEnd(String tool, long totalDurationMs) implements EventStreamValueHolder {}
 
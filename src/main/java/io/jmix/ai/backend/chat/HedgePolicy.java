@@ -0,0 +1,52 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.parameters.ParametersReader;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+
+/**
+ * When a streamed model call is duplicated, read from the {@code model.hedge.*} parameters: if the
+ * first chunk has not arrived within {@code model.hedge.afterMs}, {@link HedgingOpenAiApi} sends
+ * the same request again, to {@code model.hedge.fallbackModel} if set, and the first stream to
+ * produce a chunk wins. Without {@code afterMs} calls are not hedged.
+ * <p>
+ * The fallback model receives the options of the primary one (temperature, reasoning effort), so
+ * it must accept them.
+ */
+public record HedgePolicy(@Nullable Duration after, @Nullable String fallbackModel) {
+
+    public static final HedgePolicy DISABLED = new HedgePolicy(null, null);
+
+    private static final String CONTEXT_KEY = HedgePolicy.class.getName();
+
+    public static HedgePolicy read(ParametersReader reader) {
+        Integer afterMs = reader.getInteger("model.hedge.afterMs", null);
+        if (afterMs == null) {
+            return DISABLED;
+        }
+        if (afterMs <= 0) {
+            throw new IllegalArgumentException(
+                    "Parameter 'model.hedge.afterMs' must be positive or null, got: " + afterMs);
+        }
+        String fallbackModel = reader.getString("model.hedge.fallbackModel", null);
+        return new HedgePolicy(Duration.ofMillis(afterMs),
+                fallbackModel == null || fallbackModel.isBlank() ? null : fallbackModel.trim());
+    }
+
+    public boolean isEnabled() {
+        return after != null;
+    }
+
+    /** Applies the policy to the model calls of a stream, including tool-calling rounds. */
+    public <T> Flux<T> stream(Flux<T> stream) {
+        return isEnabled() ? stream.contextWrite(context -> context.put(CONTEXT_KEY, this)) : stream;
+    }
+
+    @Nullable
+    static HedgePolicy from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+}
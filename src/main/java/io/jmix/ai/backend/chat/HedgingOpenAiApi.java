@@ -0,0 +1,121 @@
+package io.jmix.ai.backend.chat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link UsageTrackingOpenAiApi} hedging streamed chat completions by the {@link HedgePolicy} in
+ * the Reactor context of the stream.
+ * <p>
+ * When the first chunk of a completion is late, the same request is sent again, optionally to the
+ * fallback model. Both streams race: the first to emit a chunk is used and the other one is
+ * cancelled. A call that fails before the deadline fails as before, without a hedge; a call that
+ * fails after the hedge was sent leaves the hedge to answer.
+ * <p>
+ * Counter {@code jmix.ai.chat.hedge} reports streamed completions by outcome: {@code none} (the
+ * first chunk came in time), {@code primary} and {@code hedge} (a hedge was sent, and this stream
+ * won). Blocking completions are not hedged.
+ */
+public class HedgingOpenAiApi extends UsageTrackingOpenAiApi {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgingOpenAiApi.class);
+
+    private final Counter notHedged;
+    private final Counter primaryWon;
+    private final Counter hedgeWon;
+
+    public HedgingOpenAiApi(String apiKey, RestClient.Builder restClientBuilder,
+                            WebClient.Builder webClientBuilder, MeterRegistry meterRegistry) {
+        super(apiKey, restClientBuilder, webClientBuilder);
+        notHedged = counter(meterRegistry, "none", "Streamed completions whose first chunk came before the hedge deadline");
+        primaryWon = counter(meterRegistry, "primary", "Hedged streamed completions answered by the original request");
+        hedgeWon = counter(meterRegistry, "hedge", "Hedged streamed completions answered by the hedge request");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome, String description) {
+        return Counter.builder("jmix.ai.chat.hedge")
+                .description(description)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest,
+                                                          MultiValueMap<String, String> additionalHttpHeader) {
+        return Flux.deferContextual(context -> {
+            HedgePolicy policy = HedgePolicy.from(context);
+            return policy == null || !policy.isEnabled()
+                    ? send(chatRequest, additionalHttpHeader)
+                    : hedged(chatRequest, additionalHttpHeader, policy);
+        });
+    }
+
+    /** Sends one streamed completion request. */
+    Flux<ChatCompletionChunk> send(ChatCompletionRequest chatRequest,
+                                   MultiValueMap<String, String> additionalHttpHeader) {
+        return super.chatCompletionStream(chatRequest, additionalHttpHeader);
+    }
+
+    private Flux<ChatCompletionChunk> hedged(ChatCompletionRequest chatRequest,
+                                             MultiValueMap<String, String> additionalHttpHeader,
+                                             HedgePolicy policy) {
+        AtomicBoolean primaryTerminated = new AtomicBoolean();
+        AtomicReference<Throwable> primaryError = new AtomicReference<>();
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+        AtomicBoolean decided = new AtomicBoolean();
+
+        Flux<ChatCompletionChunk> primary = send(chatRequest, additionalHttpHeader)
+                .doOnNext(chunk -> {
+                    if (decided.compareAndSet(false, true)) {
+                        (hedgeSent.get() ? primaryWon : notHedged).increment();
+                    }
+                })
+                .doOnError(primaryError::set)
+                .doOnTerminate(() -> primaryTerminated.set(true));
+
+        Flux<ChatCompletionChunk> hedge = Mono.delay(policy.after())
+                // a primary that already ended has nothing to race against
+                .filter(tick -> !primaryTerminated.get())
+                .flatMapMany(tick -> {
+                    hedgeSent.set(true);
+                    ChatCompletionRequest hedgeRequest = withModel(chatRequest, policy.fallbackModel());
+                    log.info("No first chunk from {} within {}, hedging with {}",
+                            chatRequest.model(), policy.after(), hedgeRequest.model());
+                    return send(hedgeRequest, additionalHttpHeader)
+                            .doOnNext(chunk -> {
+                                if (decided.compareAndSet(false, true)) {
+                                    hedgeWon.increment();
+                                }
+                            });
+                });
+
+        // the first stream to emit a chunk wins and the other one is cancelled
+        return Flux.firstWithValue(primary, hedge)
+                .onErrorResume(NoSuchElementException.class, e -> {
+                    // no stream emitted: report what the original request ran into
+                    Throwable error = primaryError.get();
+                    return error != null ? Flux.error(error) : Flux.empty();
+                });
+    }
+
+    private static ChatCompletionRequest withModel(ChatCompletionRequest chatRequest, @Nullable String model) {
+        if (model == null || model.equals(chatRequest.model())) {
+            return chatRequest;
+        }
+        return ModelOptionsUtils.merge(Map.of("model", model), chatRequest, ChatCompletionRequest.class);
+    }
+}
@@ -0,0 +1,309 @@
+package io.jmix.ai.backend.chat;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes the tool calls of one model turn concurrently.
+ * <p>
+ * Spring AI's {@link DefaultToolCallingManager} runs the calls of a turn one after another, so a
+ * turn asking for several retrievers waits for the sum of their searches and reranks. Here every
+ * call is submitted to a shared pool of {@code chat.tools.threads} threads, which bounds the
+ * concurrency across all requests, and gets {@code chat.tools.timeout} to finish, counted from when
+ * a pool thread picks it up, so time spent queued behind other requests does not use it up. A call
+ * that times out is abandoned and interrupted, and answered with a message telling the model to
+ * continue without it; see {@link ToolCallScope} for how an abandoned call stops reporting events
+ * and adding documents to the answer.
+ * <p>
+ * Tool responses keep the order of the calls, so the resulting conversation is the same as with
+ * sequential execution. Each call runs on a single thread from start to end, so the
+ * {@link io.jmix.ai.backend.retrieval.ToolEventListener} events of one call stay ordered; events of
+ * different calls interleave, and listeners must accept calls from several threads.
+ * <p>
+ * When the tool context carries a cancelled {@link CancellationToken}, running calls are
+ * interrupted and the turn fails with {@link CancellationException} instead of returning results,
+ * so no further model call is made.
+ * <p>
+ * {@link #callAll} runs tools the same way without a model turn, for the retrieval-first pipeline.
+ */
+@Component
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelToolCallingManager.class);
+
+    private final ToolCallingManager delegate = DefaultToolCallingManager.builder().build();
+    private final ToolExecutionExceptionProcessor exceptionProcessor = DefaultToolExecutionExceptionProcessor.builder().build();
+    private final ExecutorService executor;
+    private final Duration timeout;
+
+    public ParallelToolCallingManager(@Value("${chat.tools.threads:16}") int threads,
+                                      @Value("${chat.tools.timeout:60s}") Duration timeout) {
+        this.timeout = timeout;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setName("tool-call-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A tool invocation that no model requested: the name is used in timeout and error messages.
+     */
+    public record DirectCall(String toolName, Callable<String> call) {
+    }
+
+    /**
+     * Runs the calls concurrently on the tool pool with the same timeout and cancellation handling
+     * as the calls of a model turn, and returns their results in the order of the calls.
+     *
+     * @throws CancellationException if the request is cancelled while the calls are running
+     */
+    public List<String> callAll(List<DirectCall> calls, @Nullable CancellationToken cancellation) {
+        if (cancellation != null) {
+            cancellation.throwIfCancelled();
+        }
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<Submitted> submitted = new ArrayList<>(calls.size());
+        for (DirectCall call : calls) {
+            submitted.add(submit(mdc, call.call()));
+        }
+        Runnable unregister = cancellation != null
+                ? cancellation.onCancel(() -> submitted.forEach(Submitted::abandon))
+                : () -> {};
+
+        List<String> results = new ArrayList<>(calls.size());
+        try {
+            for (int i = 0; i < calls.size(); i++) {
+                results.add(await(submitted.get(i), calls.get(i).toolName(), cancellation));
+            }
+            if (cancellation != null) {
+                // a call that was delivering when the request was cancelled still returned its result
+                cancellation.throwIfCancelled();
+            }
+        } finally {
+            unregister.run();
+        }
+        return results;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElse(null);
+        ToolCallingChatOptions options = prompt.getOptions() instanceof ToolCallingChatOptions o ? o : null;
+        if (assistantMessage == null || options == null) {
+            // nothing to parallelize; the delegate reports a missing tool call
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<ToolCallback> callbacks = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolCallback callback = findCallback(options, toolCall.name());
+            if (callback == null) {
+                // tools resolved by name only: leave them to the default resolution
+                return delegate.executeToolCalls(prompt, chatResponse);
+            }
+            callbacks.add(callback);
+        }
+
+        CancellationToken cancellation = CancellationToken.from(options.getToolContext());
+        if (cancellation != null) {
+            // the client is gone: neither run the tools nor let the model continue with their results
+            cancellation.throwIfCancelled();
+        }
+        ToolContext toolContext = buildToolContext(prompt, options, assistantMessage);
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<Submitted> submitted = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            ToolCallback callback = callbacks.get(i);
+            String arguments = toolCalls.get(i).arguments();
+            submitted.add(submit(mdc, () -> callback.call(arguments, toolContext)));
+        }
+        // interrupts the running calls, e.g. a blocked reranker request
+        Runnable unregister = cancellation != null
+                ? cancellation.onCancel(() -> submitted.forEach(Submitted::abandon))
+                : () -> {};
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        boolean returnDirect = true;
+        try {
+            for (int i = 0; i < toolCalls.size(); i++) {
+                AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+                String result = await(submitted.get(i), toolCall.name(), cancellation);
+                responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), result));
+                returnDirect &= callbacks.get(i).getToolMetadata().returnDirect();
+            }
+            if (cancellation != null) {
+                cancellation.throwIfCancelled();
+            }
+        } finally {
+            unregister.run();
+        }
+
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(new ToolResponseMessage(responses, Map.of()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    /** A call submitted to the pool, with the scope its tool reports through. */
+    private record Submitted(Future<String> future, ToolCallScope scope) {
+
+        /** Abandons the call and interrupts it; false if it is already delivering its result. */
+        boolean abandon() {
+            if (!scope.abandon()) {
+                return false;
+            }
+            future.cancel(true);
+            return true;
+        }
+    }
+
+    private Submitted submit(@Nullable Map<String, String> mdc, Callable<String> call) {
+        ToolCallScope scope = new ToolCallScope();
+        return new Submitted(executor.submit(withMdc(mdc, () -> scope.run(call))), scope);
+    }
+
+    private String await(Submitted call, String toolName, @Nullable CancellationToken cancellation) {
+        Future<String> future = call.future();
+        try {
+            String result = getWithinTimeout(call);
+            if (result == null && !future.isDone()) {
+                if (call.abandon()) {
+                    log.warn("Tool {} timed out after {}", toolName, timeout);
+                    return "The tool did not respond within %d seconds. Answer without its results."
+                            .formatted(timeout.toSeconds());
+                }
+                // it timed out while delivering its result: the delivery is in memory and short
+                result = future.get();
+            }
+            return result != null ? result : "";
+        } catch (CancellationException e) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                throw new CancellationException("The chat request was cancelled while " + toolName + " was running");
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.abandon();
+            throw new IllegalStateException("Interrupted while waiting for tool " + toolName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ToolExecutionException toolException) {
+                return exceptionProcessor.process(toolException);
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Tool " + toolName + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Waits for the result until the timeout has passed since the call started; returns null if it
+     * has not finished by then. A call still queued for a pool thread has not started.
+     */
+    @Nullable
+    private String getWithinTimeout(Submitted call) throws InterruptedException, ExecutionException {
+        long waitNanos = timeout.toNanos();
+        while (true) {
+            try {
+                return call.future().get(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (call.scope().isStarted()) {
+                    waitNanos = call.scope().startedAtNanos() + timeout.toNanos() - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        return null;
+                    }
+                } else {
+                    waitNanos = timeout.toNanos();
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static ToolCallback findCallback(ToolCallingChatOptions options, String toolName) {
+        return options.getToolCallbacks().stream()
+                .filter(callback -> toolName.equals(callback.getToolDefinition().name()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static ToolContext buildToolContext(Prompt prompt, ToolCallingChatOptions options,
+                                                AssistantMessage assistantMessage) {
+        if (options.getToolContext() == null || options.getToolContext().isEmpty()) {
+            return new ToolContext(Map.of());
+        }
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return new ToolContext(context);
+    }
+
+    private static <T> Callable<T> withMdc(@Nullable Map<String, String> mdc, Callable<T> task) {
+        return () -> {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                return task.call();
+            } finally {
+                MDC.clear();
+            }
+        };
+    }
+}
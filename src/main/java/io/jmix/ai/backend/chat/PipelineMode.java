@@ -0,0 +1,42 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.parameters.ParametersReader;
+
+/**
+ * How a chat request gets its context, selected by the {@code pipeline.mode} parameter.
+ */
+public enum PipelineMode {
+
+    /**
+     * The model gets the retrieval tools and decides what to search for: at least two model calls
+     * when it searches.
+     */
+    TOOL_CALLING("tool-calling"),
+
+    /**
+     * Every tool searches with the user question before the model is called, and the model answers
+     * from the retrieved context in a single call without tools.
+     */
+    RETRIEVAL_FIRST("retrieval-first");
+
+    private final String id;
+
+    PipelineMode(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public static PipelineMode read(ParametersReader reader) {
+        String id = reader.getString("pipeline.mode", TOOL_CALLING.getId());
+        for (PipelineMode mode : values()) {
+            if (mode.getId().equalsIgnoreCase(id.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException(
+                "Parameter 'pipeline.mode' must be 'tool-calling' or 'retrieval-first', got: " + id);
+    }
+}
@@ -0,0 +1,90 @@
+package io.jmix.ai.backend.chat;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of chat streams executing at once.
+ * <p>
+ * With virtual threads the streaming scheduler no longer limits concurrency by itself, so each
+ * stream takes a permit when it is subscribed and returns it on completion, error or cancel.
+ * A stream that cannot get a permit within {@code chat.streaming.max-queue-wait} fails with
+ * {@link RejectedExecutionException}. Gauges {@code jmix.ai.chat.streams.active} and
+ * {@code jmix.ai.chat.streams.queued} show the current load.
+ */
+@Component
+public class StreamConcurrencyLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final Duration maxQueueWait;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public StreamConcurrencyLimiter(@Value("${chat.streaming.max-concurrent:64}") int maxConcurrent,
+                                    @Value("${chat.streaming.max-queue-wait:30s}") Duration maxQueueWait,
+                                    MeterRegistry meterRegistry) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueueWait = maxQueueWait;
+        this.permits = new Semaphore(maxConcurrent, true);
+
+        Gauge.builder("jmix.ai.chat.streams.active", this, StreamConcurrencyLimiter::getActive)
+                .description("Chat streams currently executing")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.chat.streams.queued", queued, AtomicInteger::get)
+                .description("Chat streams waiting for an execution slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wraps the stream so that it holds a permit from subscription until it terminates. The permit
+     * is taken on the subscribing thread, so apply {@code subscribeOn} after this.
+     */
+    public <T> Flux<T> limit(Flux<T> stream) {
+        return Flux.using(this::acquire, permit -> stream, Permit::release);
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    Permit acquire() {
+        queued.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(maxQueueWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException(
+                        "Too many concurrent chat streams (%d), waited %s".formatted(maxConcurrent, maxQueueWait));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a chat stream slot", e);
+        } finally {
+            queued.decrementAndGet();
+        }
+        return new Permit();
+    }
+
+    final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
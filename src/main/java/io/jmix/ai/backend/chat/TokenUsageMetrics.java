@@ -0,0 +1,40 @@
+package io.jmix.ai.backend.chat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token usage of chat requests as counter {@code jmix.ai.chat.tokens}, tagged by type:
+ * {@code prompt}, {@code cached_prompt} (the part of the prompt served from OpenAI's prompt
+ * cache) and {@code completion}. The prompt cache hit ratio is the rate of {@code cached_prompt}
+ * divided by the rate of {@code prompt}.
+ */
+@Component
+public class TokenUsageMetrics {
+
+    private final Counter promptTokens;
+    private final Counter cachedPromptTokens;
+    private final Counter completionTokens;
+
+    public TokenUsageMetrics(MeterRegistry meterRegistry) {
+        promptTokens = Counter.builder("jmix.ai.chat.tokens")
+                .description("Prompt tokens of chat requests")
+                .tag("type", "prompt")
+                .register(meterRegistry);
+        cachedPromptTokens = Counter.builder("jmix.ai.chat.tokens")
+                .description("Prompt tokens of chat requests served from the prompt cache")
+                .tag("type", "cached_prompt")
+                .register(meterRegistry);
+        completionTokens = Counter.builder("jmix.ai.chat.tokens")
+                .description("Completion tokens of chat requests")
+                .tag("type", "completion")
+                .register(meterRegistry);
+    }
+
+    public void record(int prompt, int cachedPrompt, int completion) {
+        promptTokens.increment(prompt);
+        cachedPromptTokens.increment(cachedPrompt);
+        completionTokens.increment(completion);
+    }
+}
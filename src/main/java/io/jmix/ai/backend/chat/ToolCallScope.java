@@ -0,0 +1,82 @@
+package io.jmix.ai.backend.chat;
+
+import org.springframework.lang.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * A tool call run by {@link ParallelToolCallingManager}, bound to the pool thread executing it.
+ * <p>
+ * When the manager stops waiting for a call (timeout or cancelled request), it abandons the call.
+ * Interrupting the thread is not enough to stop it: JDBC and HTTP clients ignore the interrupt, so
+ * the call may still finish after the model has moved on. The tool therefore passes the part of
+ * the call that has effects outside it — events, documents added to the answer — to
+ * {@link #deliver}, which skips it once the call is abandoned. Abandoning and delivering exclude
+ * each other: a call that has started delivering is not abandoned, and its result is used instead.
+ */
+public final class ToolCallScope {
+
+    private static final ThreadLocal<ToolCallScope> CURRENT = new ThreadLocal<>();
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private volatile long startedAtNanos = NOT_STARTED;
+
+    // guarded by this
+    private boolean abandoned;
+    private boolean delivering;
+
+    ToolCallScope() {
+    }
+
+    /**
+     * Runs the delivery of the current tool call unless the call has been abandoned; returns null
+     * then. Outside a scope (a tool called directly) the delivery always runs.
+     */
+    @Nullable
+    public static <T> T deliver(Supplier<T> delivery) {
+        ToolCallScope scope = CURRENT.get();
+        if (scope != null) {
+            synchronized (scope) {
+                if (scope.abandoned) {
+                    return null;
+                }
+                scope.delivering = true;
+            }
+        }
+        return delivery.get();
+    }
+
+    /**
+     * Marks the call as abandoned. Returns false if it is already delivering its result: the
+     * caller should then wait for it, which takes no more than the in-memory delivery.
+     */
+    synchronized boolean abandon() {
+        if (delivering) {
+            return false;
+        }
+        abandoned = true;
+        return true;
+    }
+
+    /** Whether a pool thread has picked the call up; the timeout counts from then. */
+    boolean isStarted() {
+        return startedAtNanos != NOT_STARTED;
+    }
+
+    long startedAtNanos() {
+        return startedAtNanos;
+    }
+
+    /** Runs the task as this call on the current thread. */
+    <T> T run(Callable<T> task) throws Exception {
+        startedAtNanos = System.nanoTime();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+}
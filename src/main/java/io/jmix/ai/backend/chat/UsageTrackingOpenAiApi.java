@@ -0,0 +1,48 @@
+package io.jmix.ai.backend.chat;
+
+import org.springframework.ai.model.SimpleApiKey;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.openai.api.common.OpenAiApiConstants;
+import org.springframework.ai.retry.RetryUtils;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+/**
+ * {@link OpenAiApi} reporting the token usage of every chat completion to the
+ * {@link CachedTokensCounter} of the current request, if there is one.
+ */
+public class UsageTrackingOpenAiApi extends OpenAiApi {
+
+    public UsageTrackingOpenAiApi(String apiKey, RestClient.Builder restClientBuilder,
+                                  WebClient.Builder webClientBuilder) {
+        super(OpenAiApiConstants.DEFAULT_BASE_URL, new SimpleApiKey(apiKey), new LinkedMultiValueMap<>(),
+                "/v1/chat/completions", "/v1/embeddings", restClientBuilder, webClientBuilder,
+                RetryUtils.DEFAULT_RESPONSE_ERROR_HANDLER);
+    }
+
+    @Override
+    public ResponseEntity<ChatCompletion> chatCompletionEntity(ChatCompletionRequest chatRequest,
+                                                               MultiValueMap<String, String> additionalHttpHeader) {
+        ResponseEntity<ChatCompletion> response = super.chatCompletionEntity(chatRequest, additionalHttpHeader);
+        CachedTokensCounter counter = CachedTokensCounter.current();
+        if (counter != null && response.getBody() != null) {
+            counter.add(response.getBody().usage());
+        }
+        return response;
+    }
+
+    @Override
+    public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest,
+                                                          MultiValueMap<String, String> additionalHttpHeader) {
+        Flux<ChatCompletionChunk> chunks = super.chatCompletionStream(chatRequest, additionalHttpHeader);
+        return Flux.deferContextual(context -> {
+            CachedTokensCounter counter = CachedTokensCounter.from(context);
+            // only the last chunk of a completion carries usage (stream_options.include_usage)
+            return counter == null ? chunks : chunks.doOnNext(counter::add);
+        });
+    }
+}
@@ -9,13 +9,19 @@ import org.springframework.stereotype.Component;
 
 import java.util.List;
 
+/**
+ * Creates {@link ChatLog} entries for chat requests. The entries are persisted asynchronously by
+ * {@link ChatLogWriter}, so a saved log may appear in the database a moment later.
+ */
 @Component
 public class ChatLogManager {
 
     private final UnconstrainedDataManager dataManager;
+    private final ChatLogWriter chatLogWriter;
 
-    public ChatLogManager(UnconstrainedDataManager dataManager) {
+    public ChatLogManager(UnconstrainedDataManager dataManager, ChatLogWriter chatLogWriter) {
         this.dataManager = dataManager;
+        this.chatLogWriter = chatLogWriter;
     }
 
     public void saveResponse(String conversationId, Chat.StructuredResponse response) {
@@ -25,28 +31,31 @@ public class ChatLogManager {
         chatLog.setContent(NormalizationUtils.stripNul(String.join("\n", response.logMessages())));
         chatLog.setSources(response.sourceLinks() != null ? String.join(",", response.sourceLinks()) : null);
         chatLog.setPromptTokens(response.promptTokens());
+        chatLog.setCachedPromptTokens(response.cachedPromptTokens());
         chatLog.setCompletionTokens(response.completionTokens());
         chatLog.setResponseTime(response.responseTime());
-        dataManager.save(chatLog);
+        chatLogWriter.write(chatLog);
     }
 
     public void saveStreamResponse(String conversationId, List<String> logMessages,
                                     @Nullable String sources,
-                                    int promptTokens, int completionTokens, int responseTime) {
+                                    int promptTokens, int cachedPromptTokens,
+                                    int completionTokens, int responseTime) {
         ChatLog chatLog = dataManager.create(ChatLog.class);
         chatLog.setConversationId(conversationId);
         chatLog.setContent(NormalizationUtils.stripNul(String.join("\n", logMessages)));
         chatLog.setSources(sources);
         chatLog.setPromptTokens(promptTokens);
+        chatLog.setCachedPromptTokens(cachedPromptTokens);
         chatLog.setCompletionTokens(completionTokens);
         chatLog.setResponseTime(responseTime);
-        dataManager.save(chatLog);
+        chatLogWriter.write(chatLog);
     }
 
     public void saveError(String conversationId, String errorText) {
         ChatLog chatLog = dataManager.create(ChatLog.class);
         chatLog.setConversationId(conversationId);
         chatLog.setContent(NormalizationUtils.stripNul(errorText));
-        dataManager.save(chatLog);
+        chatLogWriter.write(chatLog);
     }
 }
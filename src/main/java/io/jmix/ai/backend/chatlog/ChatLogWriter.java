@@ -0,0 +1,178 @@
+package io.jmix.ai.backend.chatlog;
+
+import io.jmix.ai.backend.entity.ChatLog;
+import io.jmix.core.UuidProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence of {@link ChatLog} entries.
+ * <p>
+ * {@link #write} only enqueues the entry, so saving a log never adds latency to a chat response.
+ * A background thread inserts the queued entries in one JDBC batch every
+ * {@code chat-log.write-behind.flush-interval}, or as soon as {@code batch-size} entries are
+ * waiting. The queue holds at most {@code capacity} entries; when it is full, new entries are
+ * dropped. Entries still queued on shutdown are flushed. Counter {@code jmix.ai.chatlog.dropped}
+ * (by reason) and gauge {@code jmix.ai.chatlog.backlog} show the state of the queue.
+ */
+@Component
+public class ChatLogWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatLogWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO CHAT_LOG (ID, CREATED_DATE, CONVERSATION_ID, CONTENT, " +
+            "SOURCES, PROMPT_TOKENS, CACHED_PROMPT_TOKENS, COMPLETION_TOKENS, RESPONSE_TIME) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final BlockingQueue<ChatLog> queue;
+    private final ScheduledExecutorService flusher;
+
+    private final Counter droppedQueueFull;
+    private final Counter droppedWriteFailed;
+
+    @Autowired
+    public ChatLogWriter(DataSource dataSource,
+                         MeterRegistry meterRegistry,
+                         @Value("${chat-log.write-behind.capacity:10000}") int capacity,
+                         @Value("${chat-log.write-behind.batch-size:100}") int batchSize,
+                         @Value("${chat-log.write-behind.flush-interval:200ms}") Duration flushInterval) {
+        this(new JdbcTemplate(dataSource), meterRegistry, capacity, batchSize, flushInterval);
+    }
+
+    ChatLogWriter(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                  int capacity, int batchSize, Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-log-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        droppedQueueFull = Counter.builder("jmix.ai.chatlog.dropped")
+                .description("Chat log entries dropped because the write-behind queue was full")
+                .tag("reason", "queue-full")
+                .register(meterRegistry);
+        droppedWriteFailed = Counter.builder("jmix.ai.chatlog.dropped")
+                .description("Chat log entries lost because their batch insert failed")
+                .tag("reason", "write-failed")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.chatlog.backlog", queue, BlockingQueue::size)
+                .description("Chat log entries waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Enqueues the entry for insertion. Never blocks; the entry is dropped if the queue is full.
+     */
+    public void write(ChatLog chatLog) {
+        if (chatLog.getId() == null) {
+            chatLog.setId(UuidProvider.createUuid());
+        }
+        if (chatLog.getCreatedDate() == null) {
+            // no entity listener runs on the JDBC path: stamp the time the log was produced
+            chatLog.setCreatedDate(OffsetDateTime.now());
+        }
+        if (!queue.offer(chatLog)) {
+            droppedQueueFull.increment();
+            log.warn("Chat log queue is full, dropping the log of conversation {}", chatLog.getConversationId());
+            return;
+        }
+        if (queue.size() >= batchSize) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // shutting down: the final flush picks the entry up
+            }
+        }
+    }
+
+    /**
+     * Writes all queued entries, in batches of at most {@code batch-size}.
+     */
+    public synchronized void flush() {
+        List<ChatLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                insert(batch);
+            } catch (RuntimeException e) {
+                droppedWriteFailed.increment(batch.size());
+                log.error("Failed to write {} chat log entries", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // keep the scheduled task alive
+            log.error("Chat log flush failed", e);
+        }
+    }
+
+    private void insert(List<ChatLog> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, chatLog) -> {
+            ps.setObject(1, chatLog.getId());
+            ps.setObject(2, chatLog.getCreatedDate());
+            ps.setString(3, chatLog.getConversationId());
+            ps.setString(4, chatLog.getContent());
+            ps.setString(5, chatLog.getSources());
+            setInteger(ps, 6, chatLog.getPromptTokens());
+            setInteger(ps, 7, chatLog.getCachedPromptTokens());
+            setInteger(ps, 8, chatLog.getCompletionTokens());
+            setInteger(ps, 9, chatLog.getResponseTime());
+        });
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, @Nullable Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
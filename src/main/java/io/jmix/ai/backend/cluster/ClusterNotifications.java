@@ -0,0 +1,214 @@
+package io.jmix.ai.backend.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Cluster-wide notifications over PostgreSQL {@code LISTEN/NOTIFY} on the main database.
+ * <p>
+ * Every node keeps one connection listening on the subscribed channels and dispatches incoming
+ * payloads to the local subscribers. The listening connection is opened directly with the driver,
+ * outside the connection pool: it stays open for the life of the node, which the pool would count
+ * against its size, report as a leak and try to retire at its max lifetime. NOTIFY is not
+ * durable: whatever is sent while a node is disconnected is lost, so after every (re)connect
+ * subscribers get a resync callback and must treat their state as stale. On a non-PostgreSQL database (HSQLDB in tests) publishing is a
+ * no-op and no listener is started — a single node has nothing to synchronize.
+ */
+@Component
+public class ClusterNotifications {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterNotifications.class);
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private record Subscription(Consumer<String> onNotification, Runnable onResync) {
+    }
+
+    private final DataSource dataSource;
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private volatile boolean channelsChanged;
+    private volatile Boolean postgres;
+    private Thread listenerThread;
+
+    public ClusterNotifications(DataSource dataSource,
+                                DataSourceProperties dataSourceProperties,
+                                @Value("${cluster.notifications.enabled:true}") boolean enabled,
+                                @Value("${cluster.notifications.poll-timeout:1s}") Duration pollTimeout,
+                                @Value("${cluster.notifications.reconnect-delay:5s}") Duration reconnectDelay) {
+        this.dataSource = dataSource;
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.enabled = enabled;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    /**
+     * Registers a subscriber. {@code onNotification} receives the payload of every notification on
+     * the channel, including the ones this node sent; {@code onResync} runs after the listener
+     * (re)connects, when notifications may have been missed.
+     */
+    public void subscribe(String channel, Consumer<String> onNotification, Runnable onResync) {
+        checkChannel(channel);
+        subscriptions.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>())
+                .add(new Subscription(onNotification, onResync));
+        channelsChanged = true;
+    }
+
+    /**
+     * Sends a notification to all nodes. Outside a transaction it is delivered immediately, inside
+     * one on commit. An after-commit listener must publish in a new transaction: the connection of
+     * the committed one is still bound and nothing sent over it is ever committed.
+     */
+    public void publish(String channel, String payload) {
+        checkChannel(channel);
+        if (!isActive()) {
+            return;
+        }
+        try {
+            jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, channel, payload);
+        } catch (RuntimeException e) {
+            // other nodes catch up on their next resync or on the next change
+            log.warn("Failed to publish cluster notification to {}", channel, e);
+        }
+    }
+
+    @EventListener
+    public void onApplicationStarted(ApplicationStartedEvent event) {
+        if (!isActive()) {
+            log.info("Cluster notifications are disabled");
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "cluster-notifications");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private boolean isActive() {
+        if (!enabled) {
+            return false;
+        }
+        if (postgres == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                postgres = connection.isWrapperFor(PGConnection.class);
+            } catch (SQLException e) {
+                log.warn("Cannot detect the database type", e);
+                return false;
+            }
+        }
+        return postgres;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = openListenerConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                subscribeChannels(connection);
+                log.info("Listening for cluster notifications on {}", subscriptions.keySet());
+                // anything sent before LISTEN took effect is lost
+                resync();
+                while (running) {
+                    if (channelsChanged) {
+                        subscribeChannels(connection);
+                    }
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getName(), notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Cluster notification listener failed, reconnecting in {}", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private Connection openListenerConnection() throws SQLException {
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    private void subscribeChannels(Connection connection) throws SQLException {
+        channelsChanged = false;
+        try (Statement statement = connection.createStatement()) {
+            for (String channel : subscriptions.keySet()) {
+                // channel names are validated identifiers; LISTEN does not accept bind parameters
+                statement.execute("LISTEN " + channel);
+            }
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        for (Subscription subscription : subscriptions.getOrDefault(channel, List.of())) {
+            try {
+                subscription.onNotification().accept(payload);
+            } catch (RuntimeException e) {
+                log.error("Cluster notification handler failed on {}", channel, e);
+            }
+        }
+    }
+
+    private void resync() {
+        subscriptions.forEach((channel, list) -> list.forEach(subscription -> {
+            try {
+                subscription.onResync().run();
+            } catch (RuntimeException e) {
+                log.error("Cluster resync handler failed on {}", channel, e);
+            }
+        }));
+    }
+
+    private static void checkChannel(String channel) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+    }
+}
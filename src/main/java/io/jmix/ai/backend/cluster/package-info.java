@@ -0,0 +1,4 @@
+@NonNullApi
+package io.jmix.ai.backend.cluster;
+
+import org.springframework.lang.NonNullApi;
@@ -1,43 +1,57 @@
 package io.jmix.ai.backend.controller;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.jmix.ai.backend.chat.AnswerCache;
 import io.jmix.ai.backend.chat.Chat;
+import io.jmix.ai.backend.chat.ChatCoalescer;
+import io.jmix.ai.backend.chat.EventStreamValueHolder;
+import io.jmix.ai.backend.chat.StreamingEvent;
 import io.jmix.ai.backend.chatlog.ChatLogManager;
 import io.jmix.ai.backend.dto.StreamEventDto;
 import io.jmix.ai.backend.entity.JmixVersion;
 import io.jmix.ai.backend.entity.Parameters;
 import io.jmix.ai.backend.entity.ParametersTargetType;
-import io.jmix.ai.backend.parameters.ParametersRepository;
+import io.jmix.ai.backend.parameters.ActiveParametersCache;
+import io.jmix.ai.backend.util.SingleFlight;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 @RestController
 public class ChatController {
 
     private static final String REQUEST_TEXT_IS_EMPTY_OR_BLANK = "Request text is empty or blank";
     private static final String REQUEST_TEXT_IS_TOO_LONG = "Request text is too long";
+    private static final String COALESCED = "Answered by an identical request in flight";
 
     private final Chat chat;
-    private final ParametersRepository parametersRepository;
+    private final ActiveParametersCache activeParametersCache;
     private final ChatLogManager chatLogManager;
+    private final AnswerCache answerCache;
+    private final ChatCoalescer chatCoalescer;
 
     @Value("${chat.api.max-request-length}")
     private Integer maxRequestLength;
 
-    public ChatController(Chat chat, ParametersRepository parametersRepository, ChatLogManager chatLogManager) {
+    public ChatController(Chat chat, ActiveParametersCache activeParametersCache, ChatLogManager chatLogManager,
+                          AnswerCache answerCache, ChatCoalescer chatCoalescer) {
         this.chat = chat;
-        this.parametersRepository = parametersRepository;
+        this.activeParametersCache = activeParametersCache;
         this.chatLogManager = chatLogManager;
+        this.answerCache = answerCache;
+        this.chatCoalescer = chatCoalescer;
     }
 
     @PostMapping("/chat")
@@ -48,17 +62,49 @@ public class ChatController {
         if (version == null) {
             version = JmixVersion.V2;
         }
-        Parameters parameters = parametersRepository.loadActive(ParametersTargetType.CHAT);
-        Chat.StructuredResponse chatResponse = chat.requestStructured(
-                request.text(), parameters.getContent(), request.conversationId(), version, null);
+        long start = System.currentTimeMillis();
+        AnswerCache.Lookup lookup = lookupAnswer(request, version);
+        if (lookup != null && lookup.getAnswer() != null) {
+            AnswerCache.CachedAnswer answer = lookup.getAnswer();
+            answerCache.recordExchange(request.conversationId(), request.text(), answer);
+            chatLogManager.saveResponse(request.conversationId(), new Chat.StructuredResponse(answer.text(),
+                    List.of("Answered from the answer cache"), null, answer.sources(), 0, 0, 0,
+                    (int) (System.currentTimeMillis() - start)));
+            return ResponseEntity.ok(new Response(request.text(), answer.text(), "", answer.sources()));
+        }
+
+        Parameters parameters = activeParametersCache.getParameters(ParametersTargetType.CHAT);
+        JmixVersion jmixVersion = version;
+        Supplier<Chat.StructuredResponse> call = () -> chat.requestStructured(
+                request.text(), parameters.getContent(), request.conversationId(), jmixVersion, null);
+        ChatCoalescer.Key key = coalescingKey(request, version);
+        Chat.StructuredResponse chatResponse;
+        if (key != null) {
+            SingleFlight.Shared<Chat.StructuredResponse> shared = chatCoalescer.call(key, call);
+            chatResponse = shared.value();
+            if (!shared.leader()) {
+                List<String> sources = chatResponse.sourceLinks() != null ? chatResponse.sourceLinks() : List.of();
+                answerCache.recordExchange(request.conversationId(), request.text(),
+                        new AnswerCache.CachedAnswer(chatResponse.text(), sources));
+                chatLogManager.saveResponse(request.conversationId(), new Chat.StructuredResponse(chatResponse.text(),
+                        List.of(COALESCED), null, sources, 0, 0, 0, (int) (System.currentTimeMillis() - start)));
+                return ResponseEntity.ok(new Response(request.text(), chatResponse.text(), "", sources));
+            }
+        } else {
+            chatResponse = call.get();
+        }
 
         chatLogManager.saveResponse(request.conversationId(), chatResponse);
 
+        List<String> sources = chatResponse.sourceLinks() != null ? chatResponse.sourceLinks() : List.of();
+        if (lookup != null) {
+            answerCache.store(lookup, new AnswerCache.CachedAnswer(chatResponse.text(), sources));
+        }
         return ResponseEntity.ok(new Response(
                 request.text(),
                 chatResponse.text(),
                 "",
-                chatResponse.sourceLinks() != null ? chatResponse.sourceLinks() : List.of()
+                sources
         ));
     }
 
@@ -70,9 +116,89 @@ public class ChatController {
         if (version == null) {
             version = JmixVersion.V2;
         }
-        Parameters parameters = parametersRepository.loadActive(ParametersTargetType.CHAT);
-        return chat.requestStream(request.text(), parameters.getContent(), request.conversationId(), version)
-                .mapNotNull(holder -> StreamEventDto.fromModel(holder.value()));
+        long start = System.currentTimeMillis();
+        AnswerCache.Lookup lookup = lookupAnswer(request, version);
+        if (lookup != null && lookup.getAnswer() != null) {
+            AnswerCache.CachedAnswer answer = lookup.getAnswer();
+            answerCache.recordExchange(request.conversationId(), request.text(), answer);
+            chatLogManager.saveStreamResponse(request.conversationId(), List.of("Answered from the answer cache"),
+                    answer.sources().isEmpty() ? null : String.join(",", answer.sources()),
+                    0, 0, 0, (int) (System.currentTimeMillis() - start));
+            return Flux.fromIterable(toEvents(answer))
+                    .mapNotNull(StreamEventDto::fromModel);
+        }
+
+        Parameters parameters = activeParametersCache.getParameters(ParametersTargetType.CHAT);
+        JmixVersion jmixVersion = version;
+        Supplier<Flux<StreamingEvent>> streamRequest = () -> {
+            Flux<StreamingEvent> stream = chat.requestStream(
+                    request.text(), parameters.getContent(), request.conversationId(), jmixVersion);
+            return lookup != null ? answerCache.storing(lookup, stream) : stream;
+        };
+        boolean earlySources = Boolean.TRUE.equals(request.earlySources());
+        ChatCoalescer.Key key = coalescingKey(request, version);
+        if (key == null) {
+            return streamRequest.get().mapNotNull(holder -> StreamEventDto.fromModel(holder.value(), earlySources));
+        }
+        return chatCoalescer.stream(key, streamRequest, flight -> following(request, flight, start))
+                .mapNotNull(holder -> StreamEventDto.fromModel(holder.value(), earlySources));
+    }
+
+    /**
+     * Streams the events of the leader's request and, once it completes, records the answer in the
+     * follower's conversation and chat log, as the cache-hit path does.
+     */
+    private Flux<StreamingEvent> following(Request request, Flux<StreamingEvent> flight, long start) {
+        StringBuilder text = new StringBuilder();
+        List<String> sources = new ArrayList<>();
+        return flight
+                .doOnNext(event -> {
+                    switch (event.value()) {
+                        case EventStreamValueHolder.Content content -> text.append(content.text());
+                        case EventStreamValueHolder.Metadata metadata -> sources.add(metadata.source());
+                        default -> {
+                        }
+                    }
+                })
+                .doOnComplete(() -> {
+                    answerCache.recordExchange(request.conversationId(), request.text(),
+                            new AnswerCache.CachedAnswer(text.toString(), List.copyOf(sources)));
+                    chatLogManager.saveStreamResponse(request.conversationId(), List.of(COALESCED),
+                            sources.isEmpty() ? null : String.join(",", sources),
+                            0, 0, 0, (int) (System.currentTimeMillis() - start));
+                });
+    }
+
+    @Nullable
+    private ChatCoalescer.Key coalescingKey(Request request, JmixVersion version) {
+        String parametersVersion = activeParametersCache.getCompiled(ParametersTargetType.CHAT).getVersion();
+        return chatCoalescer.key(request.text(), request.conversationId(), version, parametersVersion);
+    }
+
+    /**
+     * Returns the answer cache lookup for a request that asked for caching, or null when the
+     * request does not use the cache.
+     */
+    @Nullable
+    private AnswerCache.Lookup lookupAnswer(Request request, JmixVersion version) {
+        if (!Boolean.TRUE.equals(request.cacheEnabled())) {
+            return null;
+        }
+        String parametersVersion = activeParametersCache.getCompiled(ParametersTargetType.CHAT).getVersion();
+        return answerCache.lookup(request.text(), request.conversationId(), version, parametersVersion);
+    }
+
+    /** The events a model call would stream for the answer, minus the tool and diagnostic ones. */
+    private static List<EventStreamValueHolder> toEvents(AnswerCache.CachedAnswer answer) {
+        List<EventStreamValueHolder> events = new ArrayList<>();
+        events.add(new EventStreamValueHolder.TokensStart());
+        events.add(new EventStreamValueHolder.Content(answer.text()));
+        events.add(new EventStreamValueHolder.TokensEnd());
+        if (!answer.sources().isEmpty()) {
+            events.add(new EventStreamValueHolder.SourcesStart());
+            answer.sources().forEach(source -> events.add(new EventStreamValueHolder.Metadata(source)));
+        }
+        return events;
     }
 
     private void validateRequest(Request request) {
@@ -97,6 +223,7 @@ public class ChatController {
             @JsonProperty("conversation_id") String conversationId,
             String text,
             @JsonProperty("cache_enabled") Boolean cacheEnabled,
-            @JsonProperty("jmix_version") String jmixVersion) {
+            @JsonProperty("jmix_version") String jmixVersion,
+            @JsonProperty("early_sources") Boolean earlySources) {
     }
 }
@@ -8,6 +8,7 @@ import io.jmix.ai.backend.retrieval.SearchService;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.document.Document;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,6 +24,9 @@ public class SearchV2Controller {
     private static final int MAX_QUERY_LENGTH = 10_000;
     private static final int MAX_TOKEN_BUDGET = 100_000;
 
+    /** Comma-separated names of the tools whose results are missing, see {@link SearchService.Result}. */
+    public static final String DEGRADED_TOOLS_HEADER = "X-Degraded-Tools";
+
     private final SearchService searchService;
 
     public SearchV2Controller(SearchService searchService) {
@@ -30,7 +34,7 @@ public class SearchV2Controller {
     }
 
     @PostMapping
-    public List<SearchResultDocument> search(@RequestBody SearchRequest request) {
+    public ResponseEntity<List<SearchResultDocument>> search(@RequestBody SearchRequest request) {
         if (StringUtils.isBlank(request.query())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query is empty or blank");
         }
@@ -58,16 +62,21 @@ public class SearchV2Controller {
             // this endpoint without naming a version gets the current Jmix release
             version = JmixVersion.V3;
         }
-        List<Document> sortedByRelevance = searchService.search(request.query(), version, request.maxResults());
-        List<Document> trimmedToBudget = SearchResultsFormatter.applyTokenBudget(sortedByRelevance, request.tokens());
+        SearchService.Result result = searchService.searchWithStatus(request.query(), version, request.maxResults());
+        List<Document> trimmedToBudget = SearchResultsFormatter.applyTokenBudget(result.documents(), request.tokens());
 
-        return trimmedToBudget.stream()
+        List<SearchResultDocument> body = trimmedToBudget.stream()
                 .map(document -> {
                     String title = SearchResultsFormatter.extractTitle(document);
                     String source = SearchResultsFormatter.extractSource(document);
                     return new SearchResultDocument(document.getId(), title, source, document.getText());
                 })
                 .toList();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.isDegraded()) {
+            response.header(DEGRADED_TOOLS_HEADER, String.join(",", result.degradedTools()));
+        }
+        return response.body(body);
     }
 
     public record SearchResultDocument(String id, String title, String source, String content) {
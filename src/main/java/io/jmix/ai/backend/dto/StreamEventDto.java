@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import io.jmix.ai.backend.chat.EventStreamValueHolder;
 import jakarta.validation.constraints.NotNull;
 
+import java.util.List;
+
 /**
  * Public API representation of {@link EventStreamValueHolder}.
  * Exposes only what external consumers need — no internal details like search queries or diagnostics.
@@ -12,6 +14,7 @@ import jakarta.validation.constraints.NotNull;
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
 @JsonSubTypes({
         @JsonSubTypes.Type(value = StreamEventDto.ToolCall.class, name = "tool_call"),
+        @JsonSubTypes.Type(value = StreamEventDto.ToolSources.class, name = "tool_sources"),
         @JsonSubTypes.Type(value = StreamEventDto.TokensStart.class, name = "tokens_start"),
         @JsonSubTypes.Type(value = StreamEventDto.Content.class, name = "content"),
         @JsonSubTypes.Type(value = StreamEventDto.TokensEnd.class, name = "tokens_end"),
@@ -22,6 +25,9 @@ public sealed interface StreamEventDto {
 
     record ToolCall(String tool) implements StreamEventDto {}
 
+    /** Sources found by a tool call, sent only to clients that asked for early sources. */
+    record ToolSources(String tool, List<String> sources) implements StreamEventDto {}
+
     record TokensStart() implements StreamEventDto {}
 
     record Content(String text) implements StreamEventDto {}
@@ -34,8 +40,17 @@ public sealed interface StreamEventDto {
 
     /** Maps internal StreamEvent to public DTO. Returns null for internal-only events. */
     static StreamEventDto fromModel(EventStreamValueHolder event) {
+        return fromModel(event, false);
+    }
+
+    /**
+     * Maps internal StreamEvent to public DTO; {@code earlySources} also passes the per-tool
+     * sources. Returns null for internal-only events.
+     */
+    static StreamEventDto fromModel(EventStreamValueHolder event, boolean earlySources) {
         return switch (event) {
             case EventStreamValueHolder.ToolCallStart tc -> new ToolCall(tc.tool());
+            case EventStreamValueHolder.ToolSources ts -> earlySources ? new ToolSources(ts.tool(), ts.sources()) : null;
             case EventStreamValueHolder.TokensStart ignored -> new TokensStart();
             case EventStreamValueHolder.Content c -> new Content(c.text());
             case EventStreamValueHolder.TokensEnd ignored -> new TokensEnd();
@@ -38,6 +38,9 @@ public class ChatLog {
     @Column(name = "PROMPT_TOKENS")
     private Integer promptTokens;
 
+    @Column(name = "CACHED_PROMPT_TOKENS")
+    private Integer cachedPromptTokens;
+
     @Column(name = "COMPLETION_TOKENS")
     private Integer completionTokens;
 
@@ -60,6 +63,14 @@ public class ChatLog {
         this.completionTokens = completionTokens;
     }
 
+    public Integer getCachedPromptTokens() {
+        return cachedPromptTokens;
+    }
+
+    public void setCachedPromptTokens(Integer cachedPromptTokens) {
+        this.cachedPromptTokens = cachedPromptTokens;
+    }
+
     public Integer getPromptTokens() {
         return promptTokens;
     }
@@ -4,7 +4,11 @@ import io.jmix.core.metamodel.datatype.EnumClass;
 
 import org.springframework.lang.Nullable;
 
-
+/**
+ * The vector store has a partial HNSW index per corpus type and Jmix version: a new value needs new
+ * index changesets in the pgvector changelog ({@code 18-100000-vector-store-filter-columns.xml}),
+ * otherwise its searches fall back to the global index.
+ */
 public enum JmixVersion implements EnumClass<String> {
 
     V2("v2"),
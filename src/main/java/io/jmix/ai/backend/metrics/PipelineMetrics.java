@@ -0,0 +1,107 @@
+package io.jmix.ai.backend.metrics;
+
+import io.jmix.ai.backend.entity.JmixVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the chat and search pipeline stages, as Micrometer timers with percentile histograms
+ * (exported to Prometheus, so SLOs can be defined on the {@code _bucket} series):
+ * <ul>
+ *   <li>{@code jmix.ai.pipeline.parameters.load} — compiling the request parameters</li>
+ *   <li>{@code jmix.ai.pipeline.prepare} — building the chat request: parameters, model, tools,
+ *       system message; tagged by {@code jmixVersion} and {@code model}</li>
+ *   <li>{@code jmix.ai.pipeline.embedding} — embedding calls of search queries, tagged by
+ *       {@code kind}: {@code query} (one text) or {@code batch} (concurrent queries embedded in
+ *       one call)</li>
+ *   <li>{@code jmix.ai.pipeline.vector.search}, {@code jmix.ai.pipeline.post.retrieval},
+ *       {@code jmix.ai.pipeline.rerank} and {@code jmix.ai.pipeline.tool} (the whole call) — the
+ *       stages of a retrieval tool call, tagged by {@code tool}, {@code corpus} (the vector store
+ *       type), {@code jmixVersion} and {@code pipeline} ({@code fixed} or {@code adaptive})</li>
+ *   <li>{@code jmix.ai.pipeline.first.token} — from the start of a chat stream to its first
+ *       content token; tagged by {@code jmixVersion} and {@code model}</li>
+ *   <li>{@code jmix.ai.pipeline.total} — whole requests, tagged by {@code operation}
+ *       ({@code chat}, {@code chat-stream}, {@code search}), {@code jmixVersion} and {@code model}</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetrics {
+
+    private static final String NO_MODEL = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Timers of the stages of one retrieval tool.
+     */
+    public record ToolTimers(Timer vectorSearch, Timer postRetrieval, Timer rerank, Timer total) {
+
+        /** Records nothing; used by tools created without metrics, e.g. in tests. */
+        public static final ToolTimers NOOP = new PipelineMetrics(new CompositeMeterRegistry())
+                .toolTimers("none", "none", JmixVersion.V2, false);
+    }
+
+    public ToolTimers toolTimers(String tool, String corpus, JmixVersion jmixVersion, boolean fixedPipeline) {
+        Tags tags = Tags.of(
+                "tool", tool,
+                "corpus", corpus,
+                "jmixVersion", jmixVersion.getId(),
+                "pipeline", fixedPipeline ? "fixed" : "adaptive");
+        return new ToolTimers(
+                timer("jmix.ai.pipeline.vector.search", "Vector store searches of retrieval tools, embedding included", tags),
+                timer("jmix.ai.pipeline.post.retrieval", "Post-retrieval filtering of retrieval tools", tags),
+                timer("jmix.ai.pipeline.rerank", "Reranking of retrieval tool candidates", tags),
+                timer("jmix.ai.pipeline.tool", "Retrieval tool calls from query to packed output", tags));
+    }
+
+    public void recordParametersLoad(long nanos) {
+        timer("jmix.ai.pipeline.parameters.load", "Compiling the parameters of a request", Tags.empty())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPreparation(JmixVersion jmixVersion, @Nullable String model, long nanos) {
+        timer("jmix.ai.pipeline.prepare", "Building a chat request before the first model call",
+                chatTags(jmixVersion, model))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEmbedding(int texts, long nanos) {
+        timer("jmix.ai.pipeline.embedding", "Embedding calls of search queries",
+                Tags.of("kind", texts == 1 ? "query" : "batch"))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFirstToken(JmixVersion jmixVersion, @Nullable String model, long nanos) {
+        timer("jmix.ai.pipeline.first.token", "Time from the start of a chat stream to its first content token",
+                chatTags(jmixVersion, model))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTotal(String operation, JmixVersion jmixVersion, @Nullable String model, long nanos) {
+        timer("jmix.ai.pipeline.total", "Whole chat and search requests",
+                chatTags(jmixVersion, model).and("operation", operation))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Tags chatTags(JmixVersion jmixVersion, @Nullable String model) {
+        return Tags.of("jmixVersion", jmixVersion.getId(), "model", model != null ? model : NO_MODEL);
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
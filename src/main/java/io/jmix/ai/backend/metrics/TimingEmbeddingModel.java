@@ -0,0 +1,48 @@
+package io.jmix.ai.backend.metrics;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Records the embedding calls of the wrapped model as {@code jmix.ai.pipeline.embedding}, see
+ * {@link PipelineMetrics}. Wraps only the model that embeds search queries, so this separates the
+ * embedding latency from the database part of a vector search; ingestion is not timed.
+ */
+public class TimingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final PipelineMetrics pipelineMetrics;
+
+    public TimingEmbeddingModel(EmbeddingModel delegate, PipelineMetrics pipelineMetrics) {
+        this.delegate = delegate;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        long start = System.nanoTime();
+        try {
+            return delegate.call(request);
+        } finally {
+            pipelineMetrics.recordEmbedding(request.getInstructions().size(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        long start = System.nanoTime();
+        try {
+            return delegate.embed(document);
+        } finally {
+            pipelineMetrics.recordEmbedding(1, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        // the default implementation embeds a test string; the delegate may know without a call
+        return delegate.dimensions();
+    }
+}
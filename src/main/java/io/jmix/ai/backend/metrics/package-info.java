@@ -0,0 +1,4 @@
+@NonNullApi
+package io.jmix.ai.backend.metrics;
+
+import org.springframework.lang.NonNullApi;
@@ -0,0 +1,123 @@
+package io.jmix.ai.backend.parameters;
+
+import io.jmix.ai.backend.cluster.ClusterNotifications;
+import io.jmix.ai.backend.entity.Parameters;
+import io.jmix.ai.backend.entity.ParametersTargetType;
+import io.jmix.core.event.EntityChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Active CHAT and SEARCH parameters held in memory, so the request path never queries the database.
+ * <p>
+ * A committed change of any {@link Parameters} entity (save, activation, deletion) drops the
+ * cached entries on this node and, via {@link ClusterNotifications}, on every other node; the
+ * entries are then reloaded right away. Gauge {@code jmix.ai.parameters.active} reports the
+ * loaded version (content hash) per type on each node.
+ */
+@Component
+public class ActiveParametersCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ActiveParametersCache.class);
+
+    static final String CHANNEL = "parameters_changed";
+
+    private record ActiveParameters(Parameters entity, CompiledParameters compiled) {
+    }
+
+    private final ParametersRepository parametersRepository;
+    private final ClusterNotifications clusterNotifications;
+    private final MultiGauge loadedVersions;
+    private final Map<ParametersTargetType, ActiveParameters> active = new ConcurrentHashMap<>();
+    // bumped by every invalidation: a load that raced with one must not be cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public ActiveParametersCache(ParametersRepository parametersRepository,
+                                 ClusterNotifications clusterNotifications,
+                                 MeterRegistry meterRegistry) {
+        this.parametersRepository = parametersRepository;
+        this.clusterNotifications = clusterNotifications;
+        this.loadedVersions = MultiGauge.builder("jmix.ai.parameters.active")
+                .description("Version (content hash) of the active parameters loaded on this node")
+                .register(meterRegistry);
+        clusterNotifications.subscribe(CHANNEL, payload -> refresh(), this::refresh);
+    }
+
+    /**
+     * Returns the active parameters entity of the type. The instance is shared: do not modify it.
+     */
+    public Parameters getParameters(ParametersTargetType type) {
+        return get(type).entity();
+    }
+
+    public CompiledParameters getCompiled(ParametersTargetType type) {
+        return get(type).compiled();
+    }
+
+    /**
+     * Runs after the commit, while the committed transaction's connection is still bound: the reload
+     * and the NOTIFY need a transaction of their own, otherwise the NOTIFY is never committed.
+     */
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onParametersChanged(EntityChangedEvent<Parameters> event) {
+        refresh();
+        clusterNotifications.publish(CHANNEL, event.getEntityId().getValue().toString());
+    }
+
+    /**
+     * Drops the cached parameters and loads them again.
+     */
+    public void refresh() {
+        synchronized (active) {
+            generation.incrementAndGet();
+            active.clear();
+        }
+        for (ParametersTargetType type : ParametersTargetType.values()) {
+            try {
+                get(type);
+            } catch (RuntimeException e) {
+                // the next request loads it
+                log.warn("Failed to reload active {} parameters", type, e);
+            }
+        }
+    }
+
+    private ActiveParameters get(ParametersTargetType type) {
+        ActiveParameters cached = active.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = generation.get();
+        Parameters entity = parametersRepository.loadActive(type);
+        ActiveParameters loaded = new ActiveParameters(entity, parametersRepository.compile(entity.getContent()));
+        synchronized (active) {
+            if (generation.get() != loadGeneration) {
+                return loaded;
+            }
+            active.put(type, loaded);
+            publishVersions();
+        }
+        log.info("Loaded active {} parameters, version {}", type, loaded.compiled().getVersion());
+        return loaded;
+    }
+
+    private void publishVersions() {
+        loadedVersions.register(active.entrySet().stream()
+                .map(e -> MultiGauge.Row.of(Tags.of(
+                        "type", e.getKey().name(),
+                        "version", e.getValue().compiled().getVersion()), 1))
+                .toList(), true);
+    }
+}
@@ -0,0 +1,80 @@
+package io.jmix.ai.backend.parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Immutable snapshot of one parameters YAML, built once per distinct content by
+ * {@link ParametersRepositoryExt#compile(String)}.
+ * <p>
+ * The YAML is parsed and flattened up front; typed sections (tool settings, reranker and model
+ * options) are derived from the {@link ParametersReader} on first use and memoized, so the
+ * request path neither parses YAML nor re-reads the same keys.
+ */
+public final class CompiledParameters {
+
+    private final String version;
+    private final ParametersReader reader;
+    private final Map<String, Object> sections = new ConcurrentHashMap<>();
+
+    public CompiledParameters(String version, ParametersReader reader) {
+        this.version = version;
+        this.reader = reader;
+    }
+
+    /**
+     * Compiles an already parsed map; the version is derived from its content.
+     */
+    public static CompiledParameters of(Map<String, Object> parametersMap) {
+        return new CompiledParameters(contentVersion(String.valueOf(parametersMap)), new ParametersReader(parametersMap));
+    }
+
+    /**
+     * Short content hash identifying the parameters: equal content gives an equal version on every node.
+     */
+    public static String contentVersion(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public ParametersReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Returns the typed section registered under {@code key}, computing it from the reader on the
+     * first call. The factory must be pure: under a race it may run more than once, and the first
+     * stored result wins. Invalid values surface as the factory's exception and are not memoized.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getSection(String key, Function<ParametersReader, T> factory) {
+        // not computeIfAbsent: a section factory may itself read other sections
+        Object section = sections.get(key);
+        if (section == null) {
+            section = factory.apply(reader);
+            Object existing = sections.putIfAbsent(key, section);
+            if (existing != null) {
+                section = existing;
+            }
+        }
+        return (T) section;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledParameters[" + version + "]";
+    }
+}
@@ -2,15 +2,39 @@ package io.jmix.ai.backend.parameters;
 
 import org.springframework.lang.Nullable;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Typed access to a parsed parameters map by dotted keys.
+ * <p>
+ * The nested map is flattened once on construction (every intermediate path is kept too, so
+ * {@code getValue("tools")} still returns the section), which makes each lookup a single hash
+ * lookup instead of a walk through the nested maps.
+ */
 public class ParametersReader {
 
-    private final Map<String, Object> parametersMap;
+    private final Map<String, Object> flatParameters;
 
-    public ParametersReader(Map<String, Object> parametersMap) {
-        this.parametersMap = parametersMap;
+    public ParametersReader(@Nullable Map<String, Object> parametersMap) {
+        Map<String, Object> flat = new HashMap<>();
+        if (parametersMap != null) {
+            flatten("", parametersMap, flat);
+        }
+        this.flatParameters = Collections.unmodifiableMap(flat);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(String prefix, Map<String, Object> map, Map<String, Object> flat) {
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            String key = prefix + entry.getKey();
+            flat.put(key, entry.getValue());
+            if (entry.getValue() instanceof Map<?, ?> nested) {
+                flatten(key + ".", (Map<String, Object>) nested, flat);
+            }
+        }
     }
 
     public String getString(String key) {
@@ -28,7 +52,19 @@ public class ParametersReader {
 
     public Integer getInteger(String key, Integer defaultValue) {
         Object value = getValue(key);
-        return value != null ? (Integer) value : defaultValue;
+        if (value == null) {
+            return defaultValue;
+        }
+        // "topK: 10.7" must not be truncated to 10, nor a long wrapped around
+        if (value instanceof Number number && isInt(number)) {
+            return number.intValue();
+        }
+        throw new IllegalArgumentException("Parameter '%s' must be an integer, got: %s".formatted(key, value));
+    }
+
+    private static boolean isInt(Number number) {
+        double value = number.doubleValue();
+        return value == Math.rint(value) && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
     }
 
     public double getDouble(String key) {
@@ -37,7 +73,14 @@ public class ParametersReader {
 
     public Double getDouble(String key, Double defaultValue) {
         Object value = getValue(key);
-        return value != null ? (Double) value : defaultValue;
+        if (value == null) {
+            return defaultValue;
+        }
+        // YAML reads "temperature: 1" as an integer
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        throw new IllegalArgumentException("Parameter '%s' must be a number, got: %s".formatted(key, value));
     }
 
     public boolean getBoolean(String key) {
@@ -46,7 +89,13 @@ public class ParametersReader {
 
     public Boolean getBoolean(String key, Boolean defaultValue) {
         Object value = getValue(key);
-        return value != null ? (Boolean) value : defaultValue;
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        throw new IllegalArgumentException("Parameter '%s' must be a boolean, got: %s".formatted(key, value));
     }
 
     @SuppressWarnings("unchecked")
@@ -56,39 +105,15 @@ public class ParametersReader {
     }
 
     /**
-     * Retrieves a value from a nested Map using dot notation.
+     * Retrieves a value from the parameters using dot notation.
      * @param key The dot notation key (e.g., "address.street")
      * @return The value, or null if the key path is invalid
      */
     @Nullable
     public Object getValue(String key) {
-        if (parametersMap == null || key == null || key.isEmpty()) {
+        if (key == null || key.isEmpty()) {
             return null;
         }
-
-        // Split the key into parts
-        String[] parts = key.split("\\.");
-        Map<String, Object> current = parametersMap;
-        Object value = null;
-
-        // Traverse the parametersMap for each part of the key
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-
-            // If this is the last part, get the value
-            if (i == parts.length - 1) {
-                value = current.get(part);
-            } else {
-                // Get the next nested map
-                Object next = current.get(part);
-                if (next instanceof Map) {
-                    current = (Map<String, Object>) next;
-                } else {
-                    return null; // Path is invalid
-                }
-            }
-        }
-
-        return value;
+        return flatParameters.get(key);
     }
 }
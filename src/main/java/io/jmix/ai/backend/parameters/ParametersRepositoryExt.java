@@ -15,4 +15,9 @@ public interface ParametersRepositoryExt {
     ParametersReader getReader(Parameters parameters);
 
     ParametersReader getReader(String parametersYaml);
+
+    /**
+     * Returns the compiled snapshot of the YAML; the same content is parsed only once.
+     */
+    CompiledParameters compile(String parametersYaml);
 }
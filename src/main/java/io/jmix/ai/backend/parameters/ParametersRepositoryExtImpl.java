@@ -14,14 +14,20 @@ import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
 public class ParametersRepositoryExtImpl implements ParametersRepositoryExt {
 
+    // a handful of parameter versions are in use at a time; overflowing means they churned
+    private static final int MAX_COMPILED = 64;
+
     private final UnconstrainedDataManager dataManager;
     private final Resources resources;
     private final MetadataTools metadataTools;
     private final ObjectMapper objectMapper;
+    // keyed by the YAML itself: a hit costs a hash and an equals, with no parsing
+    private final Map<String, CompiledParameters> compiled = new ConcurrentHashMap<>();
 
     public ParametersRepositoryExtImpl(UnconstrainedDataManager dataManager, Resources resources, MetadataTools metadataTools) {
         this.dataManager = dataManager;
@@ -96,15 +102,30 @@ public class ParametersRepositoryExtImpl implements ParametersRepositoryExt {
 
     @Override
     public ParametersReader getReader(Parameters parameters) {
-        return new ParametersReader(getObjectMap(parameters));
+        return compile(parameters.getContent()).getReader();
     }
 
     @Override
     public ParametersReader getReader(@Nullable String parametersYaml) {
-        return new ParametersReader(getObjectMap(parametersYaml));
+        return compile(parametersYaml).getReader();
+    }
+
+    @Override
+    public CompiledParameters compile(@Nullable String parametersYaml) {
+        String content = parametersYaml != null ? parametersYaml : "";
+        CompiledParameters result = compiled.get(content);
+        if (result == null) {
+            result = new CompiledParameters(CompiledParameters.contentVersion(content),
+                    new ParametersReader(getObjectMap(parametersYaml)));
+            if (compiled.size() >= MAX_COMPILED) {
+                compiled.clear();
+            }
+            compiled.putIfAbsent(content, result);
+        }
+        return result;
     }
 
-    private Map<String, Object> getObjectMap(String parametersYaml) {
+    private Map<String, Object> getObjectMap(@Nullable String parametersYaml) {
         if (parametersYaml == null) {
             return Map.of();
         }
@@ -125,8 +146,4 @@ public class ParametersRepositoryExtImpl implements ParametersRepositoryExt {
             throw new RuntimeException(e);
         }
     }
-
-    private Map<String, Object> getObjectMap(Parameters parameters) {
-        return getObjectMap(parameters.getContent());
-    }
 }
@@ -1,20 +1,22 @@
 package io.jmix.ai.backend.retrieval;
 
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.jmix.ai.backend.vectorstore.MultiCorpusVectorSearch;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.ai.tool.definition.ToolDefinition;
 import org.springframework.ai.tool.method.MethodToolCallback;
 import org.springframework.ai.util.json.schema.JsonSchemaGenerator;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.lang.Nullable;
 import org.springframework.util.ReflectionUtils;
 
 import io.jmix.ai.backend.chat.EventStreamValueHolder;
+import io.jmix.ai.backend.chat.ToolCallScope;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -22,7 +24,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The {@code topK} parameter selects between two pipelines. A number pins the fixed pipeline:
@@ -31,6 +37,11 @@ import java.util.stream.Collectors;
  * for. An explicit {@code topK: null} (or an absent key) enables the adaptive pipeline: the
  * model or the search API may request how many snippets it needs, and the candidate pool is
  * sized from that request.
+ * <p>
+ * Whatever the pipeline, the response is packed into a token budget: {@code maxTokens} per call
+ * and {@code tools.turnMaxTokens} across all tool calls answering one user message (both optional).
+ * Documents are kept by relevance until the budget is spent, and the last one is trimmed at a
+ * section boundary; see {@link ToolOutputPacker}.
  */
 public abstract class AbstractRagTool {
 
@@ -43,18 +54,27 @@ public abstract class AbstractRagTool {
     // with a margin and capped per source page, so the reranker always sees several distinct
     // pages to choose from.
     static final int MAX_CHUNKS_PER_SOURCE = 3;
+    static final String BUDGET_EXHAUSTED_MESSAGE =
+            "The tool output budget of this request is spent. Answer with the results already retrieved.";
     private static final String MAX_RESULTS_DESCRIPTION =
             "Optional: how many snippets to return (1-" + MAX_RESULTS_CAP
                     + "). Omit to use the configured default. The tool description states the "
                     + "approximate token size of one snippet.";
 
+    // the input schemas depend only on the entry point, so reflection and schema generation run once
+    private static final Method FIXED_METHOD = Objects.requireNonNull(
+            ReflectionUtils.findMethod(AbstractRagTool.class, "execute", String.class));
+    private static final Method ADAPTIVE_METHOD = Objects.requireNonNull(
+            ReflectionUtils.findMethod(AbstractRagTool.class, "execute", String.class, Integer.class));
+    private static final String FIXED_INPUT_SCHEMA = JsonSchemaGenerator.generateForMethodInput(FIXED_METHOD);
+    private static final String ADAPTIVE_INPUT_SCHEMA = JsonSchemaGenerator.generateForMethodInput(ADAPTIVE_METHOD);
+
     protected final String toolName;
-    protected final VectorStore vectorStore;
     private final PostRetrievalProcessor postRetrievalProcessor;
     private final Reranker reranker;
     private final List<Document> retrievedDocuments;
     private final ToolEventListener listener;
-    private final ParametersReader parametersReader;
+    private final CompiledParameters parameters;
     protected String type;
     protected final JmixVersion jmixVersion;
     private final boolean versionScoped;
@@ -66,66 +86,101 @@ public abstract class AbstractRagTool {
     private double minScore;
     private double minRerankedScore;
     private String noResultsMessage;
+    @Nullable
+    private Integer maxTokens;
+    private ToolOutputPacker.TurnBudget turnBudget = ToolOutputPacker.TurnBudget.UNLIMITED;
+    private PipelineMetrics.ToolTimers timers = PipelineMetrics.ToolTimers.NOOP;
+    @Nullable
+    private VectorSearchBatch vectorSearchBatch;
+    private final AtomicReference<Speculation> speculation = new AtomicReference<>();
+    private ToolDefinition toolDefinition;
+    private Filter.Expression filterExpression;
 
-    protected AbstractRagTool(String toolName, String type, VectorStore vectorStore,
-                              PostRetrievalProcessor postRetrievalProcessor, Reranker reranker,
-                              ParametersReader parametersReader, List<Document> retrievedDocuments,
+    protected AbstractRagTool(String toolName, String type, PostRetrievalProcessor postRetrievalProcessor,
+                              Reranker reranker, CompiledParameters parameters, List<Document> retrievedDocuments,
                               ToolEventListener listener, JmixVersion jmixVersion, boolean versionScoped) {
         this.toolName = toolName;
-        this.vectorStore = vectorStore;
         this.postRetrievalProcessor = postRetrievalProcessor;
         this.reranker = reranker;
         this.retrievedDocuments = retrievedDocuments;
         this.listener = listener;
-        this.parametersReader = parametersReader;
+        this.parameters = parameters;
         this.type = type;
         this.jmixVersion = Objects.requireNonNull(jmixVersion, "jmixVersion must not be null");
         this.versionScoped = versionScoped;
-        init(parametersReader);
+        init(parameters);
     }
     protected String getToolRootKey() {
         return "tools." + toolName;
     }
 
-    protected void init(ParametersReader parametersReader) {
-        // allows A/B testing an alternative corpus (e.g. docs-snippets) with the same tool
-        type = parametersReader.getString(getToolRootKey() + ".vectorType", type);
-        description = parametersReader.getString(getToolRootKey() + ".description");
-        Integer averageDocumentTokens = parametersReader.getInteger(
-                getToolRootKey() + ".averageDocumentTokens", null);
-        if (averageDocumentTokens != null && averageDocumentTokens > 0) {
-            description += " A typical returned snippet is about %d tokens."
-                    .formatted(averageDocumentTokens);
-        }
-        similarityThreshold = parametersReader.getDouble(getToolRootKey() + ".similarityThreshold");
-        topK = parametersReader.getInteger(getToolRootKey() + ".topK", null);
-        topReranked = parametersReader.getInt(getToolRootKey() + ".topReranked");
-        minScore = parametersReader.getDouble(getToolRootKey() + ".minScore");
-        minRerankedScore = parametersReader.getDouble(getToolRootKey() + ".minRerankedScore");
-        noResultsMessage = parametersReader.getString(getToolRootKey() + ".noResultsMessage", "No results found for the query. Try rephrasing your query or using another tool.");
+    protected void init(CompiledParameters parameters) {
+        String defaultType = type;
+        ToolSettings settings = parameters.getSection(getToolRootKey(),
+                reader -> ToolSettings.read(reader, getToolRootKey(), defaultType));
+        type = settings.type();
+        description = settings.description();
+        similarityThreshold = settings.similarityThreshold();
+        topK = settings.topK();
+        topReranked = settings.topReranked();
+        minScore = settings.minScore();
+        minRerankedScore = settings.minRerankedScore();
+        noResultsMessage = settings.noResultsMessage();
+        maxTokens = settings.maxTokens();
+        // the definition and the filter depend only on the parameters version (and the Jmix version)
+        toolDefinition = parameters.getSection(getToolRootKey() + "#definition",
+                reader -> buildToolDefinition());
+        filterExpression = parameters.getSection(getToolRootKey() + "#filter:" + jmixVersion.getId(),
+                reader -> buildFilterExpression());
+    }
+
+    /** Shares the tool output budget of the request with the other tools created for it. */
+    void setTurnBudget(ToolOutputPacker.TurnBudget turnBudget) {
+        this.turnBudget = turnBudget;
+    }
+
+    /** Runs the vector searches of this tool together with those of the other tools of the request. */
+    void setVectorSearchBatch(VectorSearchBatch vectorSearchBatch) {
+        this.vectorSearchBatch = vectorSearchBatch;
+    }
+
+    /** Records the stage latencies of this tool's calls. */
+    void setMetrics(PipelineMetrics pipelineMetrics) {
+        this.timers = pipelineMetrics.toolTimers(toolName, type, jmixVersion, isFixedPipeline());
     }
 
     private boolean isFixedPipeline() {
         return topK != null;
     }
 
+    public String getToolName() {
+        return toolName;
+    }
+
     public ToolCallback getToolCallback() {
         // the exposed method defines the LLM-visible schema: the fixed pipeline accepts only the
         // query, the adaptive one also lets the model request a result count
-        Method method = Objects.requireNonNull(isFixedPipeline()
-                ? ReflectionUtils.findMethod(getClass(), "execute", String.class)
-                : ReflectionUtils.findMethod(getClass(), "execute", String.class, Integer.class));
-
-        ToolCallback toolCallback = MethodToolCallback.builder()
-                .toolDefinition(ToolDefinition.builder()
-                        .name(toolName)
-                        .description(description)
-                        .inputSchema(JsonSchemaGenerator.generateForMethodInput(method))
-                        .build())
+        return MethodToolCallback.builder()
+                .toolDefinition(toolDefinition)
                 .toolObject(this)
-                .toolMethod(method)
+                .toolMethod(isFixedPipeline() ? FIXED_METHOD : ADAPTIVE_METHOD)
                 .build();
-        return toolCallback;
+    }
+
+    private ToolDefinition buildToolDefinition() {
+        return ToolDefinition.builder()
+                .name(toolName)
+                .description(description)
+                .inputSchema(isFixedPipeline() ? FIXED_INPUT_SCHEMA : ADAPTIVE_INPUT_SCHEMA)
+                .build();
+    }
+
+    private Filter.Expression buildFilterExpression() {
+        FilterExpressionBuilder fb = new FilterExpressionBuilder();
+        var typeFilter = fb.eq("type", type);
+        return versionScoped
+                ? fb.and(typeFilter, fb.eq("jmixVersion", jmixVersion.getId())).build()
+                : typeFilter.build();
     }
 
     /** Fixed-pipeline entry point: retrieval sizes come from the configuration alone. */
@@ -134,7 +189,7 @@ public abstract class AbstractRagTool {
             // an adaptive tool has no topK to unbox; a one-arg call means "no requested count"
             return execute(queryText, null);
         }
-        return executeSearch(queryText, topK, topReranked, null, null, null);
+        return executeSearch(queryText, defaultSizes(), null);
     }
 
     /**
@@ -152,121 +207,279 @@ public abstract class AbstractRagTool {
         }
         boolean callerRequested = maxResults != null && maxResults > 0;
         int requested = callerRequested ? Math.min(maxResults, MAX_RESULTS_CAP) : topReranked;
+        Sizes sizes = adaptiveSizes(requested);
+        return executeSearch(queryText, sizes,
+                callerRequested ? new EventStreamValueHolder.RequestedRetrieval(requested, sizes.vectorTopK()) : null);
+    }
+
+    /**
+     * Every retrieval knob explicit: fetch exactly {@code vectorTopK} candidates, ask the reranker
+     * for {@code rerankTopN}. Null {@code resultLimit} and {@code fallbackLimit} select the
+     * fixed-pipeline semantics — no per-source cap and an unbounded minScore filter when reranking
+     * fails; non-null values cap both paths.
+     */
+    private record Sizes(int vectorTopK, int rerankTopN, @Nullable Integer resultLimit, @Nullable Integer fallbackLimit) {
+    }
+
+    /** The sizes of a call that did not request a result count. */
+    private Sizes defaultSizes() {
+        return isFixedPipeline() ? new Sizes(topK, topReranked, null, null) : adaptiveSizes(topReranked);
+    }
+
+    private static Sizes adaptiveSizes(int requested) {
         // overfetch: the per-source cap needs spare candidates to refill from. The reranker is
         // asked for the whole pool — it scores every candidate in one call anyway, and truncating
         // its result before the cap would leave nothing to refill from when one page floods the top
         int vectorFetch = Math.min(requested * 4, MAX_VECTOR_FETCH);
-        return executeSearch(queryText, vectorFetch, vectorFetch, requested, requested,
-                callerRequested ? new EventStreamValueHolder.RequestedRetrieval(requested, vectorFetch) : null);
+        return new Sizes(vectorFetch, vectorFetch, requested, requested);
     }
 
     /**
-     * Runs the retrieval pipeline with every knob explicit: fetch exactly {@code vectorTopK}
-     * candidates, ask the reranker for {@code rerankTopN}. Null {@code resultLimit} and
-     * {@code fallbackLimit} select the fixed-pipeline semantics — no per-source cap and an
-     * unbounded minScore filter when reranking fails; non-null values cap both paths.
+     * What the retrieval stages of a call produced, before anything is reported or packed: the
+     * vector search candidates, the selection with its scores (null when nothing reached the
+     * reranker), the log lines of the stages and how long they took.
      */
-    private String executeSearch(
-            String queryText,
-            int vectorTopK,
-            int rerankTopN,
-            @Nullable Integer resultLimit,
-            @Nullable Integer fallbackLimit,
-            @Nullable EventStreamValueHolder.RequestedRetrieval requested) {
+    private record Retrieval(List<EventStreamValueHolder.DocScore> retrieved, long retrievalMs,
+                             @Nullable List<Document> selected, List<EventStreamValueHolder.DocScore> scores,
+                             long rerankMs, List<String> logs, long durationNanos) {
+    }
+
+    /** A retrieval started with the user question before the model called the tool. */
+    private record Speculation(String query, Sizes sizes, double minSimilarity, Future<Retrieval> result,
+                               long startedAtNanos, SpeculativeRetrieval owner) {
+    }
+
+    private String executeSearch(String queryText, Sizes sizes,
+                                 @Nullable EventStreamValueHolder.RequestedRetrieval requested) {
         long startTime = System.currentTimeMillis();
         listener.onToolCallStart(toolName, queryText, requested);
 
         try {
-            // Retrieval
-            SearchRequest.Builder requestBuilder = SearchRequest.builder()
-                    .query(queryText)
-                    .similarityThreshold(similarityThreshold)
-                    .topK(vectorTopK);
-
-            FilterExpressionBuilder fb = new FilterExpressionBuilder();
-            var typeFilter = fb.eq("type", type);
-            var filter = versionScoped
-                    ? fb.and(typeFilter, fb.eq("jmixVersion", jmixVersion.getId())).build()
-                    : typeFilter.build();
-            requestBuilder.filterExpression(filter);
-
-            SearchRequest searchRequest = requestBuilder.build();
-
-            long retrievalStart = System.currentTimeMillis();
-            List<Document> documents = vectorStore.similaritySearch(searchRequest);
-            long retrievalMs = System.currentTimeMillis() - retrievalStart;
-
-            if (documents == null) {
-                listener.onToolRetrieved(toolName, List.of(), retrievalMs);
-                return getNoResultsMessage();
+            Retrieval retrieval = takeSpeculation(queryText, sizes);
+            if (retrieval == null) {
+                retrieval = retrieve(queryText, sizes);
             }
-            listener.onToolRetrieved(toolName, toDocScores(documents), retrievalMs);
-
-            documents = postRetrievalProcessor.process(queryText, documents);
-            if (documents.isEmpty()) {
-                listener.onLog("All documents filtered out by PostRetrievalProcessor");
+            Retrieval finished = retrieval;
+            String result = ToolCallScope.deliver(() -> deliver(finished));
+            if (result == null) {
+                // the model was told the tool did not respond: report and add nothing
+                listener.onLog("Results discarded, the tool call was abandoned");
                 return getNoResultsMessage();
             }
+            return result;
+        } finally {
+            long totalMs = System.currentTimeMillis() - startTime;
+            timers.total().record(totalMs, TimeUnit.MILLISECONDS);
+            listener.onToolCallEnd(toolName, totalMs);
+        }
+    }
 
-            // Reranking. The reranker judges every candidate: capping per source beforehand would
-            // hide relevant chunks from it by raw cosine alone — the page that legitimately holds
-            // most of the answer loses its less obvious parts (a job page keeps its "how to
-            // schedule" snippets and drops the "authenticate the job" one). The cap is applied to
-            // the reranked list instead, where dropped chunks can be replaced by the next best
-            // ones the reranker already scored.
-            List<Document> filteredDocuments;
-
-            long rerankStart = System.currentTimeMillis();
-            List<Reranker.Result> rerankResults =
-                    reranker.rerank(queryText, documents, rerankTopN, parametersReader);
-            long rerankMs = System.currentTimeMillis() - rerankStart;
-
-            if (rerankResults == null) {
-                listener.onLog("Reranking failed, filtering by minScore");
-                List<Document> minScoreFiltered = documents.stream()
-                        .filter(document ->
-                                minScore <= 0.0 || document.getScore() == null || document.getScore() >= minScore)
-                        .toList();
-                filteredDocuments = fallbackLimit == null
-                        ? minScoreFiltered
-                        : capPerSource(minScoreFiltered, fallbackLimit);
-                listener.onToolReranked(toolName, toDocScores(filteredDocuments), rerankMs);
-            } else {
-                List<Reranker.Result> filteredRerankResults = rerankResults.stream()
-                        .filter(rr -> rr.score() >= minRerankedScore)
-                        .toList();
-
-                for (Reranker.Result result : filteredRerankResults) {
-                    result.document().getMetadata().put("rerankScore", result.score());
-                }
-
-                List<Document> rerankedDocuments = filteredRerankResults.stream()
-                        .map(Reranker.Result::document)
-                        .toList();
-                filteredDocuments = resultLimit == null
-                        ? rerankedDocuments
-                        : capPerSource(rerankedDocuments, resultLimit);
-                List<Document> selected = filteredDocuments;
-                listener.onToolReranked(toolName,
-                        filteredRerankResults.stream()
-                                .filter(rr -> selected.contains(rr.document()))
-                                .map(rr -> new EventStreamValueHolder.DocScore(rr.score(), RetrievalUtils.getUrlOrSource(rr.document())))
-                                .toList(),
-                        rerankMs);
-            }
+    /**
+     * Runs vector search, post-retrieval filtering, reranking and selection. Collects its log lines
+     * instead of reporting them, so that it can run ahead of the tool call as a speculation.
+     */
+    private Retrieval retrieve(String queryText, Sizes sizes) {
+        long start = System.nanoTime();
+        List<String> logs = new ArrayList<>();
 
-            if (filteredDocuments.isEmpty()) {
-                return getNoResultsMessage();
+        // Retrieval
+        long retrievalStart = System.currentTimeMillis();
+        List<Document> documents = vectorSearch(queryText, sizes.vectorTopK());
+        long retrievalMs = System.currentTimeMillis() - retrievalStart;
+        timers.vectorSearch().record(retrievalMs, TimeUnit.MILLISECONDS);
+
+        List<EventStreamValueHolder.DocScore> retrieved = toDocScores(documents);
+
+        long postRetrievalStart = System.nanoTime();
+        documents = postRetrievalProcessor.process(queryText, documents);
+        timers.postRetrieval().record(System.nanoTime() - postRetrievalStart, TimeUnit.NANOSECONDS);
+        if (documents.isEmpty()) {
+            logs.add("All documents filtered out by PostRetrievalProcessor");
+            return new Retrieval(retrieved, retrievalMs, null, List.of(), 0, logs, System.nanoTime() - start);
+        }
+
+        // Reranking. The reranker judges every candidate: capping per source beforehand would
+        // hide relevant chunks from it by raw cosine alone — the page that legitimately holds
+        // most of the answer loses its less obvious parts (a job page keeps its "how to
+        // schedule" snippets and drops the "authenticate the job" one). The cap is applied to
+        // the reranked list instead, where dropped chunks can be replaced by the next best
+        // ones the reranker already scored.
+        List<Document> filteredDocuments;
+
+        if (Thread.currentThread().isInterrupted()) {
+            // the chat request was cancelled during retrieval: nobody will read the result
+            logs.add("Cancelled before reranking");
+            return new Retrieval(retrieved, retrievalMs, null, List.of(), 0, logs, System.nanoTime() - start);
+        }
+
+        long rerankStart = System.currentTimeMillis();
+        List<Reranker.Result> rerankResults =
+                reranker.rerank(queryText, documents, sizes.rerankTopN(), parameters);
+        long rerankMs = System.currentTimeMillis() - rerankStart;
+        timers.rerank().record(rerankMs, TimeUnit.MILLISECONDS);
+
+        // scores reported for the selection: rerank scores, or similarity when reranking failed
+        List<EventStreamValueHolder.DocScore> scores;
+        if (rerankResults == null) {
+            logs.add("Reranking failed, filtering by minScore");
+            List<Document> minScoreFiltered = documents.stream()
+                    .filter(document ->
+                            minScore <= 0.0 || document.getScore() == null || document.getScore() >= minScore)
+                    .toList();
+            filteredDocuments = sizes.fallbackLimit() == null
+                    ? minScoreFiltered
+                    : capPerSource(minScoreFiltered, sizes.fallbackLimit(), logs);
+            scores = toDocScores(filteredDocuments);
+        } else {
+            List<Reranker.Result> filteredRerankResults = rerankResults.stream()
+                    .filter(rr -> rr.score() >= minRerankedScore)
+                    .toList();
+
+            for (Reranker.Result result : filteredRerankResults) {
+                result.document().getMetadata().put("rerankScore", result.score());
             }
 
-            retrievedDocuments.addAll(filteredDocuments);
+            List<Document> rerankedDocuments = filteredRerankResults.stream()
+                    .map(Reranker.Result::document)
+                    .toList();
+            filteredDocuments = sizes.resultLimit() == null
+                    ? rerankedDocuments
+                    : capPerSource(rerankedDocuments, sizes.resultLimit(), logs);
+            List<Document> selected = filteredDocuments;
+            scores = filteredRerankResults.stream()
+                    .filter(rr -> selected.contains(rr.document()))
+                    .map(rr -> new EventStreamValueHolder.DocScore(rr.score(), RetrievalUtils.getUrlOrSource(rr.document())))
+                    .toList();
+        }
+        return new Retrieval(retrieved, retrievalMs, filteredDocuments, scores, rerankMs, logs,
+                System.nanoTime() - start);
+    }
 
-            return filteredDocuments.stream()
-                    .map(Document::getText)
-                    .collect(Collectors.joining("\n\n"));
-        } finally {
-            listener.onToolCallEnd(toolName, System.currentTimeMillis() - startTime);
+    /**
+     * Runs the vector search of this tool's corpus, batched with the searches of the other tools
+     * of the request.
+     */
+    private List<Document> vectorSearch(String queryText, int vectorTopK) {
+        if (vectorSearchBatch == null) {
+            throw new IllegalStateException("Tool " + toolName + " has no vector search batch, create it with ToolsManager");
+        }
+        return vectorSearchBatch.search(new MultiCorpusVectorSearch.CorpusQuery(
+                queryText, filterExpression, vectorTopK, similarityThreshold));
+    }
+
+    /**
+     * Reports the retrieval to the listener, packs the selection into the token budget and adds
+     * it to the documents of the request.
+     */
+    private String deliver(Retrieval retrieval) {
+        listener.onToolRetrieved(toolName, retrieval.retrieved(), retrieval.retrievalMs());
+        retrieval.logs().forEach(listener::onLog);
+        List<Document> filteredDocuments = retrieval.selected();
+        if (filteredDocuments == null) {
+            return getNoResultsMessage();
+        }
+
+        ToolOutputPacker.Packed packed = pack(filteredDocuments);
+        List<Document> packedDocuments = packed.documents();
+        List<EventStreamValueHolder.DocScore> scores = retrieval.scores();
+        if (packedDocuments.size() < scores.size()) {
+            scores = scores.subList(0, packedDocuments.size());
+        }
+        listener.onToolReranked(toolName, scores, retrieval.rerankMs(), packed.savedTokens());
+
+        if (filteredDocuments.isEmpty()) {
+            return getNoResultsMessage();
+        }
+        if (packedDocuments.isEmpty()) {
+            listener.onLog("Tool output budget exhausted, dropped %d documents".formatted(filteredDocuments.size()));
+            return BUDGET_EXHAUSTED_MESSAGE;
+        }
+
+        retrievedDocuments.addAll(packedDocuments);
+        List<String> urls = packedDocuments.stream()
+                .map(document -> document.getMetadata().get("url"))
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .distinct()
+                .toList();
+        if (!urls.isEmpty()) {
+            listener.onToolSources(toolName, urls);
+        }
+
+        return packed.joined();
+    }
+
+    /**
+     * Starts retrieving with the user question and the default sizes, for the tool call the model
+     * is expected to make; see {@link SpeculativeRetrieval}.
+     */
+    void speculate(String question, double minSimilarity, SpeculativeRetrieval owner) {
+        Sizes sizes = defaultSizes();
+        long startedAt = System.nanoTime();
+        Future<Retrieval> result = owner.submit(() -> retrieve(question, sizes));
+        if (result != null) {
+            speculation.set(new Speculation(question, sizes, minSimilarity, result, startedAt, owner));
+        }
+    }
+
+    /** Cancels the speculation if no tool call has taken it. */
+    void discardSpeculation() {
+        Speculation discarded = speculation.getAndSet(null);
+        if (discarded != null) {
+            discarded.result().cancel(true);
+            discarded.owner().recordUnused();
+        }
+    }
+
+    /**
+     * Returns the result of the speculation if this call asks for what it retrieves, waiting for it
+     * if it is still running. The first call of the tool decides: a speculation that does not match
+     * it is cancelled.
+     */
+    @Nullable
+    private Retrieval takeSpeculation(String queryText, Sizes sizes) {
+        Speculation taken = speculation.getAndSet(null);
+        if (taken == null) {
+            return null;
+        }
+        double similarity = SpeculativeRetrieval.similarity(taken.query(), queryText);
+        if (!taken.sizes().equals(sizes) || similarity < taken.minSimilarity()) {
+            taken.result().cancel(true);
+            taken.owner().recordMiss();
+            listener.onLog("Speculative retrieval discarded (query similarity %.2f)".formatted(similarity));
+            return null;
+        }
+        long sinceStart = System.nanoTime() - taken.startedAtNanos();
+        try {
+            Retrieval retrieval = taken.result().get();
+            taken.owner().recordHit(Math.min(sinceStart, retrieval.durationNanos()));
+            listener.onLog("Reused the speculative retrieval (query similarity %.2f)".formatted(similarity));
+            return retrieval;
+        } catch (InterruptedException e) {
+            // the tool call was cancelled or timed out: let the regular path see the interrupt
+            Thread.currentThread().interrupt();
+            taken.result().cancel(true);
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            taken.owner().recordMiss();
+            listener.onLog("Speculative retrieval failed, searching again: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Packs the selection into the smaller of the tool's own budget and what is left of the
+     * request's budget; the unused part of the reservation is returned to the request.
+     */
+    private ToolOutputPacker.Packed pack(List<Document> documents) {
+        int granted = turnBudget.reserve(maxTokens != null ? maxTokens : Integer.MAX_VALUE);
+        ToolOutputPacker.Packed packed = ToolOutputPacker.pack(documents, granted);
+        turnBudget.release(granted - packed.usedTokens());
+        if (packed.savedTokens() > 0) {
+            listener.onLog("Packed %d of %d documents into %d tokens, saved %d tokens".formatted(
+                    packed.documents().size(), documents.size(), packed.usedTokens(), packed.savedTokens()));
         }
+        return packed;
     }
 
     /**
@@ -274,7 +487,7 @@ public abstract class AbstractRagTool {
      * the list back to {@code limit}, preserving the similarity order. Documents without a
      * {@code source} are never capped.
      */
-    private List<Document> capPerSource(List<Document> documents, int limit) {
+    private List<Document> capPerSource(List<Document> documents, int limit, List<String> logs) {
         Map<Object, Integer> chunksPerSource = new HashMap<>();
         List<Document> capped = new ArrayList<>(Math.min(documents.size(), limit));
         int flooded = 0;
@@ -290,7 +503,7 @@ public abstract class AbstractRagTool {
             }
         }
         if (flooded > 0) {
-            listener.onLog("Per-source cap dropped %d flooded chunks".formatted(flooded));
+            logs.add("Per-source cap dropped %d flooded chunks".formatted(flooded));
         }
         return capped;
     }
@@ -1,18 +1,17 @@
 package io.jmix.ai.backend.retrieval;
 
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.ai.backend.parameters.CompiledParameters;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 
 import java.util.List;
 
 public class DocsTool extends AbstractRagTool {
 
-    public DocsTool(VectorStore vectorStore, PostRetrievalProcessor postRetrievalProcessor, Reranker reranker,
-                    ParametersReader parametersReader, List<Document> retrievedDocuments, ToolEventListener listener,
+    public DocsTool(PostRetrievalProcessor postRetrievalProcessor, Reranker reranker,
+                    CompiledParameters parameters, List<Document> retrievedDocuments, ToolEventListener listener,
                     JmixVersion jmixVersion) {
-        super("documentation_retriever", "docs", vectorStore, postRetrievalProcessor, reranker,
-                parametersReader, retrievedDocuments, listener, jmixVersion, true);
+        super("documentation_retriever", "docs", postRetrievalProcessor, reranker,
+                parameters, retrievedDocuments, listener, jmixVersion, true);
     }
 }
@@ -1,60 +1,97 @@
 package io.jmix.ai.backend.retrieval;
 
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
 import io.jmix.ai.backend.parameters.ParametersReader;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.Scope;
 import org.springframework.lang.Nullable;
-import org.springframework.scripting.ScriptEvaluator;
-import org.springframework.scripting.support.StaticScriptSource;
-import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
-@Component
-@Scope(BeanDefinition.SCOPE_PROTOTYPE)
+/**
+ * Filters retrieved documents by the Groovy rules of {@code postRetrievalProcessor.rules}.
+ * <p>
+ * The rules are compiled once per parameters version (see {@link ToolsManager}); a script class
+ * is instantiated with a fresh binding per evaluation, so one processor is shared by concurrent
+ * requests. {@link #withLogger} binds a request's logger without recompiling.
+ */
 public class PostRetrievalProcessor {
 
     private static final Logger log = LoggerFactory.getLogger(PostRetrievalProcessor.class);
 
     private final List<Rule> rules;
 
+    @Nullable
     private final Consumer<String> logger;
 
-    @Autowired
-    private ScriptEvaluator scriptEvaluator;
+    private record Rule(String name, @Nullable Class<? extends Script> scriptClass) {
+    }
 
-    private record Rule(String name, String script) {
+    public PostRetrievalProcessor(ParametersReader parametersReader) {
+        this(compileRules(parametersReader), null);
     }
 
-    public PostRetrievalProcessor(ParametersReader parametersReader, @Nullable Consumer<String> logger) {
+    private PostRetrievalProcessor(List<Rule> rules, @Nullable Consumer<String> logger) {
+        this.rules = rules;
         this.logger = logger;
-        List<Map<String, Object>> ruleMaps = parametersReader.getList("postRetrievalProcessor.rules");
-        rules = ruleMaps.stream()
-                .map(map -> new Rule((String) map.get("name"), (String) map.get("script")))
-                .toList();
+    }
+
+    /**
+     * Returns a processor with the same compiled rules that reports filtered documents to {@code logger}.
+     */
+    public PostRetrievalProcessor withLogger(@Nullable Consumer<String> logger) {
+        return new PostRetrievalProcessor(rules, logger);
     }
 
     public List<Document> process(String userQuery, List<Document> documents) {
+        if (rules.isEmpty()) {
+            return documents;
+        }
         List<Document> resultList = documents.stream()
                 .filter(document -> applyRules(userQuery, document))
                 .toList();
         return resultList;
     }
 
+    private static List<Rule> compileRules(ParametersReader parametersReader) {
+        List<Map<String, Object>> ruleMaps = parametersReader.getList("postRetrievalProcessor.rules");
+        try (GroovyClassLoader classLoader = new GroovyClassLoader(PostRetrievalProcessor.class.getClassLoader())) {
+            return ruleMaps.stream()
+                    .map(map -> {
+                        String name = (String) map.get("name");
+                        try {
+                            @SuppressWarnings("unchecked")
+                            Class<? extends Script> scriptClass =
+                                    (Class<? extends Script>) classLoader.parseClass((String) map.get("script"));
+                            return new Rule(name, scriptClass);
+                        } catch (Exception e) {
+                            // same outcome as a failing evaluation: the rule never filters anything
+                            log.error("Rule {} does not compile", name, e);
+                            return new Rule(name, null);
+                        }
+                    })
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to close the rule class loader", e);
+        }
+    }
+
     private boolean applyRules(String userQuery, Document document) {
             for (Rule rule : rules) {
+                if (rule.scriptClass() == null) {
+                    continue;
+                }
                 Boolean result = null;
                 try {
-                    result = (Boolean) scriptEvaluator.evaluate(
-                            new StaticScriptSource(rule.script),
-                            Map.of("userQuery", userQuery, "document", document)
-                    );
+                    Binding binding = new Binding(Map.of("userQuery", userQuery, "document", document));
+                    result = (Boolean) InvokerHelper.createScript(rule.scriptClass(), binding).run();
                 } catch (Exception e) {
                     log.error("Rule {} evaluation failed for document {}", rule.name(), RetrievalUtils.getUrlOrSource(document), e);
                 }
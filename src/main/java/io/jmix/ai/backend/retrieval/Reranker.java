@@ -3,6 +3,7 @@ package io.jmix.ai.backend.retrieval;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jmix.ai.backend.parameters.CompiledParameters;
 import io.jmix.ai.backend.parameters.ParametersReader;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -21,8 +22,10 @@ import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
 
 import java.util.List;
 import java.util.Map;
@@ -95,16 +98,19 @@ public class Reranker {
         if (StringUtils.isBlank(apiKey)) {
             throw new IllegalStateException("OPENAI API key is not set (spring.ai.openai.api-key or OPENAI_API_KEY)");
         }
+        // the JDK client aborts a blocked request when the calling thread is interrupted,
+        // so a cancelled chat request does not wait for its rerank to finish
         this.openAiApi = OpenAiApi.builder()
                 .apiKey(apiKey)
+                .restClientBuilder(RestClient.builder().requestFactory(new JdkClientHttpRequestFactory()))
                 .build();
     }
 
     @Nullable
-    public List<Result> rerank(String query, List<Document> documents, int topN, ParametersReader parametersReader) {
+    public List<Result> rerank(String query, List<Document> documents, int topN, CompiledParameters parameters) {
         RerankerOptions options;
         try {
-            options = readOptions(parametersReader);
+            options = parameters.getSection("reranker", Reranker::readOptions);
         } catch (Exception e) {
             log.error("Failed to read reranker options", e);
             return null;
@@ -122,7 +128,11 @@ public class Reranker {
         try {
             response = buildChatModel(options).call(buildPrompt(query, candidates));
         } catch (Exception e) {
-            log.error("Rerank request failed", e);
+            if (Thread.currentThread().isInterrupted()) {
+                log.info("Rerank request interrupted");
+            } else {
+                log.error("Rerank request failed", e);
+            }
             return null;
         }
 
@@ -1,30 +1,107 @@
 package io.jmix.ai.backend.retrieval;
 
+import io.jmix.ai.backend.chat.AnswerCache;
 import io.jmix.ai.backend.chat.EventStreamValueHolder;
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.entity.Parameters;
 import io.jmix.ai.backend.entity.ParametersTargetType;
-import io.jmix.ai.backend.parameters.ParametersRepository;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.ActiveParametersCache;
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.jmix.ai.backend.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Retrieval without the answering LLM, for the search API.
+ * <p>
+ * Identical concurrent searches (same normalized query, Jmix version, parameters version and
+ * result cap) run once and share the result, see {@link SingleFlight}; disabled with
+ * {@code search.coalescing.enabled=false}.
+ * <p>
+ * The tools of a search run concurrently on a shared pool of {@code search.tools.threads}
+ * threads, and each gets {@code search.deadline} counted from when a pool thread picks it up, so a
+ * tool queued behind other searches is not reported as late without having run. A tool that misses
+ * its deadline or fails is interrupted and contributes nothing: every tool collects its documents
+ * separately and only those of the tools that finished in time are merged. The search returns what
+ * the other tools found and reports the tool in {@link Result#degradedTools()}. Counter
+ * {@code jmix.ai.search.degraded} counts such tools by {@code tool} and {@code reason}
+ * ({@code deadline} or {@code error}).
+ */
 @Component
 public class SearchService {
     private final Logger logger = LoggerFactory.getLogger(SearchService.class);
 
-    private final ParametersRepository parametersRepository;
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private record Key(String query, String jmixVersion, String parametersVersion, @Nullable Integer maxResults) {
+    }
+
+    /**
+     * Documents ordered by relevance, and the names of the tools that missed the deadline or
+     * failed, whose results are missing from the documents.
+     */
+    public record Result(List<Document> documents, List<String> degradedTools) {
+
+        public boolean isDegraded() {
+            return !degradedTools.isEmpty();
+        }
+    }
+
+    private final ActiveParametersCache activeParametersCache;
     private final ToolsManager toolsManager;
+    private final boolean coalescingEnabled;
+    private final SingleFlight<Key, Result> searches;
+    private final PipelineMetrics pipelineMetrics;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+    private final Duration deadline;
 
-    public SearchService(ParametersRepository parametersRepository,
-                         ToolsManager toolsManager) {
-        this.parametersRepository = parametersRepository;
+    public SearchService(ActiveParametersCache activeParametersCache,
+                         ToolsManager toolsManager,
+                         MeterRegistry meterRegistry,
+                         PipelineMetrics pipelineMetrics,
+                         @Value("${search.coalescing.enabled:true}") boolean coalescingEnabled,
+                         @Value("${search.tools.threads:16}") int threads,
+                         @Value("${search.deadline:10s}") Duration deadline) {
+        this.activeParametersCache = activeParametersCache;
         this.toolsManager = toolsManager;
+        this.coalescingEnabled = coalescingEnabled;
+        this.searches = new SingleFlight<>("search", meterRegistry);
+        this.pipelineMetrics = pipelineMetrics;
+        this.meterRegistry = meterRegistry;
+        this.deadline = deadline;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setName("search-tool-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
     }
 
     public List<Document> search(String query, JmixVersion jmixVersion) {
@@ -43,9 +120,38 @@ public class SearchService {
      * not leak into the size of the response.
      */
     public List<Document> search(String query, JmixVersion jmixVersion, @Nullable Integer maxResults) {
-        List<Document> retrievedDocuments = new ArrayList<>();
+        return searchWithStatus(query, jmixVersion, maxResults).documents();
+    }
 
-        List<String> logMessages = new ArrayList<>();
+    /**
+     * Same as {@link #search(String, JmixVersion, Integer)}, also telling which tools missed the
+     * deadline or failed.
+     */
+    public Result searchWithStatus(String query, JmixVersion jmixVersion, @Nullable Integer maxResults) {
+        long start = System.nanoTime();
+        CompiledParameters parameters = activeParametersCache.getCompiled(ParametersTargetType.SEARCH);
+        Result result;
+        if (coalescingEnabled) {
+            Key key = new Key(AnswerCache.normalize(query), jmixVersion.getId(), parameters.getVersion(), maxResults);
+            // followers share the leader's lists: callers must not modify them
+            result = searches.call(key, () -> doSearch(query, jmixVersion, maxResults, parameters)).value();
+        } else {
+            result = doSearch(query, jmixVersion, maxResults, parameters);
+        }
+        pipelineMetrics.recordTotal("search", jmixVersion, null, System.nanoTime() - start);
+        return result;
+    }
+
+    /** A tool submitted to the pool; {@code startedAtNanos} is set when a pool thread runs it. */
+    private record Submitted(Future<?> future, AtomicLong startedAtNanos) {
+    }
+
+    private Result doSearch(String query, JmixVersion jmixVersion, @Nullable Integer maxResults,
+                            CompiledParameters parameters) {
+        // one list per tool: a tool that misses the deadline may still add to its own while it stops
+        List<List<Document>> documentsOfTools = new ArrayList<>();
+
+        List<String> logMessages = new CopyOnWriteArrayList<>();
 
         ToolEventListener listener = new ToolEventListener() {
             @Override
@@ -63,8 +169,11 @@ public class SearchService {
             }
 
             @Override
-            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs) {
-                RetrievalUtils.addLogMessage(logger, logMessages, "Reranked to %d docs in %d ms".formatted(documents.size(), durationMs));
+            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs,
+                                       int savedTokens) {
+                String saved = savedTokens > 0 ? " (budget saved ~%d tokens)".formatted(savedTokens) : "";
+                RetrievalUtils.addLogMessage(logger, logMessages, "Reranked to %d docs in %d ms%s".formatted(
+                        documents.size(), durationMs, saved));
             }
 
             @Override
@@ -78,20 +187,88 @@ public class SearchService {
             }
         };
 
-        Parameters parameters = parametersRepository.loadActive(ParametersTargetType.SEARCH);
-
-        List<AbstractRagTool> ragTools = toolsManager.getTools(parameters.getContent(), retrievedDocuments, listener, jmixVersion);
+        List<AbstractRagTool> ragTools = toolsManager.getToolsWithOwnDocuments(parameters, index -> {
+            List<Document> documents = new CopyOnWriteArrayList<>();
+            documentsOfTools.add(documents);
+            return documents;
+        }, listener, jmixVersion);
 
-        // each tool fills the pool with up to maxResults candidates from its own corpus
+        // each tool collects up to maxResults candidates from its own corpus, all at once
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<Submitted> submitted = new ArrayList<>(ragTools.size());
         for (AbstractRagTool tool : ragTools) {
-            tool.execute(query, maxResults);
+            AtomicLong startedAtNanos = new AtomicLong(NOT_STARTED);
+            Future<?> future = executor.submit(() -> {
+                startedAtNanos.set(System.nanoTime());
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    tool.execute(query, maxResults);
+                } finally {
+                    MDC.clear();
+                }
+            });
+            submitted.add(new Submitted(future, startedAtNanos));
+        }
+        List<Document> retrievedDocuments = new ArrayList<>();
+        List<String> degradedTools = new ArrayList<>();
+        for (int i = 0; i < ragTools.size(); i++) {
+            String reason = await(submitted.get(i));
+            if (reason == null) {
+                retrievedDocuments.addAll(documentsOfTools.get(i));
+            } else {
+                String toolName = ragTools.get(i).getToolName();
+                degradedTools.add(toolName);
+                RetrievalUtils.addLogMessage(logger, logMessages,
+                        "%s degraded (%s), searching without its results".formatted(toolName, reason));
+                Counter.builder("jmix.ai.search.degraded")
+                        .description("Search tools that missed the deadline or failed, leaving their results out")
+                        .tag("tool", toolName)
+                        .tag("reason", reason)
+                        .register(meterRegistry)
+                        .increment();
+            }
         }
 
         // then keep the globally most relevant maxResults across all corpora
         List<Document> ranked = RetrievalUtils.getUniqueSortedDocuments(retrievedDocuments);
         if (maxResults != null && ranked.size() > maxResults) {
-            return ranked.subList(0, maxResults);
+            ranked = ranked.subList(0, maxResults);
+        }
+        return new Result(ranked, List.copyOf(degradedTools));
+    }
+
+    /**
+     * Waits for a tool until the deadline has passed since it started. Returns null if it finished,
+     * otherwise why it did not; a tool still running is interrupted.
+     */
+    @Nullable
+    private String await(Submitted tool) {
+        Future<?> future = tool.future();
+        try {
+            long waitNanos = deadline.toNanos();
+            while (true) {
+                try {
+                    future.get(waitNanos, TimeUnit.NANOSECONDS);
+                    return null;
+                } catch (TimeoutException e) {
+                    long startedAt = tool.startedAtNanos().get();
+                    // still queued: the deadline has not begun
+                    waitNanos = startedAt != NOT_STARTED ? startedAt + deadline.toNanos() - System.nanoTime() : deadline.toNanos();
+                    if (waitNanos <= 0) {
+                        future.cancel(true);
+                        return "deadline";
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            logger.warn("Search tool failed", e.getCause());
+            return "error";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return "deadline";
         }
-        return ranked;
     }
 }
@@ -0,0 +1,169 @@
+package io.jmix.ai.backend.retrieval;
+
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.jmix.ai.backend.parameters.ParametersReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Starts the retrieval of every tool with the raw user question while the first model call is
+ * still deciding which tools to call.
+ * <p>
+ * Enabled per parameters with {@code tools.speculative.enabled}. When the model then calls a
+ * tool with a query whose word overlap (Jaccard) with the question is at least
+ * {@code tools.speculative.minSimilarity}, and with the default result count, the tool takes the
+ * speculative result, finished or still running, instead of searching again. Otherwise the
+ * speculation is cancelled and discarded, as are speculations of tools the model did not call.
+ * Speculations run on a pool of {@code retrieval.speculative.threads} threads; when it is
+ * saturated, tools of new requests are not speculated on.
+ * <p>
+ * Counter {@code jmix.ai.retrieval.speculative} reports speculations by result: {@code hit}
+ * (reused), {@code miss} (the model asked for something else) and {@code unused} (the tool was
+ * not called). Timer {@code jmix.ai.retrieval.speculative.saved} records the retrieval time each
+ * hit saved.
+ */
+@Component
+public class SpeculativeRetrieval {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    record Settings(boolean enabled, double minSimilarity) {
+
+        static Settings read(ParametersReader reader) {
+            double minSimilarity = reader.getDouble("tools.speculative.minSimilarity", 0.5);
+            if (minSimilarity < 0.0 || minSimilarity > 1.0) {
+                throw new IllegalArgumentException(
+                        "Parameter 'tools.speculative.minSimilarity' must be between 0 and 1, got: " + minSimilarity);
+            }
+            return new Settings(reader.getBoolean("tools.speculative.enabled", false), minSimilarity);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter unused;
+    private final Timer saved;
+
+    public SpeculativeRetrieval(@Value("${retrieval.speculative.threads:8}") int threads,
+                                MeterRegistry meterRegistry) {
+        // a short queue: a speculation that cannot start soon is not worth running
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), r -> {
+            Thread t = new Thread(r);
+            t.setName("speculative-retrieval-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+        hits = counter(meterRegistry, "hit", "Speculative retrievals reused by the tool call of the model");
+        misses = counter(meterRegistry, "miss", "Speculative retrievals discarded because the model asked for other results");
+        unused = counter(meterRegistry, "unused", "Speculative retrievals discarded because the model did not call the tool");
+        saved = Timer.builder("jmix.ai.retrieval.speculative.saved")
+                .description("Retrieval time saved by reused speculative retrievals")
+                .register(meterRegistry);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("jmix.ai.retrieval.speculative")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts the speculative retrieval of the tools if the parameters enable it. Returns the
+     * action discarding the speculations no tool call has taken; run it when the request ends.
+     */
+    public Runnable start(CompiledParameters parameters, List<AbstractRagTool> tools, String question) {
+        Settings settings = parameters.getSection("speculativeRetrieval", Settings::read);
+        if (!settings.enabled() || tools.isEmpty()) {
+            return () -> {};
+        }
+        for (AbstractRagTool tool : tools) {
+            tool.speculate(question, settings.minSimilarity(), this);
+        }
+        return () -> tools.forEach(AbstractRagTool::discardSpeculation);
+    }
+
+    /**
+     * Submits a speculation, or returns null if the pool is saturated or shut down.
+     */
+    @Nullable
+    <T> Future<T> submit(Callable<T> task) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        try {
+            return executor.submit(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    return task.call();
+                } finally {
+                    MDC.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    void recordHit(long savedNanos) {
+        hits.increment();
+        saved.record(savedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordUnused() {
+        unused.increment();
+    }
+
+    /**
+     * Jaccard similarity of the word sets of two queries, ignoring case and punctuation.
+     */
+    static double similarity(String a, String b) {
+        Set<String> wordsA = words(a);
+        Set<String> wordsB = words(b);
+        if (wordsA.isEmpty() || wordsB.isEmpty()) {
+            return 0.0;
+        }
+        Set<String> union = new HashSet<>(wordsA);
+        union.addAll(wordsB);
+        wordsA.retainAll(wordsB);
+        return (double) wordsA.size() / union.size();
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>(Arrays.asList(NON_WORD.split(text.toLowerCase(Locale.ROOT))));
+        words.remove("");
+        return words;
+    }
+}
@@ -15,7 +15,18 @@ public interface ToolEventListener {
 
     void onToolRetrieved(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs);
 
-    void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs);
+    /**
+     * {@code savedTokens} is the estimated size of the selected documents that did not fit into
+     * the tool output budget and were dropped or trimmed; 0 when everything fit.
+     */
+    void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs, int savedTokens);
+
+    /**
+     * URLs of the documents the call added to the answer, in relevance order; called after
+     * {@code onToolReranked} when the call returned documents with a URL.
+     */
+    default void onToolSources(String tool, List<String> urls) {
+    }
 
     void onToolCallEnd(String tool, long totalDurationMs);
 
@@ -41,8 +52,14 @@ public interface ToolEventListener {
             }
 
             @Override
-            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs) {
-                delegate.onToolReranked(tool, documents, durationMs);
+            public void onToolReranked(String tool, List<EventStreamValueHolder.DocScore> documents, long durationMs,
+                                       int savedTokens) {
+                delegate.onToolReranked(tool, documents, durationMs, savedTokens);
+            }
+
+            @Override
+            public void onToolSources(String tool, List<String> urls) {
+                delegate.onToolSources(tool, urls);
             }
 
             @Override
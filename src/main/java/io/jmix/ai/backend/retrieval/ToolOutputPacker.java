@@ -0,0 +1,136 @@
+package io.jmix.ai.backend.retrieval;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fits the documents of a tool response into a token budget.
+ * <p>
+ * Documents are taken in relevance order while they fit. The first one that does not fit is
+ * trimmed at the last section or paragraph boundary within the remaining budget, unless less
+ * than {@link #MIN_TRIMMED_TOKENS} remain; packing stops there. Token counts are estimated as
+ * content chars / 4, the same approximation used for snippet sizes elsewhere.
+ */
+final class ToolOutputPacker {
+
+    static final String SEPARATOR = "\n\n";
+    static final String TRIMMED_MARKER = "\n\n[...]";
+    /** A trimmed document shorter than this carries too little context to be worth its tokens. */
+    static final int MIN_TRIMMED_TOKENS = 100;
+
+    private ToolOutputPacker() {
+    }
+
+    /**
+     * {@code documents} are the packed originals (for sources), {@code texts} what goes into the
+     * tool response, {@code usedTokens} and {@code savedTokens} the estimated size kept and cut.
+     */
+    record Packed(List<Document> documents, List<String> texts, int usedTokens, int savedTokens) {
+
+        String joined() {
+            return String.join(SEPARATOR, texts);
+        }
+    }
+
+    /**
+     * Tool output budget shared by the tools of one request, so that all tool calls answering a
+     * user message together add at most {@code maxTokens} to the prompt. Safe for concurrent tool
+     * calls: each call reserves its share before packing and returns what it did not use.
+     */
+    static final class TurnBudget {
+
+        static final TurnBudget UNLIMITED = new TurnBudget(Integer.MAX_VALUE);
+
+        private final AtomicInteger remaining;
+
+        TurnBudget(int maxTokens) {
+            this.remaining = new AtomicInteger(maxTokens);
+        }
+
+        int reserve(int tokens) {
+            if (this == UNLIMITED) {
+                return tokens;
+            }
+            int previous = remaining.getAndUpdate(current -> current - Math.min(current, tokens));
+            return Math.min(previous, tokens);
+        }
+
+        void release(int tokens) {
+            if (this != UNLIMITED && tokens > 0) {
+                remaining.addAndGet(tokens);
+            }
+        }
+
+        int remaining() {
+            return remaining.get();
+        }
+    }
+
+    static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    static Packed pack(List<Document> documents, int maxTokens) {
+        List<Document> packed = new ArrayList<>(documents.size());
+        List<String> texts = new ArrayList<>(documents.size());
+        int used = 0;
+        int total = 0;
+        boolean full = false;
+        for (Document document : documents) {
+            String text = document.getText() != null ? document.getText() : "";
+            int tokens = estimateTokens(text);
+            total += tokens;
+            if (full) {
+                continue;
+            }
+            int separatorTokens = texts.isEmpty() ? 0 : estimateTokens(SEPARATOR);
+            int available = maxTokens - used - separatorTokens;
+            if (tokens <= available) {
+                packed.add(document);
+                texts.add(text);
+                used += separatorTokens + tokens;
+                continue;
+            }
+            if (available >= MIN_TRIMMED_TOKENS) {
+                String trimmed = trim(text, available * 4 - TRIMMED_MARKER.length());
+                packed.add(document);
+                texts.add(trimmed);
+                used += separatorTokens + estimateTokens(trimmed);
+            }
+            // less relevant documents are not squeezed in after a cut
+            full = true;
+        }
+        int keptTokens = texts.stream().mapToInt(ToolOutputPacker::estimateTokens).sum();
+        return new Packed(packed, texts, used, Math.max(0, total - keptTokens));
+    }
+
+    /**
+     * Cuts the text to at most {@code maxChars}, preferring a section boundary (blank line), then a
+     * line break, then a sentence end, and marks the cut.
+     */
+    static String trim(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int limit = Math.max(0, maxChars);
+        // a boundary in the first half would throw away too much of what fits
+        int minCut = limit / 2;
+        int cut = text.lastIndexOf("\n\n", limit);
+        if (cut < minCut) {
+            cut = text.lastIndexOf('\n', limit);
+        }
+        if (cut < minCut) {
+            cut = text.lastIndexOf(". ", limit - 1);
+            if (cut >= 0) {
+                cut++;
+            }
+        }
+        if (cut < minCut) {
+            cut = limit;
+        }
+        return text.substring(0, cut).stripTrailing() + TRIMMED_MARKER;
+    }
+}
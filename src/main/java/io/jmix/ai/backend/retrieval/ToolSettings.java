@@ -0,0 +1,60 @@
+package io.jmix.ai.backend.retrieval;
+
+import io.jmix.ai.backend.parameters.ParametersReader;
+import org.springframework.lang.Nullable;
+
+/**
+ * Validated {@code tools.<name>} section of the parameters. Read once per parameters version and
+ * memoized on {@link io.jmix.ai.backend.parameters.CompiledParameters}.
+ */
+record ToolSettings(
+        String type,
+        String description,
+        double similarityThreshold,
+        @Nullable Integer topK,
+        int topReranked,
+        double minScore,
+        double minRerankedScore,
+        String noResultsMessage,
+        @Nullable Integer maxTokens
+) {
+
+    static final String DEFAULT_NO_RESULTS_MESSAGE =
+            "No results found for the query. Try rephrasing your query or using another tool.";
+
+    static ToolSettings read(ParametersReader reader, String rootKey, String defaultType) {
+        // allows A/B testing an alternative corpus (e.g. docs-snippets) with the same tool
+        String type = reader.getString(rootKey + ".vectorType", defaultType);
+        String description = reader.getString(rootKey + ".description");
+        Integer averageDocumentTokens = reader.getInteger(rootKey + ".averageDocumentTokens", null);
+        if (averageDocumentTokens != null && averageDocumentTokens > 0) {
+            description += " A typical returned snippet is about %d tokens."
+                    .formatted(averageDocumentTokens);
+        }
+        Integer topK = reader.getInteger(rootKey + ".topK", null);
+        if (topK != null && topK <= 0) {
+            throw new IllegalArgumentException("Parameter '%s.topK' must be positive or null, got: %d"
+                    .formatted(rootKey, topK));
+        }
+        int topReranked = reader.getInt(rootKey + ".topReranked");
+        if (topReranked < 0) {
+            throw new IllegalArgumentException("Parameter '%s.topReranked' must not be negative, got: %d"
+                    .formatted(rootKey, topReranked));
+        }
+        Integer maxTokens = reader.getInteger(rootKey + ".maxTokens", null);
+        if (maxTokens != null && maxTokens <= 0) {
+            throw new IllegalArgumentException("Parameter '%s.maxTokens' must be positive or null, got: %d"
+                    .formatted(rootKey, maxTokens));
+        }
+        return new ToolSettings(
+                type,
+                description,
+                reader.getDouble(rootKey + ".similarityThreshold"),
+                topK,
+                topReranked,
+                reader.getDouble(rootKey + ".minScore"),
+                reader.getDouble(rootKey + ".minRerankedScore"),
+                reader.getString(rootKey + ".noResultsMessage", DEFAULT_NO_RESULTS_MESSAGE),
+                maxTokens);
+    }
+}
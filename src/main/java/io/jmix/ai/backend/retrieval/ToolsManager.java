@@ -1,51 +1,120 @@
 package io.jmix.ai.backend.retrieval;
 
 import io.jmix.ai.backend.entity.JmixVersion;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.CompiledParameters;
 import io.jmix.ai.backend.parameters.ParametersReader;
-import io.jmix.ai.backend.parameters.ParametersRepository;
+import io.jmix.ai.backend.vectorstore.MultiCorpusVectorSearch;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.context.ApplicationContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 
+/**
+ * Creates the retrieval tools of a request.
+ * <p>
+ * What depends only on the parameters — the enabled tools, their settings, tool definitions with
+ * input schemas, filter expressions and the compiled post-retrieval rules — is a {@link ToolPlan}
+ * memoized on {@link CompiledParameters}. A request only binds its own state: listener,
+ * retrieved documents, Jmix version and the tool output budget of the request
+ * ({@code tools.turnMaxTokens}).
+ * <p>
+ * The vector searches of the tools of a request are sent together as one multi-corpus statement,
+ * see {@link VectorSearchBatch}; {@code retrieval.multi-corpus.window} bounds how long a search
+ * waits for the other tools, {@code retrieval.multi-corpus.enabled=false} runs each search on its
+ * own. Either way the searches filter on the typed columns of the vector store, see
+ * {@link io.jmix.ai.backend.vectorstore.ColumnFilterExpressionConverter}.
+ */
 @Component
 public class ToolsManager {
 
-    private final ApplicationContext applicationContext;
-    private final ParametersRepository parametersRepository;
-    private final VectorStore vectorStore;
     private final Reranker reranker;
+    private final PipelineMetrics pipelineMetrics;
+    private final MultiCorpusVectorSearch multiCorpusVectorSearch;
+    private final boolean multiCorpusEnabled;
+    private final Duration multiCorpusWindow;
 
-    public ToolsManager(ApplicationContext applicationContext, ParametersRepository parametersRepository,
-                        VectorStore vectorStore, Reranker reranker) {
-        this.applicationContext = applicationContext;
-        this.parametersRepository = parametersRepository;
-        this.vectorStore = vectorStore;
+    public ToolsManager(Reranker reranker, PipelineMetrics pipelineMetrics,
+                        MultiCorpusVectorSearch multiCorpusVectorSearch,
+                        @Value("${retrieval.multi-corpus.enabled:true}") boolean multiCorpusEnabled,
+                        @Value("${retrieval.multi-corpus.window:5ms}") Duration multiCorpusWindow) {
         this.reranker = reranker;
+        this.pipelineMetrics = pipelineMetrics;
+        this.multiCorpusVectorSearch = multiCorpusVectorSearch;
+        this.multiCorpusEnabled = multiCorpusEnabled;
+        this.multiCorpusWindow = multiCorpusWindow;
     }
 
-    public List<AbstractRagTool> getTools(String parametersYaml, List<Document> retrievedDocuments,
-                                          ToolEventListener listener, JmixVersion jmixVersion) {
-        ParametersReader parametersReader = parametersRepository.getReader(parametersYaml);
+    @FunctionalInterface
+    private interface ToolFactory {
+        AbstractRagTool create(PostRetrievalProcessor postRetrievalProcessor, Reranker reranker,
+                               CompiledParameters parameters, List<Document> retrievedDocuments,
+                               ToolEventListener listener, JmixVersion jmixVersion);
+    }
 
-        PostRetrievalProcessor postRetrievalProcessor = applicationContext.getBean(
-                PostRetrievalProcessor.class, parametersReader, (java.util.function.Consumer<String>) listener::onLog);
+    private record ToolPlan(List<ToolFactory> tools, PostRetrievalProcessor postRetrievalProcessor,
+                            @Nullable Integer turnMaxTokens) {
 
-        List<AbstractRagTool> tools = new ArrayList<>();
-        if (parametersReader.getBoolean("tools.documentation_retriever.enabled", true)) {
-            tools.add(new DocsTool(vectorStore, postRetrievalProcessor, reranker, parametersReader, retrievedDocuments, listener, jmixVersion));
-        }
-        if (parametersReader.getBoolean("tools.uisamples_retriever.enabled", true)) {
-            tools.add(new UiSamplesTool(vectorStore, postRetrievalProcessor, reranker, parametersReader, retrievedDocuments, listener, jmixVersion));
+        static ToolPlan build(ParametersReader parametersReader) {
+            List<ToolFactory> tools = new ArrayList<>();
+            if (parametersReader.getBoolean("tools.documentation_retriever.enabled", true)) {
+                tools.add(DocsTool::new);
+            }
+            if (parametersReader.getBoolean("tools.uisamples_retriever.enabled", true)) {
+                tools.add(UiSamplesTool::new);
+            }
+            if (parametersReader.getBoolean("tools.trainings_retriever.enabled", true)) {
+                tools.add(TrainingsTool::new);
+            }
+            if (parametersReader.getBoolean("tools.javaapi_retriever.enabled", false)) {
+                tools.add(JavaApiTool::new);
+            }
+            Integer turnMaxTokens = parametersReader.getInteger("tools.turnMaxTokens", null);
+            if (turnMaxTokens != null && turnMaxTokens <= 0) {
+                throw new IllegalArgumentException("Parameter 'tools.turnMaxTokens' must be positive or null, got: %d"
+                        .formatted(turnMaxTokens));
+            }
+            return new ToolPlan(List.copyOf(tools), new PostRetrievalProcessor(parametersReader), turnMaxTokens);
         }
-        if (parametersReader.getBoolean("tools.trainings_retriever.enabled", true)) {
-            tools.add(new TrainingsTool(vectorStore, postRetrievalProcessor, reranker, parametersReader, retrievedDocuments, listener, jmixVersion));
-        }
-        if (parametersReader.getBoolean("tools.javaapi_retriever.enabled", false)) {
-            tools.add(new JavaApiTool(vectorStore, postRetrievalProcessor, reranker, parametersReader, retrievedDocuments, listener, jmixVersion));
+    }
+
+    public List<AbstractRagTool> getTools(CompiledParameters parameters, List<Document> retrievedDocuments,
+                                          ToolEventListener listener, JmixVersion jmixVersion) {
+        return getToolsWithOwnDocuments(parameters, index -> retrievedDocuments, listener, jmixVersion);
+    }
+
+    /**
+     * Same as {@link #getTools}, but the tool at {@code index} adds its documents to
+     * {@code retrievedDocuments.apply(index)}, so a caller can tell which tool found what.
+     */
+    public List<AbstractRagTool> getToolsWithOwnDocuments(CompiledParameters parameters,
+                                                          IntFunction<List<Document>> retrievedDocuments,
+                                                          ToolEventListener listener, JmixVersion jmixVersion) {
+        ToolPlan plan = parameters.getSection("toolPlan", ToolPlan::build);
+        PostRetrievalProcessor postRetrievalProcessor = plan.postRetrievalProcessor().withLogger(listener::onLog);
+
+        // one budget for all tool calls answering this user message
+        ToolOutputPacker.TurnBudget turnBudget = plan.turnMaxTokens() != null
+                ? new ToolOutputPacker.TurnBudget(plan.turnMaxTokens())
+                : ToolOutputPacker.TurnBudget.UNLIMITED;
+        // a batch of one runs each search at once, e.g. for a single tool
+        VectorSearchBatch vectorSearchBatch = new VectorSearchBatch(multiCorpusVectorSearch,
+                multiCorpusEnabled ? plan.tools().size() : 1, multiCorpusWindow.toNanos());
+
+        List<AbstractRagTool> tools = new ArrayList<>(plan.tools().size());
+        for (ToolFactory factory : plan.tools()) {
+            // tool constructors read memoized settings, definitions and filters only
+            AbstractRagTool tool = factory.create(postRetrievalProcessor, reranker, parameters,
+                    retrievedDocuments.apply(tools.size()), listener, jmixVersion);
+            tool.setTurnBudget(turnBudget);
+            tool.setMetrics(pipelineMetrics);
+            tool.setVectorSearchBatch(vectorSearchBatch);
+            tools.add(tool);
         }
         return tools;
     }
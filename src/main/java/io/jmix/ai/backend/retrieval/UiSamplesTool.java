@@ -1,18 +1,17 @@
 package io.jmix.ai.backend.retrieval;
 
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.ai.backend.parameters.CompiledParameters;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 
 import java.util.List;
 
 public class UiSamplesTool extends AbstractRagTool {
 
-    public UiSamplesTool(VectorStore vectorStore, PostRetrievalProcessor postRetrievalProcessor, Reranker reranker,
-                         ParametersReader parametersReader, List<Document> retrievedDocuments, ToolEventListener listener,
+    public UiSamplesTool(PostRetrievalProcessor postRetrievalProcessor, Reranker reranker,
+                         CompiledParameters parameters, List<Document> retrievedDocuments, ToolEventListener listener,
                          JmixVersion jmixVersion) {
-        super("uisamples_retriever", "uisamples", vectorStore, postRetrievalProcessor, reranker,
-                parametersReader, retrievedDocuments, listener, jmixVersion, true);
+        super("uisamples_retriever", "uisamples", postRetrievalProcessor, reranker,
+                parameters, retrievedDocuments, listener, jmixVersion, true);
     }
 }
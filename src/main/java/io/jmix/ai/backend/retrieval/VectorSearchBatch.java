@@ -0,0 +1,107 @@
+package io.jmix.ai.backend.retrieval;
+
+import io.jmix.ai.backend.vectorstore.MultiCorpusVectorSearch;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the concurrent vector searches of the tools of one request as one
+ * {@link MultiCorpusVectorSearch} statement.
+ * <p>
+ * The first search of a batch leads it: it waits until every tool of the request has joined or
+ * the window has passed, then runs the whole batch on its calling thread; the other searches wait
+ * for their part of the result. Tools running in parallel (the search API, retrieval-first chats, speculative
+ * retrieval, model turns calling several tools) therefore share one round-trip, while a tool
+ * called alone waits at most one window.
+ */
+final class VectorSearchBatch {
+
+    private record Pending(MultiCorpusVectorSearch.CorpusQuery query, CompletableFuture<List<Document>> result) {
+    }
+
+    private final MultiCorpusVectorSearch search;
+    private final int participants;
+    private final long windowNanos;
+
+    // guarded by this
+    private List<Pending> open;
+
+    VectorSearchBatch(MultiCorpusVectorSearch search, int participants, long windowNanos) {
+        this.search = search;
+        this.participants = participants;
+        this.windowNanos = windowNanos;
+    }
+
+    List<Document> search(MultiCorpusVectorSearch.CorpusQuery query) {
+        Pending pending = new Pending(query, new CompletableFuture<>());
+        List<Pending> batch;
+        boolean leader = false;
+        synchronized (this) {
+            if (open == null) {
+                open = new ArrayList<>(participants);
+                leader = true;
+            }
+            batch = open;
+            batch.add(pending);
+            if (batch.size() >= participants) {
+                open = null;
+                notifyAll();
+            }
+        }
+        if (leader) {
+            awaitParticipants(batch);
+            run(batch);
+        }
+        return await(pending.result());
+    }
+
+    private synchronized void awaitParticipants(List<Pending> batch) {
+        long deadline = System.nanoTime() + windowNanos;
+        try {
+            long remaining;
+            while (open == batch && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            // the searches that joined still need their results: run the batch now
+            Thread.currentThread().interrupt();
+        }
+        if (open == batch) {
+            open = null;
+        }
+    }
+
+    private void run(List<Pending> batch) {
+        try {
+            List<List<Document>> results = search.search(batch.stream().map(Pending::query).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results.get(i));
+            }
+        } catch (RuntimeException | Error e) {
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private static List<Document> await(CompletableFuture<List<Document>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the vector search", e);
+        } catch (ExecutionException e) {
+            // rethrow what the statement got, as if this search had run it
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
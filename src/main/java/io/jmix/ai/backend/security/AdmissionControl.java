@@ -0,0 +1,252 @@
+package io.jmix.ai.backend.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether a request to the public chat and search endpoints may run.
+ * <p>
+ * Each client (remote address, see {@link AdmissionControlFilter}) has a token bucket of
+ * {@code admission.client.burst} requests refilled at {@code admission.client.requests-per-minute},
+ * so one client cannot take the capacity and the model quota of everybody else. The buckets of at
+ * most {@code admission.client.max-tracked} clients are kept; beyond that the least recently seen
+ * client is forgotten and starts over with a full bucket. Admitted requests
+ * then share {@code admission.max-concurrent} execution slots; up to {@code admission.max-queue}
+ * requests wait for a slot, each for at most {@code admission.max-queue-wait}. Anything beyond
+ * that is rejected at once with a {@link Rejected} telling when to retry, instead of piling up
+ * threads and connections.
+ * <p>
+ * Counter {@code jmix.ai.admission.rejected} reports rejections by reason (rate-limit, queue-full,
+ * queue-timeout), timer {@code jmix.ai.admission.queue.wait} the time admitted requests waited for
+ * a slot, gauges {@code jmix.ai.admission.active} and {@code jmix.ai.admission.queued} the load.
+ */
+@Component
+public class AdmissionControl {
+
+    /**
+     * Thrown when a request is not admitted; {@code retryAfter} is when the client may try again.
+     */
+    public static class Rejected extends RuntimeException {
+
+        private final String reason;
+        private final Duration retryAfter;
+
+        Rejected(String reason, Duration retryAfter, String message) {
+            super(message);
+            this.reason = reason;
+            this.retryAfter = retryAfter;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /**
+     * An execution slot held by an admitted request. Releasing it more than once has no effect.
+     */
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final Duration maxQueueWait;
+    private final int burst;
+    private final double tokensPerNano;
+    private final int maxTrackedClients;
+    private final LongSupplier nanoClock;
+
+    private final Semaphore slots;
+    private final AtomicInteger queued = new AtomicInteger();
+    // access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<String, TokenBucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter rateLimited;
+    private final Counter queueFull;
+    private final Counter queueTimeout;
+    private final Timer queueWait;
+
+    @Autowired
+    public AdmissionControl(MeterRegistry meterRegistry,
+                            @Value("${admission.enabled:true}") boolean enabled,
+                            @Value("${admission.max-concurrent:64}") int maxConcurrent,
+                            @Value("${admission.max-queue:128}") int maxQueue,
+                            @Value("${admission.max-queue-wait:10s}") Duration maxQueueWait,
+                            @Value("${admission.client.requests-per-minute:30}") int requestsPerMinute,
+                            @Value("${admission.client.burst:10}") int burst,
+                            @Value("${admission.client.max-tracked:10000}") int maxTrackedClients) {
+        this(meterRegistry, enabled, maxConcurrent, maxQueue, maxQueueWait, requestsPerMinute, burst,
+                maxTrackedClients, System::nanoTime);
+    }
+
+    AdmissionControl(MeterRegistry meterRegistry, boolean enabled, int maxConcurrent, int maxQueue,
+                     Duration maxQueueWait, int requestsPerMinute, int burst, int maxTrackedClients,
+                     LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxQueueWait = maxQueueWait;
+        this.burst = burst;
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxTrackedClients = maxTrackedClients;
+        this.nanoClock = nanoClock;
+        this.slots = new Semaphore(maxConcurrent, true);
+
+        rateLimited = rejected(meterRegistry, "rate-limit", "Requests rejected because the client exceeded its rate");
+        queueFull = rejected(meterRegistry, "queue-full", "Requests rejected because the wait queue was full");
+        queueTimeout = rejected(meterRegistry, "queue-timeout", "Requests rejected after waiting too long for a slot");
+        queueWait = Timer.builder("jmix.ai.admission.queue.wait")
+                .description("Time admitted requests waited for an execution slot")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.admission.active", this, AdmissionControl::getActive)
+                .description("Admitted requests currently executing")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.admission.queued", queued, AtomicInteger::get)
+                .description("Requests waiting for an execution slot")
+                .register(meterRegistry);
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason, String description) {
+        return Counter.builder("jmix.ai.admission.rejected")
+                .description(description)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admits a request of the client, waiting for an execution slot if needed.
+     *
+     * @throws Rejected if the client is over its rate or no slot is available in time
+     */
+    public Permit acquire(String client) {
+        long retryAfterNanos = bucket(client).tryTake();
+        if (retryAfterNanos > 0) {
+            rateLimited.increment();
+            throw new Rejected("rate-limit", toRetryAfter(retryAfterNanos),
+                    "Too many requests from this client");
+        }
+        if (slots.tryAcquire()) {
+            queueWait.record(0, TimeUnit.NANOSECONDS);
+            return new Permit();
+        }
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            queueFull.increment();
+            throw new Rejected("queue-full", toRetryAfter(maxQueueWait.toNanos()),
+                    "The server is busy (%d requests running, %d waiting)".formatted(maxConcurrent, maxQueue));
+        }
+        long start = nanoClock.getAsLong();
+        try {
+            if (!slots.tryAcquire(maxQueueWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                queueTimeout.increment();
+                throw new Rejected("queue-timeout", toRetryAfter(maxQueueWait.toNanos()),
+                        "The server is busy, no slot within %s".formatted(maxQueueWait));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queueTimeout.increment();
+            throw new Rejected("queue-timeout", toRetryAfter(maxQueueWait.toNanos()),
+                    "Interrupted while waiting for a slot");
+        } finally {
+            queued.decrementAndGet();
+        }
+        queueWait.record(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        return new Permit();
+    }
+
+    public int getActive() {
+        return maxConcurrent - slots.availablePermits();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    int trackedClients() {
+        synchronized (buckets) {
+            return buckets.size();
+        }
+    }
+
+    private TokenBucket bucket(String client) {
+        synchronized (buckets) {
+            TokenBucket bucket = buckets.get(client);
+            if (bucket == null) {
+                bucket = new TokenBucket(nanoClock.getAsLong());
+                buckets.put(client, bucket);
+                if (buckets.size() > maxTrackedClients) {
+                    Iterator<String> eldest = buckets.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return bucket;
+        }
+    }
+
+    private static Duration toRetryAfter(long nanos) {
+        // Retry-After has a resolution of seconds; never tell a client to retry right away
+        return Duration.ofSeconds(Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private final class TokenBucket {
+
+        // guarded by this
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(long now) {
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Takes a token and returns 0, or returns the nanos until a token is available.
+         */
+        synchronized long tryTake() {
+            long now = nanoClock.getAsLong();
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return tokensPerNano > 0 ? Math.max(1, (long) ((1 - tokens) / tokensPerNano)) : Long.MAX_VALUE / 2;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
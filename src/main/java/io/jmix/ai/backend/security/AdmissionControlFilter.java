@@ -0,0 +1,106 @@
+package io.jmix.ai.backend.security;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Applies {@link AdmissionControl} to the public chat and search endpoints.
+ * <p>
+ * The client is identified by its remote address: nothing verifies a key sent by the client, so a
+ * header would let it pick a fresh bucket for every request. Behind a reverse proxy the address is
+ * taken from {@code X-Forwarded-For} as configured by {@code server.forward-headers-strategy};
+ * without it all clients of the proxy would share one bucket.
+ * <p>
+ * A rejected request gets 429 with a {@code Retry-After} header. An admitted request holds its
+ * slot until the response is complete, which for {@code /chat/stream} is the end of the
+ * asynchronous stream, not the return of the controller.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private final AdmissionControl admissionControl;
+
+    public AdmissionControlFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionControl.isEnabled() || request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        AdmissionControl.Permit permit;
+        try {
+            permit = admissionControl.acquire(clientKey(request));
+        } catch (AdmissionControl.Rejected e) {
+            log.debug("Rejected {} ({}): {}", request.getRequestURI(), e.getReason(), e.getMessage());
+            reject(response, e);
+            return;
+        }
+        boolean releasedLater = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(permit));
+                releasedLater = true;
+            }
+        } finally {
+            if (!releasedLater) {
+                permit.release();
+            }
+        }
+    }
+
+    static String clientKey(HttpServletRequest request) {
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, AdmissionControl.Rejected rejection) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(rejection.getRetryAfter().toSeconds()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(rejection.getMessage());
+    }
+
+    private record ReleasingListener(AdmissionControl.Permit permit) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // async restarted on redispatch: keep the slot until that one completes
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 
 /**
  * This configuration complements standard security configurations that come from Jmix modules (security-flowui, oidc,
@@ -39,12 +40,14 @@ public class JmixAiBackendSecurityConfiguration {
 
     @Bean
     @Order(JmixSecurityFilterChainOrder.CUSTOM)
-    SecurityFilterChain publicFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain publicFilterChain(HttpSecurity http, AdmissionControl admissionControl) throws Exception {
         http.securityMatcher("/actuator/**", "/chat", "/chat/stream", "/api/**")
                 .authorizeHttpRequests(authorize ->
                         authorize.anyRequest().permitAll()
                 )
-                .csrf(csrf -> csrf.disable());
+                .csrf(csrf -> csrf.disable())
+                // not a bean, so that it runs only in this chain and not for every request
+                .addFilterAfter(new AdmissionControlFilter(admissionControl), AnonymousAuthenticationFilter.class);
         JmixHttpSecurityUtils.configureAnonymous(http);
         return http.build();
     }
@@ -0,0 +1,84 @@
+package io.jmix.ai.backend.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with the same key into one execution.
+ * <p>
+ * The first caller of a key (the leader) runs the action; callers arriving while it runs
+ * (followers) wait for it and get the same result, or the same exception. The key is released
+ * when the leader finishes, so results are never reused after that: this is not a cache.
+ * Counter {@code jmix.ai.requests.coalesced} reports calls by operation and role (leader,
+ * follower); the follower count is the number of executions saved.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * The value of a call and whether this caller produced it.
+     */
+    public record Shared<V>(V value, boolean leader) {
+    }
+
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String operation, MeterRegistry meterRegistry) {
+        leaders = counter(meterRegistry, operation, "leader", "Calls that ran because no identical call was in flight");
+        followers = counter(meterRegistry, operation, "follower", "Calls answered by an identical call in flight");
+    }
+
+    public static Counter counter(MeterRegistry meterRegistry, String operation, String role, String description) {
+        return Counter.builder("jmix.ai.requests.coalesced")
+                .description(description)
+                .tag("operation", operation)
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    public Shared<V> call(K key, Supplier<V> action) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> flight = flights.putIfAbsent(key, created);
+        if (flight != null) {
+            followers.increment();
+            return new Shared<>(await(flight), false);
+        }
+        leaders.increment();
+        try {
+            V value = action.get();
+            created.complete(value);
+            return new Shared<>(value, true);
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, created);
+        }
+    }
+
+    int inFlight() {
+        return flights.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // rethrow what the leader got, so both fail the same way
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
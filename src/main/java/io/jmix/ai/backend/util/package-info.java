@@ -0,0 +1,4 @@
+@NonNullApi
+package io.jmix.ai.backend.util;
+
+import org.springframework.lang.NonNullApi;
\ No newline at end of file
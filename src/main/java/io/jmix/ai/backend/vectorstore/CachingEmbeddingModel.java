@@ -0,0 +1,160 @@
+package io.jmix.ai.backend.vectorstore;
+
+import io.jmix.ai.backend.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.lang.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the query embeddings of the vector store, so the retrieval tools of one request and
+ * repeats of popular queries embed a query text once.
+ * <p>
+ * Entries are keyed by the embedding model and the query text with its whitespace collapsed; case
+ * and punctuation are kept, as they change the embedding. Vectors are kept as {@code float[]},
+ * and the least recently used entries are evicted when the estimated size of the cache exceeds
+ * {@code maxBytes}. Concurrent misses of the same key, e.g. tools running in parallel, make one
+ * embedding call, see {@link SingleFlight}. Only {@link #embed(String)}, the single-text call the
+ * vector store makes for a search, is cached; batches of documents pass through.
+ * <p>
+ * Counter {@code jmix.ai.embedding.cache} reports lookups by result ({@code hit}, {@code miss}),
+ * counter {@code jmix.ai.embedding.cache.evictions} the evicted entries, gauge
+ * {@code jmix.ai.embedding.cache.size} the estimated size in bytes.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // object headers, references and map node of an entry, roughly
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private record Key(String model, String text) {
+    }
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final long maxBytes;
+    private final SingleFlight<Key, float[]> embeddings;
+
+    // guarded by entries
+    private final LinkedHashMap<Key, float[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, long maxBytes,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.maxBytes = maxBytes;
+        this.embeddings = new SingleFlight<>("embedding", meterRegistry);
+        hits = lookups(meterRegistry, "hit", "Query embeddings served from the cache");
+        misses = lookups(meterRegistry, "miss", "Query embeddings computed by the embedding model");
+        evictions = Counter.builder("jmix.ai.embedding.cache.evictions")
+                .description("Query embeddings evicted from the cache to stay within its size")
+                .register(meterRegistry);
+        Gauge.builder("jmix.ai.embedding.cache.size", this, CachingEmbeddingModel::sizeBytes)
+                .description("Estimated size of the cached query embeddings in bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("jmix.ai.embedding.cache")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        Key key = new Key(modelName, normalize(text));
+        float[] cached = get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.clone();
+        }
+        misses.increment();
+        float[] embedding = embeddings.call(key, () -> {
+            float[] computed = delegate.embed(key.text());
+            put(key, computed.clone());
+            return computed;
+        }).value();
+        // followers share the leader's array; callers own what they get
+        return embedding.clone();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public long sizeBytes() {
+        synchronized (entries) {
+            return sizeBytes;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static String normalize(String text) {
+        return WHITESPACE.matcher(text.strip()).replaceAll(" ");
+    }
+
+    @Nullable
+    private float[] get(Key key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void put(Key key, float[] embedding) {
+        long entryBytes = estimateBytes(key, embedding);
+        if (entryBytes > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            float[] previous = entries.put(key, embedding);
+            if (previous != null) {
+                sizeBytes -= estimateBytes(key, previous);
+            }
+            sizeBytes += entryBytes;
+            Iterator<Map.Entry<Key, float[]>> eldest = entries.entrySet().iterator();
+            while (sizeBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<Key, float[]> entry = eldest.next();
+                sizeBytes -= estimateBytes(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static long estimateBytes(Key key, float[] embedding) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (key.model().length() + key.text().length()) + 4L * embedding.length;
+    }
+}
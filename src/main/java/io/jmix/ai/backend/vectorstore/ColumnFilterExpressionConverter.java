@@ -0,0 +1,82 @@
+package io.jmix.ai.backend.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Converts a metadata filter into an SQL condition on the {@code vector_store} table.
+ * <p>
+ * Conditions on the {@code type}, {@code jmixVersion} and {@code source} attributes target the
+ * generated columns {@code type}, {@code jmix_version} and {@code source} (see the pgvector
+ * changelog), with the values inlined as literals: the planner can then use their B-tree indexes
+ * and pick the partial HNSW index of a (type, version) pair, which it cannot prove from a bound
+ * parameter or a jsonpath. Any other condition falls back to the jsonpath match on the metadata
+ * that Spring AI uses. As with the jsonpath, a condition on a missing attribute never matches.
+ */
+public class ColumnFilterExpressionConverter implements FilterExpressionConverter {
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "type", "type",
+            "jmixVersion", "jmix_version",
+            "source", "source");
+
+    private final PgVectorFilterExpressionConverter jsonPathConverter = new PgVectorFilterExpressionConverter();
+
+    @Override
+    public String convertExpression(Filter.Expression expression) {
+        return switch (expression.type()) {
+            case AND, OR -> "(" + convertOperand(expression.left()) + " " + expression.type().name() + " "
+                    + convertOperand(expression.right()) + ")";
+            case NOT -> "NOT " + convertOperand(expression.left());
+            case EQ, NE, IN, NIN -> {
+                String column = column(expression.left());
+                if (column == null || !(expression.right() instanceof Filter.Value value) || value.value() == null) {
+                    yield jsonPath(expression);
+                }
+                yield switch (expression.type()) {
+                    case EQ -> column + " = " + literal(value.value());
+                    case NE -> column + " <> " + literal(value.value());
+                    case IN -> column + " IN (" + literals(value.value()) + ")";
+                    default -> column + " NOT IN (" + literals(value.value()) + ")";
+                };
+            }
+            default -> jsonPath(expression);
+        };
+    }
+
+    private String convertOperand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return convertExpression(group.content());
+        }
+        if (operand instanceof Filter.Expression expression) {
+            return convertExpression(expression);
+        }
+        throw new IllegalArgumentException("Not a filter expression: " + operand);
+    }
+
+    private String jsonPath(Filter.Expression expression) {
+        return "metadata::jsonb @@ " + literal(jsonPathConverter.convertExpression(expression)) + "::jsonpath";
+    }
+
+    @Nullable
+    private static String column(Filter.Operand operand) {
+        return operand instanceof Filter.Key key ? COLUMNS.get(key.key()) : null;
+    }
+
+    private static String literals(Object value) {
+        if (value instanceof List<?> values && !values.isEmpty()) {
+            return values.stream().map(ColumnFilterExpressionConverter::literal).collect(Collectors.joining(", "));
+        }
+        return literal(value);
+    }
+
+    static String literal(Object value) {
+        return "'" + String.valueOf(value).replace("'", "''") + "'";
+    }
+}
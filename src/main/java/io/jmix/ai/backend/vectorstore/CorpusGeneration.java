@@ -0,0 +1,40 @@
+package io.jmix.ai.backend.vectorstore;
+
+import io.jmix.ai.backend.cluster.ClusterNotifications;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter that changes whenever the vector store content may have changed (ingestion, removal).
+ * <p>
+ * Caches derived from retrieval results compare the generation they were filled at with
+ * {@link #get()} and drop their entries when it moved. A {@link #bump()} on one node is
+ * propagated to all nodes via {@link ClusterNotifications}; the value itself is node-local and
+ * only its changes are meaningful.
+ */
+@Component
+public class CorpusGeneration {
+
+    static final String CHANNEL = "corpus_updated";
+
+    private final ClusterNotifications clusterNotifications;
+    private final AtomicLong generation = new AtomicLong();
+
+    public CorpusGeneration(ClusterNotifications clusterNotifications) {
+        this.clusterNotifications = clusterNotifications;
+        clusterNotifications.subscribe(CHANNEL, payload -> generation.incrementAndGet(), generation::incrementAndGet);
+    }
+
+    public long get() {
+        return generation.get();
+    }
+
+    /**
+     * Marks the corpus as changed on this node and on all other nodes.
+     */
+    public void bump() {
+        generation.incrementAndGet();
+        clusterNotifications.publish(CHANNEL, "");
+    }
+}
@@ -7,6 +7,11 @@ package io.jmix.ai.backend.vectorstore;
  * <p>
  * The raw {@code docs}/{@code uisamples}/{@code trainings} corpuses keep their identifiers in the
  * respective ingesters' {@code getType()} and are out of scope here.
+ * <p>
+ * The vector store has a partial HNSW index per searched corpus type and Jmix version: a new type,
+ * here or in an ingester, needs new index changesets in the pgvector changelog
+ * ({@code 18-100000-vector-store-filter-columns.xml}), otherwise its searches fall back to the
+ * global index.
  */
 public final class CorpusType {
 
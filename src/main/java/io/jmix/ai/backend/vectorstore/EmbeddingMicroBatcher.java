@@ -0,0 +1,194 @@
+package io.jmix.ai.backend.vectorstore;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the single-text embedding calls of concurrent requests to the embedding model as one
+ * batched call.
+ * <p>
+ * A {@link #wrap wrapped} model collects the texts of {@link EmbeddingModel#embed(String)} for at
+ * most {@code embedding.batch.window} after the first one, or until {@code embedding.batch.max-size}
+ * texts are collected, and embeds them in one call on a pool of {@code embedding.batch.threads}
+ * threads; every caller gets the vector of its own text. This trades at most one window of
+ * latency for fewer calls and less rate-limit pressure at peak. A failed batch fails all its
+ * callers. Other calls, e.g. batches of documents during ingestion, pass through. Disabled with
+ * {@code embedding.batch.enabled=false}.
+ * <p>
+ * Distribution summary {@code jmix.ai.embedding.batch.size} records the number of texts per call.
+ */
+@Component
+public class EmbeddingMicroBatcher {
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxSize;
+    private final ScheduledExecutorService executor;
+    private final DistributionSummary batchSizes;
+
+    public EmbeddingMicroBatcher(@Value("${embedding.batch.enabled:true}") boolean enabled,
+                                 @Value("${embedding.batch.window:5ms}") Duration window,
+                                 @Value("${embedding.batch.max-size:64}") int maxSize,
+                                 @Value("${embedding.batch.threads:4}") int threads,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread t = new Thread(r);
+            t.setName("embedding-batch-" + t.threadId());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+        this.batchSizes = DistributionSummary.builder("jmix.ai.embedding.batch.size")
+                .description("Texts per batched query embedding call")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns a model batching the single-text embeddings of the delegate, or the delegate itself
+     * if batching is disabled.
+     */
+    public EmbeddingModel wrap(EmbeddingModel delegate) {
+        return enabled ? new BatchingEmbeddingModel(delegate) : delegate;
+    }
+
+    private record Pending(String text, CompletableFuture<float[]> result) {
+    }
+
+    private final class BatchingEmbeddingModel implements EmbeddingModel {
+
+        private final EmbeddingModel delegate;
+
+        // guarded by this
+        private List<Pending> collecting;
+
+        private BatchingEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public float[] embed(String text) {
+            Pending pending = new Pending(text, new CompletableFuture<>());
+            List<Pending> batch;
+            boolean first = false;
+            boolean full = false;
+            synchronized (this) {
+                if (collecting == null) {
+                    collecting = new ArrayList<>(maxSize);
+                    first = true;
+                }
+                batch = collecting;
+                batch.add(pending);
+                if (batch.size() >= maxSize) {
+                    collecting = null;
+                    full = true;
+                }
+            }
+            if (full) {
+                schedule(() -> send(batch), 0);
+            } else if (first) {
+                schedule(() -> send(take(batch)), windowNanos);
+            }
+            return await(pending.result());
+        }
+
+        /**
+         * Closes the batch if it is still collecting; returns null if it was sent as full.
+         */
+        @Nullable
+        private synchronized List<Pending> take(List<Pending> batch) {
+            if (collecting != batch) {
+                return null;
+            }
+            collecting = null;
+            return batch;
+        }
+
+        private void schedule(Runnable task, long delayNanos) {
+            try {
+                executor.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down: embed on the caller thread rather than leave it waiting
+                task.run();
+            }
+        }
+
+        private void send(@Nullable List<Pending> batch) {
+            if (batch == null) {
+                return;
+            }
+            batchSizes.record(batch.size());
+            try {
+                List<float[]> embeddings = delegate.embed(batch.stream().map(Pending::text).toList());
+                if (embeddings.size() != batch.size()) {
+                    throw new IllegalStateException("Embedding model returned %d vectors for %d texts"
+                            .formatted(embeddings.size(), batch.size()));
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(embeddings.get(i));
+                }
+            } catch (RuntimeException | Error e) {
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            }
+        }
+
+        private float[] await(CompletableFuture<float[]> result) {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the embedding", e);
+            } catch (ExecutionException e) {
+                // rethrow what the batch got, as if the caller had made the call
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            return delegate.call(request);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return delegate.embed(document);
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+    }
+}
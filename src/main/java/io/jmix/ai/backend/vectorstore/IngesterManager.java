@@ -10,15 +10,21 @@ import java.util.List;
 public class IngesterManager {
 
     private final List<Ingester> ingesters;
+    private final CorpusGeneration corpusGeneration;
 
-    public IngesterManager(List<Ingester> ingesters) {
+    public IngesterManager(List<Ingester> ingesters, CorpusGeneration corpusGeneration) {
         this.ingesters = ingesters;
+        this.corpusGeneration = corpusGeneration;
     }
 
     public String update() {
         StringBuilder sb = new StringBuilder();
-        for (Ingester updater : ingesters) {
-            updateAllVersions(updater, sb);
+        try {
+            for (Ingester updater : ingesters) {
+                updateAllVersions(updater, sb);
+            }
+        } finally {
+            corpusGeneration.bump();
         }
         return sb.toString();
     }
@@ -35,23 +41,31 @@ public class IngesterManager {
 
     public String updateByType(String type) {
         StringBuilder sb = new StringBuilder();
-        ingesters.stream()
-                .filter(updater -> updater.getType().equals(type))
-                .findFirst()
-                .ifPresent(updater -> updateAllVersions(updater, sb));
+        try {
+            ingesters.stream()
+                    .filter(updater -> updater.getType().equals(type))
+                    .findFirst()
+                    .ifPresent(updater -> updateAllVersions(updater, sb));
+        } finally {
+            corpusGeneration.bump();
+        }
         return sb.toString();
     }
 
     public String updateByTypeAndVersion(String type, JmixVersion version) {
         StringBuilder sb = new StringBuilder();
-        ingesters.stream()
-                .filter(updater -> updater.getType().equals(type))
-                .findFirst()
-                .ifPresent(updater -> {
-                    String result = updater.updateAll(version);
-                    sb.append("<b>").append(updater.getType()).append(" (").append(version.getId()).append(")</b><br>")
-                      .append(result);
-                });
+        try {
+            ingesters.stream()
+                    .filter(updater -> updater.getType().equals(type))
+                    .findFirst()
+                    .ifPresent(updater -> {
+                        String result = updater.updateAll(version);
+                        sb.append("<b>").append(updater.getType()).append(" (").append(version.getId()).append(")</b><br>")
+                          .append(result);
+                    });
+        } finally {
+            corpusGeneration.bump();
+        }
         return sb.toString();
     }
 
@@ -72,13 +86,17 @@ public class IngesterManager {
     public String updateByEntity(VectorStoreEntity entity) {
         StringBuilder sb = new StringBuilder();
         String type = (String) entity.getMetadataMap().get("type");
-        ingesters.stream()
-                .filter(updater -> updater.getType().equals(type))
-                .findFirst()
-                .ifPresent(updater -> {
-                    String result = updater.update(entity);
-                    sb.append("<b>").append(updater.getType()).append("</b><br>").append(result);
-                });
+        try {
+            ingesters.stream()
+                    .filter(updater -> updater.getType().equals(type))
+                    .findFirst()
+                    .ifPresent(updater -> {
+                        String result = updater.update(entity);
+                        sb.append("<b>").append(updater.getType()).append("</b><br>").append(result);
+                    });
+        } finally {
+            corpusGeneration.bump();
+        }
         return sb.toString();
     }
 }
@@ -0,0 +1,108 @@
+package io.jmix.ai.backend.vectorstore;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Similarity search over several corpora in one SQL statement.
+ * <p>
+ * Each {@link CorpusQuery} is a top-k branch of a {@code UNION ALL}, so the queries of the tools of
+ * a request cost one round-trip and one connection checkout instead of one per corpus. The filter
+ * of a branch is inlined by {@link ColumnFilterExpressionConverter}, so the planner can use the
+ * partial HNSW index of the corpus. The results are the same as those of
+ * {@code PgVectorStore.similaritySearch} with the same query, filter, top-k and similarity
+ * threshold: cosine distance, {@code distance} metadata and a score of {@code 1 - distance}. The
+ * threshold is applied to the top-k rows of a branch, which are ordered by distance, so it cuts
+ * the same documents without keeping the index scan from stopping after k rows.
+ * <p>
+ * The query texts are embedded with the query embedding model built by {@link VectorStoreConfig},
+ * so they share its cache and batching.
+ */
+public class MultiCorpusVectorSearch {
+
+    static final String BRANCH_SQL = "(SELECT %d AS idx, id, content, metadata, embedding <=> ?::vector AS distance " +
+            "FROM vector_store WHERE %s ORDER BY distance LIMIT ?)";
+    static final String UNION = " UNION ALL ";
+    static final String ORDER_BY = " ORDER BY idx, distance";
+
+    /**
+     * One corpus to search: the query text, the metadata filter selecting the corpus, how many
+     * documents to return and the minimum similarity, as in a {@code SearchRequest}.
+     */
+    public record CorpusQuery(String query, Filter.Expression filter, int topK, double similarityThreshold) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final FilterExpressionConverter filterExpressionConverter = new ColumnFilterExpressionConverter();
+
+    public MultiCorpusVectorSearch(JdbcTemplate jdbcTemplate, EmbeddingModel embeddingModel) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * Searches all corpora at once. Returns the documents of each query, most similar first, in
+     * the order of the queries.
+     */
+    public List<List<Document>> search(List<CorpusQuery> queries) {
+        if (queries.isEmpty()) {
+            return List.of();
+        }
+        // tools of one request usually search the same text: embed it once
+        Map<String, String> embeddings = new HashMap<>();
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>(queries.size() * 2);
+        for (int i = 0; i < queries.size(); i++) {
+            CorpusQuery query = queries.get(i);
+            if (i > 0) {
+                sql.append(UNION);
+            }
+            sql.append(BRANCH_SQL.formatted(i, filterExpressionConverter.convertExpression(query.filter())));
+            args.add(embeddings.computeIfAbsent(query.query(), text -> toVectorLiteral(embeddingModel.embed(text))));
+            args.add(query.topK());
+        }
+        sql.append(ORDER_BY);
+
+        List<List<Document>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(new ArrayList<>());
+        }
+        jdbcTemplate.query(sql.toString(), rs -> {
+            int idx = rs.getInt("idx");
+            double distance = rs.getDouble("distance");
+            if (distance >= 1.0 - queries.get(idx).similarityThreshold()) {
+                return;
+            }
+            Map<String, Object> metadata = new HashMap<>(ModelOptionsUtils.jsonToMap(rs.getString("metadata")));
+            metadata.put("distance", (float) distance);
+            results.get(idx).add(Document.builder()
+                    .id(rs.getString("id"))
+                    .text(rs.getString("content"))
+                    .metadata(metadata)
+                    .score(1.0 - distance)
+                    .build());
+        }, args.toArray());
+        return results;
+    }
+
+    static String toVectorLiteral(float[] embedding) {
+        StringBuilder literal = new StringBuilder(embedding.length * 12).append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(embedding[i]);
+        }
+        return literal.append(']').toString();
+    }
+}
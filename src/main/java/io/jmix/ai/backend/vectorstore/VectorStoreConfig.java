@@ -1,23 +1,57 @@
 package io.jmix.ai.backend.vectorstore;
 
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.metrics.TimingEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
 
 @Configuration
 public class VectorStoreConfig {
 
+    /**
+     * Embeds the search queries through the cache, the micro-batcher and the embedding timer. The
+     * vector store gets the plain model, so ingestion neither fills the cache nor skews
+     * {@code jmix.ai.pipeline.embedding}.
+     */
+    @Bean
+    public MultiCorpusVectorSearch multiCorpusVectorSearch(
+            @Qualifier("pgvectorJdbcTemplate") JdbcTemplate jdbcTemplate,
+            EmbeddingModel embeddingModel,
+            PipelineMetrics pipelineMetrics,
+            MeterRegistry meterRegistry,
+            EmbeddingMicroBatcher embeddingMicroBatcher,
+            @Value("${embedding.cache.enabled:true}") boolean embeddingCacheEnabled,
+            @Value("${embedding.cache.max-size:64MB}") DataSize embeddingCacheMaxSize,
+            @Value("${spring.ai.openai.embedding.options.model:}") String embeddingModelName
+    ) {
+        // batched calls of concurrent queries are timed as one call of the batch kind
+        EmbeddingModel queryEmbeddingModel = embeddingMicroBatcher.wrap(
+                new TimingEmbeddingModel(embeddingModel, pipelineMetrics));
+        if (embeddingCacheEnabled) {
+            // in front of the batching and timing: hits neither wait for a batch nor count as model calls
+            queryEmbeddingModel = new CachingEmbeddingModel(queryEmbeddingModel, embeddingModelName,
+                    embeddingCacheMaxSize.toBytes(), meterRegistry);
+        }
+        return new MultiCorpusVectorSearch(jdbcTemplate, queryEmbeddingModel);
+    }
+
     @Bean
     public VectorStore vectorStore(
             @Qualifier("pgvectorJdbcTemplate") JdbcTemplate jdbcTemplate,
-            EmbeddingModel embeddingModel
+            EmbeddingModel embeddingModel,
+            // also the vector column of the pgvector changelog (pgvector.liquibase.parameters)
+            @Value("${embedding.dimensions:1536}") int dimensions
     ) {
         return PgVectorStore.builder(jdbcTemplate, embeddingModel)
-                .dimensions(1536)                    // Optional: defaults to model dimensions or 1536
+                .dimensions(dimensions)              // Optional: defaults to model dimensions or 1536
                 .initializeSchema(true)              // Optional: defaults to false
                 .schemaName("public")                // Optional: defaults to "public"
                 .vectorTableName("vector_store")     // Optional: defaults to "vector_store"
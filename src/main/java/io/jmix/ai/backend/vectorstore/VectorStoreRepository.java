@@ -8,7 +8,6 @@ import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
 import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
 import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
-import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.lang.Nullable;
@@ -34,7 +33,7 @@ public class VectorStoreRepository {
         Optional<JdbcTemplate> nativeClient = vectorStore.getNativeClient();
         jdbcTemplate = nativeClient.orElseThrow(() -> new IllegalStateException("No native client available"));
 
-        filterExpressionConverter = new PgVectorFilterExpressionConverter();
+        filterExpressionConverter = new ColumnFilterExpressionConverter();
         filterExpressionTextParser = new FilterExpressionTextParser();
     }
 
@@ -49,11 +48,11 @@ public class VectorStoreRepository {
 
     public List<VectorStoreEntity> loadList(@Nullable Filter.Expression filterExpression, int offset, int limit) {
         String sql;
-        String orderBy = "ORDER BY metadata::jsonb ->> 'type', metadata::jsonb ->> 'source'";
+        String orderBy = "ORDER BY type, source";
         if (filterExpression != null) {
             String nativeFilterExpression = this.filterExpressionConverter.convertExpression(filterExpression);
             sql = "SELECT id, content, metadata FROM vector_store " +
-                    "WHERE metadata::jsonb @@ '" + nativeFilterExpression + "'::jsonpath " + orderBy;
+                    "WHERE " + nativeFilterExpression + " " + orderBy;
         } else {
             sql = "SELECT id, content, metadata FROM vector_store " + orderBy;
         }
@@ -72,13 +71,13 @@ public class VectorStoreRepository {
         }
 
         String sql = "SELECT id, content, metadata FROM vector_store " +
-                "WHERE metadata::jsonb ->> 'type' = ? " +
-                "AND metadata::jsonb ->> 'source' = ? ";
+                "WHERE type = ? " +
+                "AND source = ? ";
         if (version != null) {
-            return jdbcTemplate.query(sql + "AND metadata::jsonb ->> 'jmixVersion' = ?",
+            return jdbcTemplate.query(sql + "AND jmix_version = ?",
                     getVsEntityRowMapper(), type, source, version.getId());
         }
-        return jdbcTemplate.query(sql + "AND metadata::jsonb ->> 'jmixVersion' IS NULL",
+        return jdbcTemplate.query(sql + "AND jmix_version IS NULL",
                 getVsEntityRowMapper(), type, source);
     }
 
@@ -93,8 +92,7 @@ public class VectorStoreRepository {
      * Returns rows of [type, jmixVersion (nullable), count].
      */
     public List<Object[]> countByTypeAndVersion() {
-        String sql = "SELECT metadata::jsonb ->> 'type' AS type, " +
-                "metadata::jsonb ->> 'jmixVersion' AS version, count(*) AS cnt " +
+        String sql = "SELECT type, jmix_version AS version, count(*) AS cnt " +
                 "FROM vector_store GROUP BY 1, 2 ORDER BY 1, 2";
         return jdbcTemplate.query(sql, (rs, rowNum) ->
                 new Object[]{rs.getString("type"), rs.getString("version"), rs.getInt("cnt")});
@@ -102,7 +100,7 @@ public class VectorStoreRepository {
 
     /** AI-generated docs snippets only — excludes lossless coverage chunks and plain-text fallback chunks. */
     private static final String AI_SNIPPET_FILTER =
-            "metadata::jsonb->>'type' = '" + CorpusType.DOCS_SNIPPETS + "' AND metadata::jsonb->>'enriched' = 'true'";
+            "type = '" + CorpusType.DOCS_SNIPPETS + "' AND metadata::jsonb->>'enriched' = 'true'";
 
     /**
      * Counts AI-generated docs snippets grouped by topic and Jmix version. The topic
@@ -111,7 +109,7 @@ public class VectorStoreRepository {
      */
     public List<Object[]> countSnippetTopicByVersion() {
         String sql = "SELECT metadata::jsonb->>'topic' AS topic, " +
-                "metadata::jsonb->>'jmixVersion' AS version, count(*) AS cnt " +
+                "jmix_version AS version, count(*) AS cnt " +
                 "FROM vector_store WHERE " + AI_SNIPPET_FILTER + " GROUP BY 1, 2";
         return jdbcTemplate.query(sql, (rs, rowNum) ->
                 new Object[]{rs.getString("topic"), rs.getString("version"), rs.getInt("cnt")});
@@ -134,8 +132,7 @@ public class VectorStoreRepository {
         String sql;
         if (filterExpression != null) {
             String nativeFilterExpression = this.filterExpressionConverter.convertExpression(filterExpression);
-            sql = "SELECT count(*) FROM vector_store " +
-                    "WHERE metadata::jsonb @@ '" + nativeFilterExpression + "'::jsonpath ";
+            sql = "SELECT count(*) FROM vector_store WHERE " + nativeFilterExpression;
         } else {
             sql = "SELECT count(*) FROM vector_store ";
         }
@@ -168,8 +165,7 @@ public class VectorStoreRepository {
         String sql;
         if (filterExpression != null) {
             String nativeFilterExpression = this.filterExpressionConverter.convertExpression(filterExpression);
-            sql = "DELETE FROM vector_store " +
-                    "WHERE metadata::jsonb @@ '" + nativeFilterExpression + "'::jsonpath ";
+            sql = "DELETE FROM vector_store WHERE " + nativeFilterExpression;
         } else {
             sql = "DELETE FROM vector_store ";
         }
@@ -130,7 +130,9 @@ public class ChatView extends StandardView {
                                     : " _(%d results requested, vector fetch widened to %d)_"
                                             .formatted(tc.requested().results(), tc.requested().vectorFetch()));
             case EventStreamValueHolder.ToolRetrieved tr -> "\n%s ".formatted(ts) + renderDocList("Retrieved", tr.documents(), tr.durationMs());
-            case EventStreamValueHolder.ToolReranked tr -> "\n%s ".formatted(ts) + renderDocList("Reranked", tr.documents(), tr.durationMs());
+            case EventStreamValueHolder.ToolReranked tr -> "\n%s ".formatted(ts) + renderDocList("Reranked", tr.documents(), tr.durationMs())
+                    + (tr.savedTokens() > 0 ? " _(budget saved ~%d tokens)_".formatted(tr.savedTokens()) : "");
+            case EventStreamValueHolder.ToolSources ignored -> "";
             case EventStreamValueHolder.ToolCallEnd tc ->
                     "  \n%s _%s done in %s_\n\n---\n".formatted(ts, tc.tool(), formatMs(tc.totalDurationMs()));
             case EventStreamValueHolder.TokensStart ignored -> "";
@@ -139,8 +141,8 @@ public class ChatView extends StandardView {
             case EventStreamValueHolder.SourcesStart ignored -> "\n\n---\n**Sources:**";
             case EventStreamValueHolder.Metadata m -> "\n- [%s](%s)".formatted(m.source(), m.source());
             case EventStreamValueHolder.RequestEnd re ->
-                    "\n\n---\n%s Received response in %d ms \\[promptTokens: %d, completionTokens: %d\\]"
-                            .formatted(ts, re.totalDurationMs(), re.promptTokens(), re.completionTokens());
+                    "\n\n---\n%s Received response in %d ms \\[promptTokens: %d, cachedPromptTokens: %d, completionTokens: %d\\]"
+                            .formatted(ts, re.totalDurationMs(), re.promptTokens(), re.cachedPromptTokens(), re.completionTokens());
         };
     }
 
@@ -8,6 +8,7 @@ import com.vaadin.flow.router.QueryParameters;
 import com.vaadin.flow.router.Route;
 import io.jmix.ai.backend.entity.JmixVersion;
 import io.jmix.ai.backend.entity.VectorStoreEntity;
+import io.jmix.ai.backend.vectorstore.CorpusGeneration;
 import io.jmix.ai.backend.vectorstore.EnrichmentCacheCleanupService;
 import io.jmix.ai.backend.vectorstore.Ingester;
 import io.jmix.ai.backend.vectorstore.IngesterManager;
@@ -57,6 +58,8 @@ public class VectorStoreView extends StandardListView<VectorStoreEntity> {
     @Autowired
     private VectorStoreRepository vectorStoreRepository;
     @Autowired
+    private CorpusGeneration corpusGeneration;
+    @Autowired
     private EnrichmentCacheCleanupService enrichmentCacheCleanupService;
     @Autowired
     private Notifications notifications;
@@ -194,6 +197,7 @@ public class VectorStoreView extends StandardListView<VectorStoreEntity> {
                 .withActions(
                         new DialogAction(DialogAction.Type.YES).withHandler(e -> {
                             vectorStoreRepository.delete(filterField.getTypedValue());
+                            corpusGeneration.bump();
                             vectorStoreDl.load();
                         }),
                         new DialogAction(DialogAction.Type.NO)
@@ -271,6 +275,7 @@ public class VectorStoreView extends StandardListView<VectorStoreEntity> {
         vectorStoreRepository.deleteIds(entities.stream()
                 .map(VectorStoreEntity::getId)
                 .toList());
+        corpusGeneration.bump();
     }
 
     private List<VectorStoreEntity> invalidSourceMetadata() {
@@ -0,0 +1,120 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.entity.JmixVersion;
+import io.jmix.ai.backend.vectorstore.CorpusGeneration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnswerCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMemory chatMemory = mock(ChatMemory.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final CorpusGeneration corpusGeneration = mock(CorpusGeneration.class);
+
+    private static final AnswerCache.CachedAnswer ANSWER =
+            new AnswerCache.CachedAnswer("Use a Button with a click listener.", List.of("https://docs.jmix.io/button"));
+
+    @BeforeEach
+    void setUp() {
+        when(chatMemory.get(anyString())).thenReturn(List.of());
+    }
+
+    private AnswerCache newCache(boolean semantic) {
+        return new AnswerCache(chatMemory, embeddingModel, corpusGeneration, meterRegistry,
+                true, 100, Duration.ofHours(1), semantic, 0.9);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("jmix.ai.chat.answer.cache").tag("result", result).counter().count();
+    }
+
+    private static void storeMiss(AnswerCache cache, String question) {
+        AnswerCache.Lookup lookup = cache.lookup(question, null, JmixVersion.V2, "v1");
+        assertThat(lookup).isNotNull();
+        assertThat(lookup.getAnswer()).isNull();
+        cache.store(lookup, ANSWER);
+    }
+
+    @Test
+    void answersRepeatedQuestionIgnoringCaseAndPunctuation() {
+        AnswerCache cache = newCache(false);
+        storeMiss(cache, "How to create a button?");
+
+        AnswerCache.Lookup lookup = cache.lookup("  how to create   a BUTTON ", "c1", JmixVersion.V2, "v1");
+
+        assertThat(lookup).isNotNull();
+        assertThat(lookup.getAnswer()).isEqualTo(ANSWER);
+        assertThat(count("exact")).isEqualTo(1.0);
+        assertThat(count("miss")).isEqualTo(1.0);
+        verify(embeddingModel, never()).embed(anyString());
+    }
+
+    @Test
+    void separatesJmixAndParametersVersions() {
+        AnswerCache cache = newCache(false);
+        storeMiss(cache, "How to create a button?");
+
+        assertThat(cache.lookup("How to create a button?", null, JmixVersion.V3, "v1").getAnswer()).isNull();
+        assertThat(cache.lookup("How to create a button?", null, JmixVersion.V2, "v2").getAnswer()).isNull();
+    }
+
+    @Test
+    void skipsFollowUpQuestions() {
+        AnswerCache cache = newCache(false);
+        storeMiss(cache, "How to create a button?");
+        when(chatMemory.get("c1")).thenReturn(List.of(new UserMessage("earlier question")));
+
+        assertThat(cache.lookup("How to create a button?", "c1", JmixVersion.V2, "v1")).isNull();
+    }
+
+    @Test
+    void dropsAnswersWhenCorpusChanges() {
+        AnswerCache cache = newCache(false);
+        storeMiss(cache, "How to create a button?");
+
+        when(corpusGeneration.get()).thenReturn(1L);
+
+        assertThat(cache.lookup("How to create a button?", null, JmixVersion.V2, "v1").getAnswer()).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void reusesAnswerOfSimilarQuestion() {
+        AnswerCache cache = newCache(true);
+        when(embeddingModel.embed("how to create a button")).thenReturn(new float[]{1f, 0f, 0f});
+        when(embeddingModel.embed("how do i add a button")).thenReturn(new float[]{0.98f, 0.1f, 0f});
+        when(embeddingModel.embed("how to configure security")).thenReturn(new float[]{0f, 1f, 0f});
+        storeMiss(cache, "How to create a button?");
+
+        assertThat(cache.lookup("How do I add a button?", null, JmixVersion.V2, "v1").getAnswer()).isEqualTo(ANSWER);
+        assertThat(cache.lookup("How to configure security?", null, JmixVersion.V2, "v1").getAnswer()).isNull();
+        assertThat(count("semantic")).isEqualTo(1.0);
+    }
+
+    @Test
+    void recordsServedAnswerInConversationMemory() {
+        AnswerCache cache = newCache(false);
+
+        cache.recordExchange("c1", "How to create a button?", ANSWER);
+
+        verify(chatMemory).add(eq("c1"), ArgumentMatchers.<List<Message>>argThat(messages -> messages.size() == 2));
+    }
+}
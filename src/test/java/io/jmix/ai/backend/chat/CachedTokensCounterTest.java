@@ -0,0 +1,91 @@
+package io.jmix.ai.backend.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.openai.api.OpenAiApi;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CachedTokensCounterTest {
+
+    private static OpenAiApi.Usage usage(Integer cachedTokens) {
+        OpenAiApi.Usage.PromptTokensDetails details = mock(OpenAiApi.Usage.PromptTokensDetails.class);
+        when(details.cachedTokens()).thenReturn(cachedTokens);
+        OpenAiApi.Usage usage = mock(OpenAiApi.Usage.class);
+        when(usage.promptTokensDetails()).thenReturn(details);
+        return usage;
+    }
+
+    private static OpenAiApi.ChatCompletionChunk usageChunk(int promptTokens, int completionTokens, int cachedTokens) {
+        OpenAiApi.Usage usage = usage(cachedTokens);
+        when(usage.promptTokens()).thenReturn(promptTokens);
+        when(usage.completionTokens()).thenReturn(completionTokens);
+        OpenAiApi.ChatCompletionChunk chunk = mock(OpenAiApi.ChatCompletionChunk.class);
+        when(chunk.usage()).thenReturn(usage);
+        return chunk;
+    }
+
+    private static OpenAiApi.ChatCompletionChunk textChunk(String text) {
+        OpenAiApi.ChatCompletionMessage delta = mock(OpenAiApi.ChatCompletionMessage.class);
+        when(delta.content()).thenReturn(text);
+        OpenAiApi.ChatCompletionChunk.ChunkChoice choice = mock(OpenAiApi.ChatCompletionChunk.ChunkChoice.class);
+        when(choice.delta()).thenReturn(delta);
+        OpenAiApi.ChatCompletionChunk chunk = mock(OpenAiApi.ChatCompletionChunk.class);
+        when(chunk.choices()).thenReturn(List.of(choice));
+        return chunk;
+    }
+
+    @Test
+    void sumsUsageOfFinishedCallsAndCountsTheTextOfTheRunningOne() {
+        CachedTokensCounter counter = new CachedTokensCounter();
+
+        // the round calling the tools, then the answer still streaming
+        counter.add(textChunk("{}"));
+        counter.add(usageChunk(1200, 30, 1024));
+        counter.add(textChunk("Use a "));
+        counter.add(textChunk("DataManager."));
+
+        assertThat(counter.getPromptTokens()).isEqualTo(1200);
+        assertThat(counter.getCompletionTokens()).isEqualTo(30);
+        assertThat(counter.get()).isEqualTo(1024);
+        assertThat(counter.getUnreportedChars()).isEqualTo(18);
+
+        counter.add(usageChunk(1500, 5, 1024));
+
+        assertThat(counter.getPromptTokens()).isEqualTo(2700);
+        assertThat(counter.getCompletionTokens()).isEqualTo(35);
+        assertThat(counter.getUnreportedChars()).isZero();
+    }
+
+    @Test
+    void sumsCallsMadeInsideABlockingCall() {
+        CachedTokensCounter counter = new CachedTokensCounter();
+
+        counter.call(() -> {
+            CachedTokensCounter.current().add(usage(1024));
+            CachedTokensCounter.current().add(usage(null));
+            CachedTokensCounter.current().add(usage(512));
+            return null;
+        });
+
+        assertThat(counter.get()).isEqualTo(1536);
+        assertThat(CachedTokensCounter.current()).isNull();
+    }
+
+    @Test
+    void reachesModelCallsOfAStreamThroughTheContext() {
+        CachedTokensCounter counter = new CachedTokensCounter();
+        Flux<Integer> modelCall = Flux.deferContextual(context -> {
+            CachedTokensCounter.from(context).add(usage(256));
+            return Flux.just(1);
+        });
+
+        counter.stream(modelCall.concatWith(modelCall)).blockLast();
+
+        assertThat(counter.get()).isEqualTo(512);
+    }
+}
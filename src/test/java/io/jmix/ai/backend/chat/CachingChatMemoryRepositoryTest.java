@@ -0,0 +1,142 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.cluster.ClusterNotifications;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingChatMemoryRepositoryTest {
+
+    private final ChatMemoryRepository delegate = mock(ChatMemoryRepository.class);
+    private final ClusterNotifications clusterNotifications = mock(ClusterNotifications.class);
+    // a long interval keeps the scheduled flush out of the way; tests flush explicitly
+    private final CachingChatMemoryRepository repository = new CachingChatMemoryRepository(
+            delegate, clusterNotifications, new SimpleMeterRegistry(), 2, Duration.ofHours(1), Duration.ofHours(1));
+
+    private static final List<Message> TURN = List.of(new UserMessage("question"), new AssistantMessage("answer"));
+
+    @AfterEach
+    void tearDown() {
+        repository.shutdown();
+    }
+
+    @Test
+    void loadsConversationOnce() {
+        when(delegate.findByConversationId("c1")).thenReturn(TURN);
+
+        assertThat(repository.findByConversationId("c1")).isEqualTo(TURN);
+        assertThat(repository.findByConversationId("c1")).isEqualTo(TURN);
+
+        verify(delegate, times(1)).findByConversationId("c1");
+    }
+
+    @Test
+    void servesSavedWindowAndWritesOnlyTheLatestOne() {
+        List<Message> first = List.of(new UserMessage("question"));
+
+        repository.saveAll("c1", first);
+        repository.saveAll("c1", TURN);
+
+        assertThat(repository.findByConversationId("c1")).isEqualTo(TURN);
+        verify(delegate, never()).saveAll(anyString(), any());
+
+        repository.flush();
+
+        verify(delegate).saveAll("c1", TURN);
+        verify(delegate, never()).saveAll("c1", first);
+        verify(delegate, never()).findByConversationId(anyString());
+        verify(clusterNotifications).publish(eq(CachingChatMemoryRepository.CHANNEL), anyString());
+    }
+
+    @Test
+    void dropsConversationChangedOnAnotherNode() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(clusterNotifications).subscribe(eq(CachingChatMemoryRepository.CHANNEL), listener.capture(), any());
+        when(delegate.findByConversationId("c1")).thenReturn(TURN);
+        repository.findByConversationId("c1");
+
+        listener.getValue().accept("other-node:c1");
+        repository.findByConversationId("c1");
+
+        verify(delegate, times(2)).findByConversationId("c1");
+    }
+
+    @Test
+    void ignoresItsOwnNotifications() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(clusterNotifications).subscribe(eq(CachingChatMemoryRepository.CHANNEL), listener.capture(), any());
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        repository.saveAll("c1", TURN);
+        repository.flush();
+        verify(clusterNotifications).publish(eq(CachingChatMemoryRepository.CHANNEL), payload.capture());
+
+        listener.getValue().accept(payload.getValue());
+
+        assertThat(repository.findByConversationId("c1")).isEqualTo(TURN);
+        verify(delegate, never()).findByConversationId(anyString());
+    }
+
+    @Test
+    void deleteRemovesPendingWindow() {
+        repository.saveAll("c1", TURN);
+
+        repository.deleteByConversationId("c1");
+        repository.flush();
+
+        verify(delegate).deleteByConversationId("c1");
+        verify(delegate, never()).saveAll(anyString(), any());
+    }
+
+    @Test
+    void deleteDuringFlushIsNotUndoneByIt() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(delegate).saveAll(eq("c1"), any());
+        repository.saveAll("c1", TURN);
+
+        Thread flush = Thread.ofPlatform().start(repository::flush);
+        writing.await();
+        Thread delete = Thread.ofPlatform().start(() -> repository.deleteByConversationId("c1"));
+        // the delete waits for the flush that already read the window
+        delete.join(200);
+        verify(delegate, never()).deleteByConversationId("c1");
+        release.countDown();
+        flush.join();
+        delete.join();
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).saveAll("c1", TURN);
+        inOrder.verify(delegate).deleteByConversationId("c1");
+        repository.flush();
+        verify(delegate, times(1)).saveAll(eq("c1"), any());
+    }
+}
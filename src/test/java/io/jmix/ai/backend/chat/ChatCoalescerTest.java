@@ -0,0 +1,149 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.entity.JmixVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMemory chatMemory = mock(ChatMemory.class);
+    private final ChatCoalescer coalescer = new ChatCoalescer(chatMemory, meterRegistry, true);
+
+    private static StreamingEvent event(String conversationId, String text) {
+        return StreamingEvent.of(conversationId, new EventStreamValueHolder.Content(text));
+    }
+
+    private static List<String> texts(List<StreamingEvent> events) {
+        return events.stream()
+                .map(event -> ((EventStreamValueHolder.Content) event.value()).text())
+                .toList();
+    }
+
+    @Test
+    void keysFirstTurnQuestionsIgnoringCaseAndPunctuation() {
+        when(chatMemory.get("c1")).thenReturn(List.of());
+        when(chatMemory.get("c2")).thenReturn(List.of());
+
+        ChatCoalescer.Key first = coalescer.key("How to create a button?", "c1", JmixVersion.V2, "p1");
+        ChatCoalescer.Key second = coalescer.key("how to create a  BUTTON", "c2", JmixVersion.V2, "p1");
+
+        assertThat(first).isNotNull().isEqualTo(second);
+        assertThat(coalescer.key("How to create a button?", null, JmixVersion.V3, "p1")).isNotEqualTo(first);
+        assertThat(coalescer.key("How to create a button?", null, JmixVersion.V2, "p2")).isNotEqualTo(first);
+    }
+
+    @Test
+    void followUpsAreNotCoalesced() {
+        when(chatMemory.get("c1")).thenReturn(List.<Message>of(new UserMessage("earlier question")));
+
+        assertThat(coalescer.key("How to create a button?", "c1", JmixVersion.V2, "p1")).isNull();
+        assertThat(new ChatCoalescer(chatMemory, meterRegistry, false)
+                .key("How to create a button?", null, JmixVersion.V2, "p1")).isNull();
+    }
+
+    @Test
+    void lateFollowerReplaysTheLeaderStreamFromTheStart() {
+        ChatCoalescer.Key key = new ChatCoalescer.Key("q", "v2", "p1");
+        Sinks.Many<StreamingEvent> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger subscriptions = new AtomicInteger();
+
+        AtomicInteger followed = new AtomicInteger();
+
+        Flux<StreamingEvent> leader = coalescer.stream(key, () -> {
+            subscriptions.incrementAndGet();
+            return upstream.asFlux();
+        }, flight -> flight.doOnSubscribe(s -> followed.incrementAndGet()));
+        List<StreamingEvent> leaderEvents = new CopyOnWriteArrayList<>();
+        leader.subscribe(leaderEvents::add);
+        upstream.tryEmitNext(event("leader", "Use "));
+
+        Flux<StreamingEvent> follower = coalescer.stream(key, () -> {
+            subscriptions.incrementAndGet();
+            return Flux.just(event("follower", "own answer"));
+        }, flight -> flight.doOnSubscribe(s -> followed.incrementAndGet()));
+        List<StreamingEvent> followerEvents = new CopyOnWriteArrayList<>();
+        follower.subscribe(followerEvents::add);
+        upstream.tryEmitNext(event("leader", "a Button."));
+        upstream.tryEmitComplete();
+
+        assertThat(followed).hasValue(1);
+        assertThat(subscriptions).hasValue(1);
+        assertThat(texts(leaderEvents)).containsExactly("Use ", "a Button.");
+        assertThat(texts(followerEvents)).containsExactly("Use ", "a Button.");
+        assertThat(coalescer.streamsInFlight()).isZero();
+        assertThat(meterRegistry.get("jmix.ai.requests.coalesced")
+                .tag("operation", "chat-stream").tag("role", "follower").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sharedStreamKeepsRunningUntilTheLastClientDisconnects() {
+        ChatCoalescer.Key key = new ChatCoalescer.Key("q", "v2", "p1");
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<StreamingEvent> upstream = Flux.interval(Duration.ofMillis(10))
+                .map(i -> event("leader", "token " + i))
+                .doOnCancel(() -> cancelled.set(true));
+
+        Disposable leader = coalescer.stream(key, () -> upstream, UnaryOperator.identity()).subscribe();
+        Disposable follower = coalescer.stream(key, () -> upstream, UnaryOperator.identity()).subscribe();
+
+        leader.dispose();
+        assertThat(cancelled).isFalse();
+        follower.dispose();
+        assertThat(cancelled).isTrue();
+        assertThat(coalescer.streamsInFlight()).isZero();
+    }
+
+    @Test
+    void followerSubscribingAfterCompletionReplaysWithoutRunningTheRequestAgain() {
+        ChatCoalescer.Key key = new ChatCoalescer.Key("q", "v2", "p1");
+        AtomicInteger subscriptions = new AtomicInteger();
+        Supplier<Flux<StreamingEvent>> request = () -> {
+            subscriptions.incrementAndGet();
+            return Flux.just(event("leader", "Use a Button."));
+        };
+
+        Flux<StreamingEvent> leader = coalescer.stream(key, request, UnaryOperator.identity());
+        // got the flight while it was in the map, subscribes after it has completed
+        Flux<StreamingEvent> follower = coalescer.stream(key, request, UnaryOperator.identity());
+        assertThat(texts(leader.collectList().block())).containsExactly("Use a Button.");
+        assertThat(coalescer.streamsInFlight()).isZero();
+
+        assertThat(texts(follower.collectList().block())).containsExactly("Use a Button.");
+        assertThat(subscriptions).hasValue(1);
+    }
+
+    @Test
+    void followerOfAnAbandonedStreamRunsItsOwnRequest() {
+        ChatCoalescer.Key key = new ChatCoalescer.Key("q", "v2", "p1");
+        AtomicBoolean followed = new AtomicBoolean();
+
+        Flux<StreamingEvent> leader = coalescer.stream(key, () -> Flux.<StreamingEvent>never(), UnaryOperator.identity());
+        Flux<StreamingEvent> follower = coalescer.stream(key, () -> Flux.just(event("follower", "own answer")),
+                flight -> flight.doOnSubscribe(s -> followed.set(true)));
+        leader.subscribe().dispose();
+
+        assertThat(texts(follower.collectList().block())).containsExactly("own answer");
+        assertThat(followed).isFalse();
+        assertThat(meterRegistry.get("jmix.ai.requests.coalesced")
+                .tag("operation", "chat-stream").tag("role", "leader").counter().count()).isEqualTo(2);
+    }
+}
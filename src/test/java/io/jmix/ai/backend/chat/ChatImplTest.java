@@ -0,0 +1,129 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.chatlog.ChatLogManager;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.ParametersRepository;
+import io.jmix.ai.backend.retrieval.SpeculativeRetrieval;
+import io.jmix.ai.backend.retrieval.ToolsManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.openai.api.OpenAiApi;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatImplTest {
+
+    private static final String CHUNK = "a chunk of the answer ";
+
+    private final ChatLogManager chatLogManager = mock(ChatLogManager.class);
+    private final TokenUsageMetrics tokenUsageMetrics = mock(TokenUsageMetrics.class);
+    private final ChatImpl chat = new ChatImpl(mock(ChatModelRegistry.class), mock(ParametersRepository.class),
+            Schedulers.immediate(), new StreamConcurrencyLimiter(4, Duration.ofSeconds(1), new SimpleMeterRegistry()),
+            mock(ToolsManager.class), chatLogManager, mock(SystemPromptResolver.class), tokenUsageMetrics,
+            mock(PipelineMetrics.class), mock(SpeculativeRetrieval.class), mock(ParallelToolCallingManager.class));
+
+    private static List<StreamingEvent> answerWithToolsAndSources() {
+        List<EventStreamValueHolder> values = new ArrayList<>();
+        values.add(new EventStreamValueHolder.RequestInfo("gpt", "How to load an entity?"));
+        values.add(new EventStreamValueHolder.ToolCallStart("docs", "load entity", null));
+        values.add(new EventStreamValueHolder.ToolRetrieved("docs",
+                List.of(new EventStreamValueHolder.DocScore(0.9, "https://docs/a")), 12));
+        values.add(new EventStreamValueHolder.ToolCallEnd("docs", 20));
+        values.add(new EventStreamValueHolder.TokensStart());
+        for (int i = 0; i < 1000; i++) {
+            values.add(new EventStreamValueHolder.Content(CHUNK));
+        }
+        values.add(new EventStreamValueHolder.TokensEnd());
+        values.add(new EventStreamValueHolder.SourcesStart());
+        values.add(new EventStreamValueHolder.Metadata("https://docs/a"));
+        values.add(new EventStreamValueHolder.Metadata("https://docs/b"));
+        return values.stream().map(value -> StreamingEvent.of("cid", value)).toList();
+    }
+
+    private static OpenAiApi.ChatCompletionChunk usageChunk(int promptTokens, int completionTokens, int cachedTokens) {
+        OpenAiApi.Usage.PromptTokensDetails details = mock(OpenAiApi.Usage.PromptTokensDetails.class);
+        when(details.cachedTokens()).thenReturn(cachedTokens);
+        OpenAiApi.Usage usage = mock(OpenAiApi.Usage.class);
+        when(usage.promptTokensDetails()).thenReturn(details);
+        when(usage.promptTokens()).thenReturn(promptTokens);
+        when(usage.completionTokens()).thenReturn(completionTokens);
+        OpenAiApi.ChatCompletionChunk chunk = mock(OpenAiApi.ChatCompletionChunk.class);
+        when(chunk.usage()).thenReturn(usage);
+        return chunk;
+    }
+
+    private static OpenAiApi.ChatCompletionChunk textChunk(String text) {
+        OpenAiApi.ChatCompletionMessage delta = mock(OpenAiApi.ChatCompletionMessage.class);
+        when(delta.content()).thenReturn(text);
+        OpenAiApi.ChatCompletionChunk.ChunkChoice choice = mock(OpenAiApi.ChatCompletionChunk.ChunkChoice.class);
+        when(choice.delta()).thenReturn(delta);
+        OpenAiApi.ChatCompletionChunk chunk = mock(OpenAiApi.ChatCompletionChunk.class);
+        when(chunk.choices()).thenReturn(List.of(choice));
+        return chunk;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<String>> logLinesCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    @Test
+    void persistsLogSourcesAndReportedUsageOfACompletedStream() {
+        List<StreamingEvent> events = new ArrayList<>(answerWithToolsAndSources());
+        events.add(StreamingEvent.of("cid", new EventStreamValueHolder.RequestEnd(1200, 1024, 300, 1500)));
+
+        chat.withDiagnostics(Flux.fromIterable(events), new CancellationToken(), new CachedTokensCounter())
+                .blockLast();
+
+        ArgumentCaptor<List<String>> logLines = logLinesCaptor();
+        verify(chatLogManager).saveStreamResponse(eq("cid"), logLines.capture(),
+                eq("https://docs/a,https://docs/b"), eq(1200), eq(1024), eq(300), eq(1500));
+        assertThat(logLines.getValue())
+                .hasSize(5)
+                .noneMatch(line -> line.contains(CHUNK));
+        assertThat(logLines.getValue().getLast()).contains("Received response in 1500 ms");
+        verify(tokenUsageMetrics).record(1200, 1024, 300);
+    }
+
+    @Test
+    void persistsPartialUsageOfACancelledStream() {
+        CancellationToken cancellation = new CancellationToken();
+        // the tool-calling round finished, the answer round had streamed 18 characters
+        CachedTokensCounter usage = new CachedTokensCounter();
+        usage.add(usageChunk(1200, 30, 1024));
+        usage.add(textChunk("Use a "));
+        usage.add(textChunk("DataManager."));
+
+        Disposable subscription = chat.withDiagnostics(
+                Flux.fromIterable(answerWithToolsAndSources()).concatWith(Flux.never()), cancellation, usage)
+                .subscribe();
+        subscription.dispose();
+
+        ArgumentCaptor<List<String>> logLines = logLinesCaptor();
+        // 30 reported completion tokens and about 5 for the 18 unreported characters
+        verify(chatLogManager).saveStreamResponse(eq("cid"), logLines.capture(),
+                eq("https://docs/a,https://docs/b"), eq(1200), eq(1024), eq(35), anyInt());
+        assertThat(logLines.getValue())
+                .hasSize(5)
+                .noneMatch(line -> line.contains(CHUNK));
+        assertThat(logLines.getValue().getLast())
+                .contains("Cancelled by the client")
+                .contains("completionTokens: ~35");
+        assertThat(cancellation.isCancelled()).isTrue();
+        verify(tokenUsageMetrics, never()).record(anyInt(), anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,79 @@
+package io.jmix.ai.backend.chat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class ChatModelRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ChatModelRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = newRegistry("test-api-key", 2);
+    }
+
+    private ChatModelRegistry newRegistry(String apiKey, int maxSize) {
+        return new ChatModelRegistry(apiKey, Duration.ofSeconds(1), Duration.ofSeconds(1), maxSize,
+                mock(ChatMemory.class), new ParallelToolCallingManager(2, Duration.ofSeconds(1)), meterRegistry);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("jmix.ai.chat.model.registry").tag("result", result).counter().count();
+    }
+
+    @Test
+    void reusesClientForEqualOptions() {
+        var first = registry.get(new ChatModelRegistry.ChatModelKey("gpt-5", null, "low"));
+        var second = registry.get(new ChatModelRegistry.ChatModelKey("gpt-5", null, "low"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(count("miss")).isEqualTo(1.0);
+        assertThat(count("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void buildsSeparateClientsForDifferentOptions() {
+        var low = registry.get(new ChatModelRegistry.ChatModelKey("gpt-5", null, "low"));
+        var high = registry.get(new ChatModelRegistry.ChatModelKey("gpt-5", null, "high"));
+
+        assertThat(high).isNotSameAs(low);
+        assertThat(meterRegistry.get("jmix.ai.chat.model.registry.size").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void invalidateDropsCachedClients() {
+        var key = new ChatModelRegistry.ChatModelKey("gpt-5", 0.5, null);
+        var first = registry.get(key);
+
+        registry.invalidate();
+
+        assertThat(registry.get(key)).isNotSameAs(first);
+        assertThat(count("miss")).isEqualTo(2.0);
+    }
+
+    @Test
+    void staysWithinMaxSize() {
+        registry.get(new ChatModelRegistry.ChatModelKey("a", null, null));
+        registry.get(new ChatModelRegistry.ChatModelKey("b", null, null));
+        registry.get(new ChatModelRegistry.ChatModelKey("c", null, null));
+
+        assertThat(meterRegistry.get("jmix.ai.chat.model.registry.size").gauge().value()).isLessThanOrEqualTo(2.0);
+    }
+
+    @Test
+    void failsWithoutApiKey() {
+        ChatModelRegistry withoutKey = newRegistry("", 2);
+
+        assertThrows(IllegalStateException.class,
+                () -> withoutKey.get(new ChatModelRegistry.ChatModelKey("gpt-5", null, null)));
+    }
+}
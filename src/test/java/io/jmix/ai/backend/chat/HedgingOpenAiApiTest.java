@@ -0,0 +1,107 @@
+package io.jmix.ai.backend.chat;
+
+import io.jmix.ai.backend.parameters.ParametersReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class HedgingOpenAiApiTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> sentModels = new CopyOnWriteArrayList<>();
+    private final OpenAiApi.ChatCompletionChunk primaryChunk = mock(OpenAiApi.ChatCompletionChunk.class);
+    private final OpenAiApi.ChatCompletionChunk hedgeChunk = mock(OpenAiApi.ChatCompletionChunk.class);
+
+    private HedgingOpenAiApi api(Function<String, Flux<OpenAiApi.ChatCompletionChunk>> responses) {
+        return new HedgingOpenAiApi("key", RestClient.builder(), WebClient.builder(), meterRegistry) {
+            @Override
+            Flux<ChatCompletionChunk> send(ChatCompletionRequest chatRequest,
+                                           MultiValueMap<String, String> additionalHttpHeader) {
+                sentModels.add(chatRequest.model());
+                return responses.apply(chatRequest.model());
+            }
+        };
+    }
+
+    private List<OpenAiApi.ChatCompletionChunk> stream(HedgingOpenAiApi api, HedgePolicy policy) {
+        OpenAiApi.ChatCompletionRequest request =
+                new OpenAiApi.ChatCompletionRequest(List.of(), "gpt-5", null, true);
+        return policy.stream(api.chatCompletionStream(request, new LinkedMultiValueMap<>()))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("jmix.ai.chat.hedge").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void fastFirstChunkIsNotHedged() {
+        HedgingOpenAiApi api = api(model -> Flux.just(primaryChunk));
+
+        List<OpenAiApi.ChatCompletionChunk> chunks = stream(api, new HedgePolicy(Duration.ofSeconds(2), "gpt-5-mini"));
+
+        assertThat(chunks).containsExactly(primaryChunk);
+        assertThat(sentModels).containsExactly("gpt-5");
+        assertThat(outcome("none")).isEqualTo(1);
+    }
+
+    @Test
+    void lateFirstChunkIsHedgedWithTheFallbackModelAndTheLoserCancelled() {
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        HedgingOpenAiApi api = api(model -> model.equals("gpt-5")
+                ? Flux.<OpenAiApi.ChatCompletionChunk>never().doOnCancel(() -> primaryCancelled.set(true))
+                : Flux.just(hedgeChunk));
+
+        List<OpenAiApi.ChatCompletionChunk> chunks = stream(api, new HedgePolicy(Duration.ofMillis(50), "gpt-5-mini"));
+
+        assertThat(chunks).containsExactly(hedgeChunk);
+        assertThat(sentModels).containsExactly("gpt-5", "gpt-5-mini");
+        assertThat(primaryCancelled).isTrue();
+        assertThat(outcome("hedge")).isEqualTo(1);
+    }
+
+    @Test
+    void earlyFailureIsReportedWithoutHedging() {
+        HedgingOpenAiApi api = api(model -> Flux.error(new IllegalStateException("bad request")));
+
+        assertThatThrownBy(() -> stream(api, new HedgePolicy(Duration.ofMillis(50), null)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("bad request");
+        assertThat(sentModels).containsExactly("gpt-5");
+    }
+
+    @Test
+    void callsWithoutPolicyAreSentOnce() {
+        HedgingOpenAiApi api = api(model -> Flux.just(primaryChunk));
+
+        assertThat(stream(api, HedgePolicy.DISABLED)).containsExactly(primaryChunk);
+        assertThat(sentModels).containsExactly("gpt-5");
+    }
+
+    @Test
+    void readsPolicyFromParameters() {
+        HedgePolicy policy = HedgePolicy.read(new ParametersReader(
+                Map.of("model", Map.of("hedge", Map.of("afterMs", 1500, "fallbackModel", "gpt-5-mini")))));
+
+        assertThat(policy).isEqualTo(new HedgePolicy(Duration.ofMillis(1500), "gpt-5-mini"));
+        assertThat(HedgePolicy.read(new ParametersReader(Map.of())))
+                .isEqualTo(HedgePolicy.DISABLED);
+    }
+}
@@ -0,0 +1,246 @@
+package io.jmix.ai.backend.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ParallelToolCallingManagerTest {
+
+    private final ParallelToolCallingManager manager = new ParallelToolCallingManager(4, Duration.ofSeconds(2));
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    private static ToolCallback tool(String name, Function<String, String> body) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            }
+
+            @Override
+            public ToolMetadata getToolMetadata() {
+                return ToolMetadata.builder().build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return body.apply(toolInput);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                return call(toolInput);
+            }
+        };
+    }
+
+    private ToolExecutionResult execute(List<ToolCallback> tools, List<AssistantMessage.ToolCall> calls) {
+        return execute(tools, calls, Map.of());
+    }
+
+    private ToolExecutionResult execute(List<ToolCallback> tools, List<AssistantMessage.ToolCall> calls,
+                                        Map<String, Object> toolContext) {
+        Prompt prompt = new Prompt(List.of(new UserMessage("question")),
+                ToolCallingChatOptions.builder().toolCallbacks(tools).toolContext(toolContext).build());
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), calls))));
+        return manager.executeToolCalls(prompt, response);
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        return ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+    }
+
+    @Test
+    void runsCallsOfOneTurnConcurrently() {
+        // each call waits for the other one to start: sequential execution would time out
+        CountDownLatch started = new CountDownLatch(2);
+        Function<String, String> body = input -> {
+            started.countDown();
+            try {
+                return started.await(1, TimeUnit.SECONDS) ? "result " + input : "alone";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        ToolExecutionResult result = execute(
+                List.of(tool("docs", body), tool("samples", body)),
+                List.of(new AssistantMessage.ToolCall("1", "function", "docs", "a"),
+                        new AssistantMessage.ToolCall("2", "function", "samples", "b")));
+
+        assertThat(responses(result))
+                .extracting(ToolResponseMessage.ToolResponse::id, ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly(
+                        tuple("1", "result a"),
+                        tuple("2", "result b"));
+        assertThat(result.conversationHistory()).hasSize(3);
+    }
+
+    @Test
+    void answersTimedOutCallWithoutFailingTheTurn() {
+        Function<String, String> slow = input -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "late";
+        };
+
+        ToolExecutionResult result = execute(
+                List.of(tool("slow", slow), tool("fast", input -> "fast")),
+                List.of(new AssistantMessage.ToolCall("1", "function", "slow", "a"),
+                        new AssistantMessage.ToolCall("2", "function", "fast", "b")));
+
+        assertThat(responses(result).get(0).responseData()).contains("did not respond");
+        assertThat(responses(result).get(1).responseData()).isEqualTo("fast");
+    }
+
+    @Test
+    void interruptsRunningCallsWhenRequestIsCancelled() throws Exception {
+        CancellationToken cancellation = new CancellationToken();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Function<String, String> blocking = input -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        };
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            cancellation.cancel();
+        });
+
+        assertThatThrownBy(() -> execute(
+                List.of(tool("slow", blocking)),
+                List.of(new AssistantMessage.ToolCall("1", "function", "slow", "a")),
+                Map.of(CancellationToken.CONTEXT_KEY, cancellation)))
+                .isInstanceOf(CancellationException.class);
+        assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void skipsCallsOfCancelledRequest() {
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        AtomicBoolean called = new AtomicBoolean();
+
+        assertThatThrownBy(() -> execute(
+                List.of(tool("docs", input -> {
+                    called.set(true);
+                    return "result";
+                })),
+                List.of(new AssistantMessage.ToolCall("1", "function", "docs", "a")),
+                Map.of(CancellationToken.CONTEXT_KEY, cancellation)))
+                .isInstanceOf(CancellationException.class);
+        assertThat(called).isFalse();
+    }
+
+    @Test
+    void callsToolsWithoutAModelTurnInCallOrder() {
+        CountDownLatch started = new CountDownLatch(2);
+        ParallelToolCallingManager.DirectCall docs = new ParallelToolCallingManager.DirectCall("docs", () -> {
+            started.countDown();
+            return started.await(1, TimeUnit.SECONDS) ? "docs result" : "alone";
+        });
+        ParallelToolCallingManager.DirectCall samples = new ParallelToolCallingManager.DirectCall("samples", () -> {
+            started.countDown();
+            return started.await(1, TimeUnit.SECONDS) ? "samples result" : "alone";
+        });
+
+        assertThat(manager.callAll(List.of(docs, samples), null))
+                .containsExactly("docs result", "samples result");
+    }
+
+    @Test
+    void answersTimedOutDirectCallWithAMessage() {
+        ParallelToolCallingManager.DirectCall slow = new ParallelToolCallingManager.DirectCall("slow", () -> {
+            Thread.sleep(10_000);
+            return "late";
+        });
+
+        assertThat(manager.callAll(List.of(slow), new CancellationToken()).getFirst())
+                .contains("did not respond");
+    }
+
+    @Test
+    void abandonedCallDeliversNothing() throws Exception {
+        ParallelToolCallingManager shortTimeout = new ParallelToolCallingManager(1, Duration.ofMillis(100));
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean delivered = new AtomicBoolean();
+        // like a JDBC call, the search ignores the interrupt and finishes after the timeout
+        ParallelToolCallingManager.DirectCall stubborn = new ParallelToolCallingManager.DirectCall("docs", () -> {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            String result = ToolCallScope.deliver(() -> {
+                delivered.set(true);
+                return "late";
+            });
+            finished.countDown();
+            return result;
+        });
+        try {
+            assertThat(shortTimeout.callAll(List.of(stubborn), null).getFirst()).contains("did not respond");
+            assertThat(finished.await(1, TimeUnit.SECONDS)).isTrue();
+            assertThat(delivered).isFalse();
+        } finally {
+            shortTimeout.shutdown();
+        }
+    }
+
+    @Test
+    void timeoutCountsFromTheStartOfTheCall() {
+        // one thread: the second call waits for the first, longer than the timeout in total
+        ParallelToolCallingManager oneThread = new ParallelToolCallingManager(1, Duration.ofMillis(300));
+        Callable<String> search = () -> {
+            Thread.sleep(200);
+            return "result";
+        };
+        try {
+            assertThat(oneThread.callAll(List.of(
+                    new ParallelToolCallingManager.DirectCall("docs", search),
+                    new ParallelToolCallingManager.DirectCall("samples", search)), null))
+                    .containsExactly("result", "result");
+        } finally {
+            oneThread.shutdown();
+        }
+    }
+}
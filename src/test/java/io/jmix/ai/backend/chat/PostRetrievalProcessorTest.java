@@ -8,9 +8,7 @@ import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.ai.document.Document;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.context.ApplicationContext;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,12 +24,9 @@ class PostRetrievalProcessorTest {
 
     private final ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
 
-    @Autowired
-    ApplicationContext applicationContext;
-
     @Test
     void testTabbedModeRule() {
-        PostRetrievalProcessor processor = applicationContext.getBean(PostRetrievalProcessor.class, getParametersReader(), null);
+        PostRetrievalProcessor processor = new PostRetrievalProcessor(getParametersReader());
 
         Document d1 = new Document("1", "content 1", Map.of("source", "test1"));
         Document d2 = new Document("2", "Path: Add-ons > Tabbed Application Mode > Opening Views\n\nYou can open views", Map.of("source", "test2"));
@@ -47,7 +42,7 @@ class PostRetrievalProcessorTest {
 
     @Test
     void testBpmRule() {
-        PostRetrievalProcessor processor = applicationContext.getBean(PostRetrievalProcessor.class, getParametersReader(), null);
+        PostRetrievalProcessor processor = new PostRetrievalProcessor(getParametersReader());
 
         Document d1 = new Document("1", "content 1", Map.of("source", "test1"));
         Document d2 = new Document("2", "Path: Add-ons > BPM > Using BPMN 2.0 > BPMN 2.0 Elements > Tasks > Script Task\n\nOverview A script task", Map.of("source", "test2"));
@@ -0,0 +1,59 @@
+package io.jmix.ai.backend.chat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    @Test
+    void holdsPermitUntilStreamCompletes() {
+        StreamConcurrencyLimiter limiter = new StreamConcurrencyLimiter(2, Duration.ofMillis(50), meterRegistry);
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+        var subscription = limiter.limit(sink.asFlux()).subscribe();
+
+        assertThat(gauge("jmix.ai.chat.streams.active")).isEqualTo(1.0);
+        sink.tryEmitNext("a");
+        sink.tryEmitComplete();
+        assertThat(subscription.isDisposed()).isTrue();
+        assertThat(limiter.getActive()).isZero();
+    }
+
+    @Test
+    void releasesPermitOnCancel() {
+        StreamConcurrencyLimiter limiter = new StreamConcurrencyLimiter(1, Duration.ofMillis(50), meterRegistry);
+
+        var subscription = limiter.limit(Flux.never()).subscribe();
+        assertThat(limiter.getActive()).isEqualTo(1);
+
+        subscription.dispose();
+        assertThat(limiter.getActive()).isZero();
+    }
+
+    @Test
+    void rejectsWhenNoSlotFreesUpInTime() {
+        StreamConcurrencyLimiter limiter = new StreamConcurrencyLimiter(1, Duration.ofMillis(50), meterRegistry);
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        var running = limiter.limit(sink.asFlux()).subscribe();
+
+        assertThrows(RejectedExecutionException.class, () -> limiter.limit(Flux.just("b")).blockLast());
+
+        assertThat(gauge("jmix.ai.chat.streams.queued")).isZero();
+        running.dispose();
+        assertThat(limiter.getActive()).isZero();
+    }
+}
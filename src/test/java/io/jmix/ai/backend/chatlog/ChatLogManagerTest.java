@@ -9,6 +9,7 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -18,7 +19,8 @@ import static org.mockito.Mockito.when;
 class ChatLogManagerTest {
 
     private final UnconstrainedDataManager dataManager = mock(UnconstrainedDataManager.class);
-    private final ChatLogManager manager = new ChatLogManager(dataManager);
+    private final ChatLogWriter chatLogWriter = mock(ChatLogWriter.class);
+    private final ChatLogManager manager = new ChatLogManager(dataManager, chatLogWriter);
 
     private ChatLog stubCreate() {
         ChatLog chatLog = new ChatLog();
@@ -40,7 +42,7 @@ class ChatLogManagerTest {
     void saveStreamResponse_StripsNulFromContent() {
         ChatLog chatLog = stubCreate();
 
-        manager.saveStreamResponse("cid", List.of("line \u0000one", "line two"), null, 1, 1, 1);
+        manager.saveStreamResponse("cid", List.of("line \u0000one", "line two"), null, 1, 0, 1, 1);
 
         assertThat(chatLog.getContent()).isEqualTo("line one\nline two");
     }
@@ -52,5 +54,6 @@ class ChatLogManagerTest {
         manager.saveError("cid", "boom \u0000happened");
 
         assertThat(chatLog.getContent()).isEqualTo("boom happened");
+        verify(chatLogWriter).write(chatLog);
     }
 }
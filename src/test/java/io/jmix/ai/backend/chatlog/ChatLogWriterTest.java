@@ -0,0 +1,100 @@
+package io.jmix.ai.backend.chatlog;
+
+import io.jmix.ai.backend.entity.ChatLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatLogWriterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // a long interval keeps the scheduled flush out of the way; tests flush explicitly
+    private final ChatLogWriter writer = new ChatLogWriter(jdbcTemplate, meterRegistry, 3, 2, Duration.ofHours(1));
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    private static ChatLog chatLog(String conversationId) {
+        ChatLog chatLog = new ChatLog();
+        chatLog.setConversationId(conversationId);
+        return chatLog;
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("jmix.ai.chatlog.dropped").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void writesQueuedEntriesInBatches() {
+        writer.write(chatLog("a"));
+        assertThat(meterRegistry.get("jmix.ai.chatlog.backlog").gauge().value()).isEqualTo(1.0);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+
+        writer.flush();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((Collection<ChatLog> batch) -> batch.size() == 1),
+                anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertThat(meterRegistry.get("jmix.ai.chatlog.backlog").gauge().value()).isZero();
+    }
+
+    @Test
+    void stampsIdAndCreatedDate() {
+        ChatLog chatLog = chatLog("a");
+
+        writer.write(chatLog);
+
+        assertThat(chatLog.getId()).isNotNull();
+        assertThat(chatLog.getCreatedDate()).isNotNull();
+    }
+
+    @Test
+    void dropsEntriesWhenQueueIsFull() {
+        // holding the writer's monitor blocks the flusher, so the queue fills up
+        synchronized (writer) {
+            for (int i = 0; i < 5; i++) {
+                writer.write(chatLog("c" + i));
+            }
+        }
+
+        assertThat(dropped("queue-full")).isEqualTo(2.0);
+    }
+
+    @Test
+    void countsEntriesOfFailedBatch() {
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+                .thenThrow(new IllegalStateException("database is down"));
+        writer.write(chatLog("a"));
+
+        writer.flush();
+
+        assertThat(dropped("write-failed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void flushesOnShutdown() {
+        writer.write(chatLog("a"));
+
+        writer.shutdown();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+    }
+}
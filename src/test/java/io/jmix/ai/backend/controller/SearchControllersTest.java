@@ -66,12 +66,12 @@ class SearchControllersTest {
                 .score(0.9)
                 .build();
         // the service returns results already relevance-ordered; the controller must not reorder
-        when(searchService.search("query", JmixVersion.V3, null))
-                .thenReturn(List.of(mostRelevant, lessRelevant));
+        when(searchService.searchWithStatus("query", JmixVersion.V3, null))
+                .thenReturn(new SearchService.Result(List.of(mostRelevant, lessRelevant), List.of()));
         SearchV2Controller controller = new SearchV2Controller(searchService);
 
         List<SearchV2Controller.SearchResultDocument> result = controller.search(
-                new SearchV2Controller.SearchRequest("query", null, 1, null));
+                new SearchV2Controller.SearchRequest("query", null, 1, null)).getBody();
 
         assertThat(result).singleElement().satisfies(item -> {
             assertThat(item.id()).isEqualTo("high");
@@ -79,7 +79,7 @@ class SearchControllersTest {
             assertThat(item.source()).isEqualTo("https://example.com/high");
             assertThat(item.content()).isEqualTo(mostRelevant.getText());
         });
-        verify(searchService).search("query", JmixVersion.V3, null);
+        verify(searchService).searchWithStatus("query", JmixVersion.V3, null);
     }
 
     /**
@@ -88,7 +88,8 @@ class SearchControllersTest {
      */
     @Test
     void endpointDefaultsDifferPerApiVersion() {
-        when(searchService.search("query", JmixVersion.V3, null)).thenReturn(List.of());
+        when(searchService.searchWithStatus("query", JmixVersion.V3, null))
+                .thenReturn(new SearchService.Result(List.of(), List.of()));
         when(searchService.search("query", JmixVersion.V2)).thenReturn(List.of());
 
         new SearchV2Controller(searchService).search(
@@ -96,7 +97,7 @@ class SearchControllersTest {
         new SearchController(searchService).search(
                 new SearchController.SearchRequest("query", null));
 
-        verify(searchService).search("query", JmixVersion.V3, null);
+        verify(searchService).searchWithStatus("query", JmixVersion.V3, null);
         verify(searchService).search("query", JmixVersion.V2);
     }
 
@@ -116,17 +117,30 @@ class SearchControllersTest {
                 .build();
         // deliberately contradicts the scores: ordering is owned by the service and the
         // controller must pass it through - resorting by relevance would flip this list
-        when(searchService.search("query", JmixVersion.V3, null))
-                .thenReturn(List.of(lessRelevant, mostRelevant));
+        when(searchService.searchWithStatus("query", JmixVersion.V3, null))
+                .thenReturn(new SearchService.Result(List.of(lessRelevant, mostRelevant), List.of()));
         SearchV2Controller controller = new SearchV2Controller(searchService);
 
         List<SearchV2Controller.SearchResultDocument> result = controller.search(
-                new SearchV2Controller.SearchRequest("query", null, null, null));
+                new SearchV2Controller.SearchRequest("query", null, null, null)).getBody();
 
         assertThat(result).extracting(SearchV2Controller.SearchResultDocument::id)
                 .containsExactly("low", "high");
     }
 
+    @Test
+    void v2EndpointNamesTheDegradedToolsInAHeader() {
+        when(searchService.searchWithStatus("query", JmixVersion.V3, null))
+                .thenReturn(new SearchService.Result(List.of(), List.of("documentation_retriever", "uisamples_retriever")));
+        SearchV2Controller controller = new SearchV2Controller(searchService);
+
+        var response = controller.search(new SearchV2Controller.SearchRequest("query", null, null, null));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(SearchV2Controller.DEGRADED_TOOLS_HEADER))
+                .isEqualTo("documentation_retriever,uisamples_retriever");
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {-1, 0, 100_001})
     void v2EndpointRejectsInvalidTokenBudget(int tokens) {
@@ -142,12 +156,13 @@ class SearchControllersTest {
 
     @Test
     void v2EndpointPassesMaxResultsToEveryRetrievalTool() {
-        when(searchService.search("query", JmixVersion.V2, 7)).thenReturn(List.of());
+        when(searchService.searchWithStatus("query", JmixVersion.V2, 7))
+                .thenReturn(new SearchService.Result(List.of(), List.of()));
         SearchV2Controller controller = new SearchV2Controller(searchService);
 
         controller.search(new SearchV2Controller.SearchRequest("query", "v2", null, 7));
 
-        verify(searchService).search("query", JmixVersion.V2, 7);
+        verify(searchService).searchWithStatus("query", JmixVersion.V2, 7);
     }
 
     @ParameterizedTest
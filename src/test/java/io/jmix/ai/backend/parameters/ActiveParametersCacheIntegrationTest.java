@@ -0,0 +1,85 @@
+package io.jmix.ai.backend.parameters;
+
+import io.jmix.ai.backend.entity.Parameters;
+import io.jmix.ai.backend.entity.ParametersTargetType;
+import io.jmix.core.DataManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import test_support.AuthenticatedAsAdmin;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Disabled("This test class is ignored until a running PostgreSQL database is provided")
+@SpringBootTest(properties = {
+        // cluster notifications are a no-op on HSQLDB
+        "main.datasource.url=" + ActiveParametersCacheIntegrationTest.URL,
+        "main.datasource.username=" + ActiveParametersCacheIntegrationTest.USERNAME,
+        "main.datasource.password=" + ActiveParametersCacheIntegrationTest.PASSWORD
+})
+@ActiveProfiles("test")
+@ExtendWith(AuthenticatedAsAdmin.class)
+class ActiveParametersCacheIntegrationTest {
+
+    static final String URL = "jdbc:postgresql://localhost:15433/main";
+    static final String USERNAME = "postgres";
+    static final String PASSWORD = "postgres";
+
+    @Autowired
+    private DataManager dataManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Parameters saved;
+
+    @AfterEach
+    void removeParameters() {
+        if (saved != null) {
+            dataManager.remove(saved);
+        }
+    }
+
+    @Test
+    void notifiesListenersAfterCommit() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + ActiveParametersCache.CHANNEL);
+            }
+
+            saved = new TransactionTemplate(transactionManager).execute(status -> {
+                Parameters parameters = dataManager.create(Parameters.class);
+                parameters.setTargetType(ParametersTargetType.SEARCH);
+                parameters.setActive(false);
+                parameters.setContent("");
+                return dataManager.save(parameters);
+            });
+
+            List<String> payloads = new ArrayList<>();
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            for (int i = 0; i < 10 && payloads.isEmpty(); i++) {
+                PGNotification[] notifications = pgConnection.getNotifications(500);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        payloads.add(notification.getParameter());
+                    }
+                }
+            }
+            assertThat(payloads).contains(saved.getId().toString());
+        }
+    }
+}
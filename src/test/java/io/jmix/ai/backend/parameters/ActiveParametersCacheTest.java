@@ -0,0 +1,74 @@
+package io.jmix.ai.backend.parameters;
+
+import io.jmix.ai.backend.cluster.ClusterNotifications;
+import io.jmix.ai.backend.entity.Parameters;
+import io.jmix.ai.backend.entity.ParametersTargetType;
+import io.jmix.core.Id;
+import io.jmix.core.event.EntityChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ActiveParametersCacheTest {
+
+    private final ParametersRepository repository = mock(ParametersRepository.class);
+    private final ClusterNotifications notifications = mock(ClusterNotifications.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ActiveParametersCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.loadActive(any())).thenAnswer(invocation -> parameters("content-" + invocation.getArgument(0)));
+        when(repository.compile(any())).thenAnswer(invocation -> new CompiledParameters(
+                CompiledParameters.contentVersion(invocation.getArgument(0)), new ParametersReader(Map.of())));
+        cache = new ActiveParametersCache(repository, notifications, meterRegistry);
+    }
+
+    private static Parameters parameters(String content) {
+        Parameters parameters = mock(Parameters.class);
+        when(parameters.getContent()).thenReturn(content);
+        return parameters;
+    }
+
+    @Test
+    void loadsActiveParametersOnce() {
+        Parameters first = cache.getParameters(ParametersTargetType.CHAT);
+        Parameters second = cache.getParameters(ParametersTargetType.CHAT);
+
+        assertThat(second).isSameAs(first);
+        verify(repository, times(1)).loadActive(ParametersTargetType.CHAT);
+    }
+
+    @Test
+    void reloadsAndNotifiesClusterAfterChange() {
+        Parameters before = cache.getParameters(ParametersTargetType.SEARCH);
+        @SuppressWarnings("unchecked")
+        EntityChangedEvent<Parameters> event = mock(EntityChangedEvent.class);
+        UUID id = UUID.randomUUID();
+        when(event.getEntityId()).thenReturn(Id.of(id, Parameters.class));
+
+        cache.onParametersChanged(event);
+
+        assertThat(cache.getParameters(ParametersTargetType.SEARCH)).isNotSameAs(before);
+        verify(notifications).publish(eq(ActiveParametersCache.CHANNEL), eq(id.toString()));
+    }
+
+    @Test
+    void exposesLoadedVersionPerType() {
+        CompiledParameters compiled = cache.getCompiled(ParametersTargetType.CHAT);
+
+        assertThat(meterRegistry.get("jmix.ai.parameters.active")
+                .tags("type", "CHAT", "version", compiled.getVersion()).gauge().value()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,103 @@
+package io.jmix.ai.backend.parameters;
+
+import io.jmix.core.MetadataTools;
+import io.jmix.core.Resources;
+import io.jmix.core.UnconstrainedDataManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class CompiledParametersTest {
+
+    private static final String YAML = """
+            model:
+              name: gpt-5
+              temperature: 1
+            tools:
+              documentation_retriever:
+                topK: null
+                topReranked: 6
+            """;
+
+    private final ParametersRepositoryExtImpl repository = new ParametersRepositoryExtImpl(
+            mock(UnconstrainedDataManager.class), mock(Resources.class), mock(MetadataTools.class));
+
+    @Test
+    void readsNestedKeysAndSections() {
+        ParametersReader reader = repository.compile(YAML).getReader();
+
+        assertThat(reader.getString("model.name")).isEqualTo("gpt-5");
+        assertThat(reader.getInt("tools.documentation_retriever.topReranked")).isEqualTo(6);
+        assertThat(reader.getInteger("tools.documentation_retriever.topK", 10)).isEqualTo(10);
+        assertThat(reader.getValue("tools")).isInstanceOf(Map.class);
+        assertThat(reader.getValue("model.name.missing")).isNull();
+    }
+
+    @Test
+    void widensIntegerToDouble() {
+        ParametersReader reader = repository.compile(YAML).getReader();
+
+        assertThat(reader.getDouble("model.temperature", null)).isEqualTo(1.0);
+    }
+
+    @Test
+    void rejectsNonNumericValuesWithKeyInMessage() {
+        ParametersReader reader = repository.compile(YAML).getReader();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> reader.getDouble("model.name", null));
+        assertThat(e.getMessage()).contains("model.name");
+    }
+
+    @Test
+    void rejectsNonIntegralIntegers() {
+        ParametersReader reader = repository.compile("""
+                tools:
+                  docs:
+                    topK: 10.7
+                    topReranked: 6.0
+                    maxTokens: 3000000000
+                """).getReader();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> reader.getInteger("tools.docs.topK", null));
+        assertThat(e.getMessage()).contains("tools.docs.topK");
+        assertThrows(IllegalArgumentException.class, () -> reader.getInteger("tools.docs.maxTokens", null));
+        assertThat(reader.getInt("tools.docs.topReranked")).isEqualTo(6);
+    }
+
+    @Test
+    void compilesSameContentOnce() {
+        CompiledParameters first = repository.compile(YAML);
+        CompiledParameters second = repository.compile(new String(YAML.toCharArray()));
+
+        assertThat(second).isSameAs(first);
+        assertThat(repository.compile(YAML + "\nsystemMessage: x")).isNotSameAs(first);
+    }
+
+    @Test
+    void versionDependsOnContentOnly() {
+        assertThat(repository.compile(YAML).getVersion())
+                .isEqualTo(CompiledParameters.contentVersion(YAML))
+                .isNotEqualTo(CompiledParameters.contentVersion(YAML + " "));
+    }
+
+    @Test
+    void memoizesSections() {
+        CompiledParameters parameters = CompiledParameters.of(new HashMap<>(Map.of("a", 1)));
+        AtomicInteger computations = new AtomicInteger();
+
+        Integer first = parameters.getSection("a", reader -> computations.incrementAndGet() + reader.getInt("a"));
+        Integer second = parameters.getSection("a", reader -> computations.incrementAndGet() + reader.getInt("a"));
+
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isEqualTo(2);
+        assertThat(computations).hasValue(1);
+    }
+}
@@ -4,14 +4,16 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jmix.ai.backend.chat.EventStreamValueHolder;
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.jmix.ai.backend.vectorstore.MultiCorpusVectorSearch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 
 import java.util.ArrayList;
@@ -21,10 +23,13 @@ import java.util.Map;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,7 +42,7 @@ import static org.mockito.Mockito.when;
 class AbstractRagToolTest {
 
     @Mock
-    private VectorStore vectorStore;
+    private MultiCorpusVectorSearch multiCorpusVectorSearch;
     @Mock
     private PostRetrievalProcessor postRetrievalProcessor;
     @Mock
@@ -47,25 +52,25 @@ class AbstractRagToolTest {
 
     @Test
     void vectorTypeParameterOverridesCorpusType() {
-        ParametersReader reader = adaptiveReader(Map.of("vectorType", "docs-snippets"));
+        CompiledParameters parameters = adaptiveParameters(Map.of("vectorType", "docs-snippets"));
 
-        DocsTool tool = tool(reader, new ArrayList<>());
+        DocsTool tool = tool(parameters, new ArrayList<>());
 
         assertThat(tool.type).isEqualTo("docs-snippets");
     }
 
     @Test
     void typeDefaultsToBuiltInWithoutOverride() {
-        ParametersReader reader = adaptiveReader(Map.of());
+        CompiledParameters parameters = adaptiveParameters(Map.of());
 
-        DocsTool tool = tool(reader, new ArrayList<>());
+        DocsTool tool = tool(parameters, new ArrayList<>());
 
         assertThat(tool.type).isEqualTo("docs");
     }
 
     @Test
     void appendsConfiguredAverageSizeToToolDescription() {
-        DocsTool tool = tool(adaptiveReader(Map.of("averageDocumentTokens", 321)), new ArrayList<>());
+        DocsTool tool = tool(adaptiveParameters(Map.of("averageDocumentTokens", 321)), new ArrayList<>());
 
         assertThat(tool.getToolCallback().getToolDefinition().description())
                 .isEqualTo("docs tool A typical returned snippet is about 321 tokens.");
@@ -73,7 +78,7 @@ class AbstractRagToolTest {
 
     @Test
     void adaptiveSchemaMakesMaxResultsOptionalAndAdvertisesCap() throws Exception {
-        DocsTool tool = tool(adaptiveReader(Map.of("averageDocumentTokens", 300)), new ArrayList<>());
+        DocsTool tool = tool(adaptiveParameters(Map.of("averageDocumentTokens", 300)), new ArrayList<>());
 
         JsonNode schema = toolInputSchema(tool);
 
@@ -88,7 +93,7 @@ class AbstractRagToolTest {
     void explicitNullTopKEnablesTheAdaptivePipeline() throws Exception {
         Map<String, Object> overrides = new HashMap<>();
         overrides.put("topK", null);
-        DocsTool tool = tool(reader(overrides, false), new ArrayList<>());
+        DocsTool tool = tool(parameters(overrides, false), new ArrayList<>());
 
         JsonNode schema = toolInputSchema(tool);
 
@@ -97,7 +102,7 @@ class AbstractRagToolTest {
 
     @Test
     void configuredTopKExposesOnlyTheQueryToTheModel() throws Exception {
-        DocsTool tool = tool(legacyReader(Map.of()), new ArrayList<>());
+        DocsTool tool = tool(legacyParameters(Map.of()), new ArrayList<>());
 
         JsonNode schema = toolInputSchema(tool);
 
@@ -108,44 +113,44 @@ class AbstractRagToolTest {
 
     @Test
     void fixedPipelineUsesConfiguredCountsExactly() {
-        ParametersReader reader = legacyReader(Map.of("topK", 10, "topReranked", 3));
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(4);
-        when(reranker.rerank("query", candidates, 3, reader))
+        when(reranker.rerank("query", candidates, 3, parameters))
                 .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
 
         tool.execute("query");
 
         verifySearchTopK(10);
-        verify(reranker).rerank("query", candidates, 3, reader);
+        verify(reranker).rerank("query", candidates, 3, parameters);
         assertThat(retrievedDocuments).containsExactly(candidates.getFirst());
     }
 
     @Test
     void fixedPipelineIgnoresCallerMaxResults() {
-        ParametersReader reader = legacyReader(Map.of("topK", 10, "topReranked", 3));
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(4);
-        when(reranker.rerank("query", candidates, 3, reader))
+        when(reranker.rerank("query", candidates, 3, parameters))
                 .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
 
         tool.execute("query", 20);
 
         verifySearchTopK(10);
-        verify(reranker).rerank("query", candidates, 3, reader);
+        verify(reranker).rerank("query", candidates, 3, parameters);
         assertThat(retrievedDocuments).containsExactly(candidates.getFirst());
         verify(listener).onToolCallStart("documentation_retriever", "query", null);
     }
 
     @Test
     void fixedPipelineFallbackKeepsAllDocumentsPassingMinScore() {
-        ParametersReader reader = legacyReader(Map.of("topK", 4, "topReranked", 2));
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 4, "topReranked", 2));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(6);
-        when(reranker.rerank("query", candidates, 2, reader)).thenReturn(null);
+        when(reranker.rerank("query", candidates, 2, parameters)).thenReturn(null);
 
         String result = tool.execute("query");
 
@@ -156,13 +161,13 @@ class AbstractRagToolTest {
 
     @Test
     void fixedPipelineDoesNotCapFloodedSourcePages() {
-        ParametersReader reader = legacyReader(Map.of("topK", 6, "topReranked", 6));
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 6, "topReranked", 6));
         List<Document> retrieved = new ArrayList<>();
-        DocsTool tool = tool(reader, retrieved);
+        DocsTool tool = tool(parameters, retrieved);
         List<Document> candidates = floodingCandidates();
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(candidates);
+        stubSearch(candidates);
         when(postRetrievalProcessor.process(eq("query"), same(candidates))).thenReturn(candidates);
-        when(reranker.rerank(eq("query"), anyList(), eq(6), eq(reader))).thenReturn(
+        when(reranker.rerank(eq("query"), anyList(), eq(6), eq(parameters))).thenReturn(
                 candidates.stream().map(document -> new Reranker.Result(document, 0.9)).toList());
 
         tool.execute("query");
@@ -174,38 +179,35 @@ class AbstractRagToolTest {
 
     @Test
     void nullMaxResultsUsesConfiguredRetrievalAndResultCounts() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 3));
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 3));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(4);
-        when(reranker.rerank("query", candidates, 12, reader))
+        when(reranker.rerank("query", candidates, 12, parameters))
                 .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
 
         tool.execute("query", null);
 
         verifySearchTopK(12);
-        verify(reranker).rerank("query", candidates, 12, reader);
+        verify(reranker).rerank("query", candidates, 12, parameters);
         assertThat(retrievedDocuments).containsExactly(candidates.getFirst());
         verify(listener).onToolCallStart("documentation_retriever", "query", null);
     }
 
     @Test
     void searchFiltersBySelectedCorpusTypeAndJmixVersion() {
-        ParametersReader reader = adaptiveReader(Map.of(
+        CompiledParameters parameters = adaptiveParameters(Map.of(
                 "vectorType", "docs-snippets",
                 "topReranked", 3));
-        DocsTool tool = tool(reader, new ArrayList<>());
+        DocsTool tool = tool(parameters, new ArrayList<>());
         List<Document> candidates = prepareCandidates(1);
-        when(reranker.rerank("query", candidates, 12, reader))
+        when(reranker.rerank("query", candidates, 12, parameters))
                 .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
 
         tool.execute("query", null);
 
-        org.mockito.ArgumentCaptor<SearchRequest> requestCaptor =
-                org.mockito.ArgumentCaptor.forClass(SearchRequest.class);
-        verify(vectorStore).similaritySearch(requestCaptor.capture());
         FilterExpressionBuilder fb = new FilterExpressionBuilder();
-        assertThat(requestCaptor.getValue().getFilterExpression()).isEqualTo(
+        assertThat(searchedQuery().filter()).isEqualTo(
                 fb.and(
                         fb.eq("type", "docs-snippets"),
                         fb.eq("jmixVersion", JmixVersion.V2.getId()))
@@ -214,27 +216,27 @@ class AbstractRagToolTest {
 
     @Test
     void maxResultsIsCappedAtFiftyAndTheFetchAtItsOwnBound() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 3));
-        DocsTool tool = tool(reader, new ArrayList<>());
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 3));
+        DocsTool tool = tool(parameters, new ArrayList<>());
         List<Document> candidates = prepareCandidates(4);
-        when(reranker.rerank("query", candidates, 120, reader))
+        when(reranker.rerank("query", candidates, 120, parameters))
                 .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
 
         tool.execute("query", 500);
 
         verifySearchTopK(120);
-        verify(reranker).rerank("query", candidates, 120, reader);
+        verify(reranker).rerank("query", candidates, 120, parameters);
         verify(listener).onToolCallStart("documentation_retriever", "query",
                 new EventStreamValueHolder.RequestedRetrieval(50, 120));
     }
 
     @Test
     void adaptiveFallbackDefaultsToTheConfiguredResultCount() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 2));
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 2));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(5);
-        when(reranker.rerank("query", candidates, 8, reader)).thenReturn(null);
+        when(reranker.rerank("query", candidates, 8, parameters)).thenReturn(null);
 
         String result = tool.execute("query", null);
 
@@ -245,11 +247,11 @@ class AbstractRagToolTest {
 
     @Test
     void adaptiveFallbackRespectsExplicitMaxResults() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 2));
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 2));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(6);
-        when(reranker.rerank("query", candidates, 12, reader)).thenReturn(null);
+        when(reranker.rerank("query", candidates, 12, parameters)).thenReturn(null);
 
         String result = tool.execute("query", 3);
 
@@ -266,22 +268,22 @@ class AbstractRagToolTest {
     @Test
     @SuppressWarnings("unchecked")
     void capsFloodedSourcePageInTheRerankedSelection() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 4));
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 4));
         List<Document> retrieved = new ArrayList<>();
-        DocsTool tool = tool(reader, retrieved);
+        DocsTool tool = tool(parameters, retrieved);
         List<Document> candidates = floodingCandidates();
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(candidates);
+        stubSearch(candidates);
         when(postRetrievalProcessor.process(eq("query"), same(candidates))).thenReturn(candidates);
         // the reranker ranks the flooding page above the other one; the cap must still let the
         // other page through and must not pad the result with a fourth flooding chunk
-        when(reranker.rerank(eq("query"), anyList(), eq(16), eq(reader))).thenReturn(
+        when(reranker.rerank(eq("query"), anyList(), eq(16), eq(parameters))).thenReturn(
                 candidates.stream().map(document -> new Reranker.Result(document, 0.9)).toList());
 
         tool.execute("query", null);
 
         org.mockito.ArgumentCaptor<List<Document>> rerankInput =
                 org.mockito.ArgumentCaptor.forClass(List.class);
-        verify(reranker).rerank(eq("query"), rerankInput.capture(), eq(16), eq(reader));
+        verify(reranker).rerank(eq("query"), rerankInput.capture(), eq(16), eq(parameters));
         assertThat(rerankInput.getValue()).extracting(Document::getId)
                 .describedAs("the reranker judges every candidate, uncapped")
                 .containsExactlyElementsOf(candidates.stream().map(Document::getId).toList());
@@ -291,11 +293,11 @@ class AbstractRagToolTest {
 
     @Test
     void oneArgExecuteOnAdaptiveToolRunsTheDefaultPipeline() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 3));
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 3));
         List<Document> retrievedDocuments = new ArrayList<>();
-        DocsTool tool = tool(reader, retrievedDocuments);
+        DocsTool tool = tool(parameters, retrievedDocuments);
         List<Document> candidates = prepareCandidates(4);
-        when(reranker.rerank("query", candidates, 12, reader))
+        when(reranker.rerank("query", candidates, 12, parameters))
                 .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
 
         tool.execute("query");
@@ -311,9 +313,9 @@ class AbstractRagToolTest {
      */
     @Test
     void capRefillsFromTheWholeRerankedPoolWhenOnePageFloodsTheHead() {
-        ParametersReader reader = adaptiveReader(Map.of("topReranked", 3));
+        CompiledParameters parameters = adaptiveParameters(Map.of("topReranked", 3));
         List<Document> retrieved = new ArrayList<>();
-        DocsTool tool = tool(reader, retrieved);
+        DocsTool tool = tool(parameters, retrieved);
         List<Document> candidates = new ArrayList<>();
         for (int i = 0; i < 12; i++) {
             candidates.add(Document.builder().id("flood-" + i).text("flood-" + i)
@@ -323,11 +325,11 @@ class AbstractRagToolTest {
                 .metadata(Map.of("source", "a.html")).score(0.5).build());
         candidates.add(Document.builder().id("tail-b").text("tail-b")
                 .metadata(Map.of("source", "b.html")).score(0.4).build());
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(candidates);
+        stubSearch(candidates);
         when(postRetrievalProcessor.process(eq("query"), same(candidates))).thenReturn(candidates);
         // the flooding page occupies the entire head of the ranking; the diverse pages sit at
         // positions 13-14, beyond any requested*2 boundary
-        when(reranker.rerank(eq("query"), anyList(), eq(16), eq(reader))).thenReturn(
+        when(reranker.rerank(eq("query"), anyList(), eq(16), eq(parameters))).thenReturn(
                 candidates.stream().map(document -> new Reranker.Result(document, 0.9)).toList());
 
         tool.execute("query", 4);
@@ -338,18 +340,138 @@ class AbstractRagToolTest {
                 .containsExactly("flood-0", "flood-1", "flood-2", "tail-a");
     }
 
-    private ParametersReader legacyReader(Map<String, Object> overrides) {
+    @Test
+    void packsTheSelectionIntoTheToolTokenBudget() {
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3, "maxTokens", 150));
+        List<Document> retrievedDocuments = new ArrayList<>();
+        DocsTool tool = tool(parameters, retrievedDocuments);
+        List<Document> candidates = List.of(
+                Document.builder().id("a").text("a".repeat(400)).score(0.9).build(),
+                Document.builder().id("b").text("b".repeat(400)).score(0.8).build());
+        stubSearch(candidates);
+        when(postRetrievalProcessor.process(eq("query"), same(candidates))).thenReturn(candidates);
+        when(reranker.rerank("query", candidates, 3, parameters)).thenReturn(List.of(
+                new Reranker.Result(candidates.get(0), 0.9),
+                new Reranker.Result(candidates.get(1), 0.8)));
+
+        String result = tool.execute("query");
+
+        assertThat(result).isEqualTo("a".repeat(400));
+        assertThat(retrievedDocuments).containsExactly(candidates.getFirst());
+        verify(listener).onToolReranked(eq("documentation_retriever"),
+                eq(List.of(new EventStreamValueHolder.DocScore(0.9, null))), anyLong(), eq(100));
+    }
+
+    @Test
+    void recordsStageTimersTaggedByToolCorpusVersionAndPipeline() {
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3));
+        DocsTool tool = tool(parameters, new ArrayList<>());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        tool.setMetrics(new PipelineMetrics(meterRegistry));
+        List<Document> candidates = prepareCandidates(2);
+        when(reranker.rerank("query", candidates, 3, parameters))
+                .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
+
+        tool.execute("query");
+
+        for (String stage : List.of("vector.search", "post.retrieval", "rerank", "tool")) {
+            assertThat(meterRegistry.get("jmix.ai.pipeline." + stage)
+                    .tag("tool", "documentation_retriever")
+                    .tag("corpus", "docs")
+                    .tag("jmixVersion", JmixVersion.V2.getId())
+                    .tag("pipeline", "fixed")
+                    .timer().count())
+                    .as(stage)
+                    .isEqualTo(1);
+        }
+    }
+
+    @Test
+    void reportsTheUrlsOfTheDocumentsAddedToTheAnswer() {
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3));
+        DocsTool tool = tool(parameters, new ArrayList<>());
+        List<Document> candidates = List.of(
+                Document.builder().id("a").text("a").metadata(Map.of("url", "https://docs/a")).score(0.9).build(),
+                Document.builder().id("b").text("b").metadata(Map.of("url", "https://docs/a")).score(0.8).build(),
+                Document.builder().id("c").text("c").metadata(Map.of("source", "c.adoc")).score(0.7).build());
+        stubSearch(candidates);
+        when(postRetrievalProcessor.process(eq("query"), same(candidates))).thenReturn(candidates);
+        when(reranker.rerank("query", candidates, 3, parameters)).thenReturn(
+                candidates.stream().map(document -> new Reranker.Result(document, 0.9)).toList());
+
+        tool.execute("query");
+
+        verify(listener).onToolSources("documentation_retriever", List.of("https://docs/a"));
+    }
+
+    @Test
+    void reusesTheSpeculativeRetrievalForASimilarQuery() {
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3));
+        List<Document> retrievedDocuments = new ArrayList<>();
+        DocsTool tool = tool(parameters, retrievedDocuments);
+        List<Document> candidates = prepareCandidates(2);
+        when(reranker.rerank("query", candidates, 3, parameters))
+                .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpeculativeRetrieval speculativeRetrieval = new SpeculativeRetrieval(1, meterRegistry);
+
+        try {
+            tool.speculate("query", 0.5, speculativeRetrieval);
+            String result = tool.execute("query");
+
+            assertThat(result).isEqualTo("text-0");
+            assertThat(retrievedDocuments).containsExactly(candidates.getFirst());
+            verify(multiCorpusVectorSearch, times(1)).search(anyList());
+            verify(listener).onToolRetrieved(eq("documentation_retriever"), anyList(), anyLong());
+            assertThat(speculations(meterRegistry, "hit")).isEqualTo(1);
+        } finally {
+            speculativeRetrieval.shutdown();
+        }
+    }
+
+    @Test
+    void searchesAgainWhenTheModelAsksForSomethingElse() {
+        CompiledParameters parameters = legacyParameters(Map.of("topK", 10, "topReranked", 3));
+        List<Document> retrievedDocuments = new ArrayList<>();
+        DocsTool tool = tool(parameters, retrievedDocuments);
+        List<Document> candidates = prepareCandidates(2);
+        // the speculation may or may not get to the processor and the reranker before it is cancelled
+        lenient().when(postRetrievalProcessor.process(eq("unrelated question"), anyList())).thenReturn(candidates);
+        when(reranker.rerank(anyString(), eq(candidates), eq(3), eq(parameters)))
+                .thenReturn(List.of(new Reranker.Result(candidates.getFirst(), 1.0)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpeculativeRetrieval speculativeRetrieval = new SpeculativeRetrieval(1, meterRegistry);
+
+        try {
+            tool.speculate("unrelated question", 0.5, speculativeRetrieval);
+            String result = tool.execute("query");
+            tool.discardSpeculation();
+
+            assertThat(result).isEqualTo("text-0");
+            verify(postRetrievalProcessor).process(eq("query"), same(candidates));
+            assertThat(speculations(meterRegistry, "miss")).isEqualTo(1);
+            assertThat(speculations(meterRegistry, "unused")).isZero();
+        } finally {
+            speculativeRetrieval.shutdown();
+        }
+    }
+
+    private static double speculations(SimpleMeterRegistry meterRegistry, String result) {
+        return meterRegistry.get("jmix.ai.retrieval.speculative").tag("result", result).counter().count();
+    }
+
+    private CompiledParameters legacyParameters(Map<String, Object> overrides) {
         Map<String, Object> withTopK = new HashMap<>();
         withTopK.put("topK", 10);
         withTopK.putAll(overrides);
-        return reader(withTopK, false);
+        return parameters(withTopK, false);
     }
 
-    private ParametersReader adaptiveReader(Map<String, Object> overrides) {
-        return reader(overrides, true);
+    private CompiledParameters adaptiveParameters(Map<String, Object> overrides) {
+        return parameters(overrides, true);
     }
 
-    private ParametersReader reader(Map<String, Object> overrides, boolean omitTopK) {
+    private CompiledParameters parameters(Map<String, Object> overrides, boolean omitTopK) {
         Map<String, Object> toolParameters = new HashMap<>();
         toolParameters.put("description", "docs tool");
         toolParameters.put("similarityThreshold", 0.0);
@@ -360,7 +482,7 @@ class AbstractRagToolTest {
         if (omitTopK) {
             toolParameters.remove("topK");
         }
-        return new ParametersReader(Map.of(
+        return CompiledParameters.of(Map.of(
                 "tools", Map.of("documentation_retriever", toolParameters)));
     }
 
@@ -379,9 +501,12 @@ class AbstractRagToolTest {
         return candidates;
     }
 
-    private DocsTool tool(ParametersReader reader, List<Document> retrievedDocuments) {
-        return new DocsTool(vectorStore, postRetrievalProcessor, reranker, reader,
+    private DocsTool tool(CompiledParameters parameters, List<Document> retrievedDocuments) {
+        DocsTool tool = new DocsTool(postRetrievalProcessor, reranker, parameters,
                 retrievedDocuments, listener, JmixVersion.V2);
+        // a batch of one, as for a tool called alone
+        tool.setVectorSearchBatch(new VectorSearchBatch(multiCorpusVectorSearch, 1, 0));
+        return tool;
     }
 
     private List<Document> prepareCandidates(int count) {
@@ -392,15 +517,24 @@ class AbstractRagToolTest {
                         .score(1.0 - index * 0.01)
                         .build())
                 .toList();
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(candidates);
+        stubSearch(candidates);
         when(postRetrievalProcessor.process(eq("query"), same(candidates))).thenReturn(candidates);
         return candidates;
     }
 
+    private void stubSearch(List<Document> candidates) {
+        when(multiCorpusVectorSearch.search(anyList())).thenReturn(List.of(candidates));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MultiCorpusVectorSearch.CorpusQuery searchedQuery() {
+        ArgumentCaptor<List<MultiCorpusVectorSearch.CorpusQuery>> queriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(multiCorpusVectorSearch).search(queriesCaptor.capture());
+        assertThat(queriesCaptor.getValue()).hasSize(1);
+        return queriesCaptor.getValue().getFirst();
+    }
+
     private void verifySearchTopK(int expected) {
-        org.mockito.ArgumentCaptor<SearchRequest> requestCaptor =
-                org.mockito.ArgumentCaptor.forClass(SearchRequest.class);
-        verify(vectorStore).similaritySearch(requestCaptor.capture());
-        assertThat(requestCaptor.getValue().getTopK()).isEqualTo(expected);
+        assertThat(searchedQuery().topK()).isEqualTo(expected);
     }
 }
@@ -1,6 +1,6 @@
 package io.jmix.ai.backend.retrieval;
 
-import io.jmix.ai.backend.parameters.ParametersReader;
+import io.jmix.ai.backend.parameters.CompiledParameters;
 import org.junit.jupiter.api.Test;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
@@ -37,7 +37,7 @@ class RerankerTest {
                 new Document("2", "doc-2", Map.of("source", "two"))
         );
 
-        List<Reranker.Result> results = reranker.rerank("query", documents, 2, new ParametersReader(Map.of()));
+        List<Reranker.Result> results = reranker.rerank("query", documents, 2, CompiledParameters.of(Map.of()));
 
         assertThat(results)
                 .extracting(result -> result.document().getId(), Reranker.Result::score)
@@ -55,7 +55,7 @@ class RerankerTest {
                 """));
 
         TestReranker reranker = new TestReranker(chatModel);
-        ParametersReader parametersReader = new ParametersReader(Map.of(
+        CompiledParameters parameters = CompiledParameters.of(Map.of(
                 "reranker", Map.of(
                         "model", "custom-model",
                         "temperature", 0.25,
@@ -68,7 +68,7 @@ class RerankerTest {
                 new Document("1", "abcdef", Map.of("source", "kept"))
         );
 
-        List<Reranker.Result> results = reranker.rerank("query", documents, 1, parametersReader);
+        List<Reranker.Result> results = reranker.rerank("query", documents, 1, parameters);
 
         assertThat(reranker.capturedOptions.model()).isEqualTo("custom-model");
         assertThat(reranker.capturedOptions.temperature()).isEqualTo(0.25);
@@ -92,7 +92,7 @@ class RerankerTest {
         TestReranker reranker = new TestReranker(chatModel);
         List<Document> documents = List.of(new Document("1", "doc", Map.of("source", "one")));
 
-        List<Reranker.Result> results = reranker.rerank("query", documents, 1, new ParametersReader(Map.of()));
+        List<Reranker.Result> results = reranker.rerank("query", documents, 1, CompiledParameters.of(Map.of()));
 
         assertThat(results).isNull();
     }
@@ -105,7 +105,7 @@ class RerankerTest {
         TestReranker reranker = new TestReranker(chatModel);
         List<Document> documents = List.of(new Document("1", "doc", Map.of("source", "one")));
 
-        List<Reranker.Result> results = reranker.rerank("query", documents, 1, new ParametersReader(Map.of()));
+        List<Reranker.Result> results = reranker.rerank("query", documents, 1, CompiledParameters.of(Map.of()));
 
         assertThat(results).isNull();
     }
@@ -118,7 +118,7 @@ class RerankerTest {
         TestReranker reranker = new TestReranker(chatModel);
         List<Document> documents = List.of(new Document("1", "doc", Map.of("source", "one")));
 
-        List<Reranker.Result> results = reranker.rerank("query", documents, 1, new ParametersReader(Map.of()));
+        List<Reranker.Result> results = reranker.rerank("query", documents, 1, CompiledParameters.of(Map.of()));
 
         assertThat(results).isNull();
     }
@@ -133,7 +133,7 @@ class RerankerTest {
         TestReranker reranker = new TestReranker(chatModel);
         List<Document> documents = List.of(new Document("1", "doc", Map.of("source", "one")));
 
-        List<Reranker.Result> results = reranker.rerank("query", documents, 1, new ParametersReader(Map.of()));
+        List<Reranker.Result> results = reranker.rerank("query", documents, 1, CompiledParameters.of(Map.of()));
 
         assertThat(results).isNull();
     }
@@ -1,19 +1,30 @@
 package io.jmix.ai.backend.retrieval;
 
 import io.jmix.ai.backend.entity.JmixVersion;
-import io.jmix.ai.backend.entity.Parameters;
 import io.jmix.ai.backend.entity.ParametersTargetType;
-import io.jmix.ai.backend.parameters.ParametersRepository;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.ActiveParametersCache;
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import org.springframework.ai.document.Document;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -21,33 +32,49 @@ import static org.mockito.Mockito.when;
 class SearchServiceTest {
 
     @Mock
-    private ParametersRepository parametersRepository;
+    private ActiveParametersCache activeParametersCache;
     @Mock
     private ToolsManager toolsManager;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private static Document doc(String id, double score) {
         return Document.builder().id(id).text(id).score(score).build();
     }
 
-    /** Two tools, each fills the shared pool from its own corpus when executed. */
+    private SearchService newService(Duration deadline) {
+        return newService(4, deadline);
+    }
+
+    private SearchService newService(int threads, Duration deadline) {
+        return new SearchService(activeParametersCache, toolsManager, meterRegistry,
+                new PipelineMetrics(new SimpleMeterRegistry()), true, threads, deadline);
+    }
+
+    /** Stubs two tools; {@code execute} gets the document list of each. */
     @SuppressWarnings("unchecked")
+    private void stubTools(BiFunction<Integer, List<Document>, Answer<String>> execute) {
+        when(activeParametersCache.getCompiled(ParametersTargetType.SEARCH))
+                .thenReturn(CompiledParameters.of(Map.of()));
+        when(toolsManager.getToolsWithOwnDocuments(any(), any(), any(), any())).thenAnswer(invocation -> {
+            IntFunction<List<Document>> documentsOfTool = invocation.getArgument(1);
+            List<AbstractRagTool> tools = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                AbstractRagTool tool = mock(AbstractRagTool.class);
+                when(tool.execute(any(), any())).thenAnswer(execute.apply(i, documentsOfTool.apply(i)));
+                // read only for degraded tools
+                lenient().when(tool.getToolName()).thenReturn(i == 0 ? "first_tool" : "second_tool");
+                tools.add(tool);
+            }
+            return tools;
+        });
+    }
+
+    /** Two tools, each fills its list from its own corpus when executed. */
     private void stubTools(List<Document> firstToolDocs, List<Document> secondToolDocs) {
-        Parameters parameters = mock(Parameters.class);
-        when(parameters.getContent()).thenReturn("");
-        when(parametersRepository.loadActive(ParametersTargetType.SEARCH)).thenReturn(parameters);
-        when(toolsManager.getTools(any(), any(), any(), any())).thenAnswer(invocation -> {
-            List<Document> pool = invocation.getArgument(1);
-            AbstractRagTool first = mock(AbstractRagTool.class);
-            AbstractRagTool second = mock(AbstractRagTool.class);
-            when(first.execute(any(), any())).thenAnswer(call -> {
-                pool.addAll(firstToolDocs);
-                return "";
-            });
-            when(second.execute(any(), any())).thenAnswer(call -> {
-                pool.addAll(secondToolDocs);
-                return "";
-            });
-            return List.of(first, second);
+        stubTools((index, documents) -> call -> {
+            documents.addAll(index == 0 ? firstToolDocs : secondToolDocs);
+            return "";
         });
     }
 
@@ -56,7 +83,7 @@ class SearchServiceTest {
         stubTools(
                 List.of(doc("a", 0.9), doc("b", 0.5), doc("c", 0.1)),
                 List.of(doc("d", 0.8), doc("e", 0.4), doc("f", 0.2)));
-        SearchService service = new SearchService(parametersRepository, toolsManager);
+        SearchService service = newService(Duration.ofSeconds(10));
 
         List<Document> result = service.search("query", JmixVersion.V2, 4);
 
@@ -69,7 +96,7 @@ class SearchServiceTest {
         stubTools(
                 List.of(doc("a", 0.9), doc("b", 0.5)),
                 List.of(doc("c", 0.8)));
-        SearchService service = new SearchService(parametersRepository, toolsManager);
+        SearchService service = newService(Duration.ofSeconds(10));
 
         List<Document> result = service.search("query", JmixVersion.V2, null);
 
@@ -86,7 +113,7 @@ class SearchServiceTest {
         stubTools(
                 List.of(doc("l1", 0.9), doc("l2", 0.8), doc("l3", 0.7), doc("l4", 0.6), doc("l5", 0.3)),
                 List.of(doc("a1", 0.85), doc("a2", 0.2)));
-        SearchService service = new SearchService(parametersRepository, toolsManager);
+        SearchService service = newService(Duration.ofSeconds(10));
 
         List<Document> result = service.search("query", JmixVersion.V2, 3);
 
@@ -96,10 +123,73 @@ class SearchServiceTest {
     @Test
     void maxResultsAbovePoolSizeReturnsAll() {
         stubTools(List.of(doc("a", 0.9)), List.of(doc("b", 0.8)));
-        SearchService service = new SearchService(parametersRepository, toolsManager);
+        SearchService service = newService(Duration.ofSeconds(10));
 
         List<Document> result = service.search("query", JmixVersion.V2, 50);
 
         assertThat(result).extracting(Document::getId).containsExactly("a", "b");
     }
+
+    @Test
+    void toolsRunConcurrently() {
+        // each tool waits for the other one: sequential execution would time out
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        stubTools((index, documents) -> call -> {
+            bothRunning.countDown();
+            bothRunning.await(5, TimeUnit.SECONDS);
+            documents.add(index == 0 ? doc("a", 0.9) : doc("b", 0.8));
+            return "";
+        });
+        SearchService service = newService(Duration.ofSeconds(2));
+
+        SearchService.Result result = service.searchWithStatus("query", JmixVersion.V2, null);
+
+        assertThat(result.documents()).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(result.degradedTools()).isEmpty();
+    }
+
+    @Test
+    void toolMissingTheDeadlineIsReportedAndLeftOut() {
+        CountDownLatch released = new CountDownLatch(1);
+        stubTools((index, documents) -> call -> {
+            if (index == 0) {
+                documents.add(doc("fast", 0.5));
+            } else {
+                // found something, then blocks in the next stage
+                documents.add(doc("slow", 0.9));
+                released.await(5, TimeUnit.SECONDS);
+            }
+            return "";
+        });
+        SearchService service = newService(Duration.ofMillis(200));
+
+        SearchService.Result result;
+        try {
+            result = service.searchWithStatus("query", JmixVersion.V2, null);
+        } finally {
+            released.countDown();
+        }
+
+        assertThat(result.documents()).extracting(Document::getId).containsExactly("fast");
+        assertThat(result.degradedTools()).containsExactly("second_tool");
+        assertThat(meterRegistry.get("jmix.ai.search.degraded")
+                .tag("tool", "second_tool").tag("reason", "deadline").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void deadlineCountsFromTheStartOfEachTool() {
+        stubTools((index, documents) -> call -> {
+            Thread.sleep(200);
+            documents.add(doc(index == 0 ? "a" : "b", 0.5));
+            return "";
+        });
+        // one thread: the second tool waits for the first, longer than the deadline in total
+        SearchService service = newService(1, Duration.ofMillis(300));
+
+        SearchService.Result result = service.searchWithStatus("query", JmixVersion.V2, null);
+
+        assertThat(result.documents()).extracting(Document::getId).containsExactlyInAnyOrder("a", "b");
+        assertThat(result.degradedTools()).isEmpty();
+    }
 }
@@ -0,0 +1,53 @@
+package io.jmix.ai.backend.retrieval;
+
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class SpeculativeRetrievalTest {
+
+    @Test
+    void similarityIsTheWordOverlapIgnoringCaseAndPunctuation() {
+        assertThat(SpeculativeRetrieval.similarity("How to use DataManager?", "how to use datamanager"))
+                .isEqualTo(1.0);
+        assertThat(SpeculativeRetrieval.similarity("DataManager load", "DataManager save"))
+                .isEqualTo(1.0 / 3);
+        assertThat(SpeculativeRetrieval.similarity("", "DataManager")).isZero();
+    }
+
+    @Test
+    void doesNotSpeculateUnlessEnabled() {
+        SpeculativeRetrieval speculativeRetrieval = new SpeculativeRetrieval(1, new SimpleMeterRegistry());
+        AbstractRagTool tool = mock(AbstractRagTool.class);
+
+        try {
+            speculativeRetrieval.start(CompiledParameters.of(Map.of()), List.of(tool), "question").run();
+
+            verifyNoInteractions(tool);
+        } finally {
+            speculativeRetrieval.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsMinSimilarityOutsideZeroToOne() {
+        SpeculativeRetrieval speculativeRetrieval = new SpeculativeRetrieval(1, new SimpleMeterRegistry());
+        CompiledParameters parameters = CompiledParameters.of(Map.of(
+                "tools", Map.of("speculative", Map.of("enabled", true, "minSimilarity", 1.5))));
+
+        try {
+            assertThatThrownBy(() -> speculativeRetrieval.start(parameters, List.of(), "question"))
+                    .hasMessageContaining("tools.speculative.minSimilarity");
+        } finally {
+            speculativeRetrieval.shutdown();
+        }
+    }
+}
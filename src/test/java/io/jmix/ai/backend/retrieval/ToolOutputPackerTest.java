@@ -0,0 +1,63 @@
+package io.jmix.ai.backend.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolOutputPackerTest {
+
+    private static Document doc(String id, String text) {
+        return Document.builder().id(id).text(text).build();
+    }
+
+    @Test
+    void keepsEverythingThatFits() {
+        List<Document> documents = List.of(doc("a", "a".repeat(400)), doc("b", "b".repeat(400)));
+
+        ToolOutputPacker.Packed packed = ToolOutputPacker.pack(documents, 1000);
+
+        assertThat(packed.documents()).containsExactlyElementsOf(documents);
+        assertThat(packed.joined()).isEqualTo("a".repeat(400) + "\n\n" + "b".repeat(400));
+        assertThat(packed.savedTokens()).isZero();
+    }
+
+    @Test
+    void trimsTheFirstDocumentThatDoesNotFitAtASectionBoundary() {
+        String second = "x".repeat(1200) + "\n\n" + "y".repeat(2000);
+        List<Document> documents = List.of(doc("a", "a".repeat(400)), doc("b", second), doc("c", "c".repeat(40)));
+
+        ToolOutputPacker.Packed packed = ToolOutputPacker.pack(documents, 500);
+
+        assertThat(packed.documents()).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(packed.texts().get(1)).isEqualTo("x".repeat(1200) + ToolOutputPacker.TRIMMED_MARKER);
+        assertThat(packed.usedTokens()).isLessThanOrEqualTo(500);
+        assertThat(packed.savedTokens()).isEqualTo(ToolOutputPacker.estimateTokens(second) + 10
+                - ToolOutputPacker.estimateTokens(packed.texts().get(1)));
+    }
+
+    @Test
+    void dropsDocumentsWhenTooLittleBudgetIsLeftToTrim() {
+        List<Document> documents = List.of(doc("a", "a".repeat(400)), doc("b", "b".repeat(4000)));
+
+        ToolOutputPacker.Packed packed = ToolOutputPacker.pack(documents, 150);
+
+        assertThat(packed.documents()).extracting(Document::getId).containsExactly("a");
+        assertThat(packed.savedTokens()).isEqualTo(1000);
+    }
+
+    @Test
+    void turnBudgetIsSharedAndReturnsUnusedTokens() {
+        ToolOutputPacker.TurnBudget budget = new ToolOutputPacker.TurnBudget(1000);
+
+        int first = budget.reserve(800);
+        int second = budget.reserve(800);
+        budget.release(first - 300);
+
+        assertThat(first).isEqualTo(800);
+        assertThat(second).isEqualTo(200);
+        assertThat(budget.remaining()).isEqualTo(500);
+    }
+}
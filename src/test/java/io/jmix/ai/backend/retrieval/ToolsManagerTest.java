@@ -0,0 +1,54 @@
+package io.jmix.ai.backend.retrieval;
+
+import io.jmix.ai.backend.entity.JmixVersion;
+import io.jmix.ai.backend.metrics.PipelineMetrics;
+import io.jmix.ai.backend.parameters.CompiledParameters;
+import io.jmix.ai.backend.vectorstore.MultiCorpusVectorSearch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ToolsManagerTest {
+
+    private final ToolsManager toolsManager = new ToolsManager(mock(Reranker.class),
+            new PipelineMetrics(new SimpleMeterRegistry()), mock(MultiCorpusVectorSearch.class), true,
+            Duration.ofMillis(5));
+
+    private final CompiledParameters parameters = CompiledParameters.of(Map.of(
+            "tools", Map.of(
+                    "documentation_retriever", Map.of("description", "docs", "topReranked", 3),
+                    "uisamples_retriever", Map.of("enabled", false),
+                    "trainings_retriever", Map.of("enabled", false),
+                    "javaapi_retriever", Map.of("enabled", true, "description", "api", "topK", 5))));
+
+    private List<AbstractRagTool> tools(JmixVersion version) {
+        return toolsManager.getTools(parameters, new ArrayList<>(), mock(ToolEventListener.class), version);
+    }
+
+    @Test
+    void createsEnabledToolsOnly() {
+        assertThat(tools(JmixVersion.V2))
+                .extracting(tool -> tool.getToolCallback().getToolDefinition().name())
+                .containsExactly("documentation_retriever", "javaapi_retriever");
+    }
+
+    @Test
+    void reusesToolDefinitionsAcrossRequests() {
+        List<AbstractRagTool> first = tools(JmixVersion.V2);
+        List<AbstractRagTool> second = tools(JmixVersion.V3);
+
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+        assertThat(second.get(0).getToolCallback().getToolDefinition())
+                .isSameAs(first.get(0).getToolCallback().getToolDefinition());
+        assertThat(second.get(1).getToolCallback().getToolDefinition().inputSchema())
+                .isSameAs(first.get(1).getToolCallback().getToolDefinition().inputSchema())
+                .doesNotContain("maxResults");
+    }
+}
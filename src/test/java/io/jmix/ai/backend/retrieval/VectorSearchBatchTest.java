@@ -0,0 +1,74 @@
+package io.jmix.ai.backend.retrieval;
+
+import io.jmix.ai.backend.vectorstore.MultiCorpusVectorSearch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VectorSearchBatchTest {
+
+    private final MultiCorpusVectorSearch search = mock(MultiCorpusVectorSearch.class);
+    private final ExecutorService tools = Executors.newFixedThreadPool(3);
+
+    @AfterEach
+    void tearDown() {
+        tools.shutdownNow();
+    }
+
+    private static MultiCorpusVectorSearch.CorpusQuery query(String type) {
+        return new MultiCorpusVectorSearch.CorpusQuery("query", new FilterExpressionBuilder().eq("type", type).build(),
+                10, 0.0);
+    }
+
+    /** Answers each corpus query with one document named after its position in the statement. */
+    private void stubSearch() {
+        when(search.search(anyList())).thenAnswer(invocation -> {
+            List<MultiCorpusVectorSearch.CorpusQuery> queries = invocation.getArgument(0);
+            return queries.stream()
+                    .map(query -> List.of(Document.builder().id(query.filter().toString()).text("t").build()))
+                    .toList();
+        });
+    }
+
+    @Test
+    void searchesOfAllToolsRunAsOneStatement() {
+        stubSearch();
+        // a long window: only a complete batch can run in time
+        VectorSearchBatch batch = new VectorSearchBatch(search, 3, TimeUnit.SECONDS.toNanos(30));
+
+        List<CompletableFuture<List<Document>>> results = List.of("docs", "uisamples", "trainings").stream()
+                .map(type -> CompletableFuture.supplyAsync(() -> batch.search(query(type)), tools))
+                .toList();
+
+        // every tool gets the documents of its own corpus
+        assertThat(results.get(0).join()).singleElement().extracting(Document::getId).asString().contains("docs");
+        assertThat(results.get(1).join()).singleElement().extracting(Document::getId).asString().contains("uisamples");
+        assertThat(results.get(2).join()).singleElement().extracting(Document::getId).asString().contains("trainings");
+        verify(search, times(1)).search(anyList());
+    }
+
+    @Test
+    void aToolCalledAloneRunsAfterTheWindow() {
+        stubSearch();
+        VectorSearchBatch batch = new VectorSearchBatch(search, 3, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(batch.search(query("docs"))).hasSize(1);
+        assertThat(batch.search(query("uisamples"))).hasSize(1);
+
+        verify(search, times(2)).search(anyList());
+    }
+}
@@ -0,0 +1,142 @@
+package io.jmix.ai.backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControlTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+
+    private AdmissionControl newControl(int maxConcurrent, int maxQueue, int requestsPerMinute, int burst) {
+        return new AdmissionControl(meterRegistry, true, maxConcurrent, maxQueue, Duration.ofMillis(50),
+                requestsPerMinute, burst, 100, clock::get);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("jmix.ai.admission.rejected").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void rateLimitsEachClientSeparately() {
+        AdmissionControl control = newControl(10, 0, 60, 2);
+
+        control.acquire("ip:1").release();
+        control.acquire("ip:1").release();
+        assertThatThrownBy(() -> control.acquire("ip:1"))
+                .isInstanceOfSatisfying(AdmissionControl.Rejected.class, e -> {
+                    assertThat(e.getReason()).isEqualTo("rate-limit");
+                    // one request per second
+                    assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+                });
+        control.acquire("ip:2").release();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        control.acquire("ip:1").release();
+        assertThat(rejected("rate-limit")).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWhenAllSlotsAreTakenAndTheQueueIsFull() {
+        AdmissionControl control = newControl(1, 0, 600, 10);
+
+        AdmissionControl.Permit permit = control.acquire("ip:1");
+        assertThat(control.getActive()).isEqualTo(1);
+        assertThatThrownBy(() -> control.acquire("ip:2"))
+                .isInstanceOfSatisfying(AdmissionControl.Rejected.class,
+                        e -> assertThat(e.getReason()).isEqualTo("queue-full"));
+
+        permit.release();
+        permit.release();
+        assertThat(control.getActive()).isZero();
+        control.acquire("ip:2").release();
+        assertThat(rejected("queue-full")).isEqualTo(1);
+    }
+
+    @Test
+    void queuedRequestIsRejectedAfterTheMaxWait() {
+        AdmissionControl control = newControl(1, 1, 600, 10);
+
+        AdmissionControl.Permit permit = control.acquire("ip:1");
+        assertThatThrownBy(() -> control.acquire("ip:2"))
+                .isInstanceOfSatisfying(AdmissionControl.Rejected.class,
+                        e -> assertThat(e.getReason()).isEqualTo("queue-timeout"));
+        assertThat(control.getQueued()).isZero();
+        permit.release();
+        assertThat(rejected("queue-timeout")).isEqualTo(1);
+    }
+
+    @Test
+    void forgetsTheLeastRecentlySeenClientWhenTooManyAreTracked() {
+        AdmissionControl control = new AdmissionControl(meterRegistry, true, 10, 0, Duration.ofMillis(50),
+                60, 1, 2, clock::get);
+        control.acquire("ip:1").release();
+        control.acquire("ip:2").release();
+        assertThatThrownBy(() -> control.acquire("ip:1")).isInstanceOf(AdmissionControl.Rejected.class);
+
+        // clients that never wait long enough to refill must not grow the map either
+        control.acquire("ip:3").release();
+
+        assertThat(control.trackedClients()).isEqualTo(2);
+        // ip:2 was forgotten, ip:1 kept its empty bucket
+        assertThatThrownBy(() -> control.acquire("ip:1")).isInstanceOf(AdmissionControl.Rejected.class);
+        control.acquire("ip:2").release();
+    }
+
+    @Test
+    void filterAnswers429WithRetryAfter() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(newControl(10, 0, 60, 1));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/chat");
+        request.setRemoteAddr("10.0.0.1");
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request, first, new MockFilterChain());
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(request, second, new MockFilterChain());
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(second.getStatus()).isEqualTo(429);
+        assertThat(second.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void filterIgnoresTheApiKeyHeader() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(newControl(10, 0, 60, 1));
+        MockHttpServletResponse last = new MockHttpServletResponse();
+        for (String key : new String[]{"a", "b"}) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/chat");
+            request.setRemoteAddr("10.0.0.1");
+            request.addHeader("X-Api-Key", key);
+            last = new MockHttpServletResponse();
+            filter.doFilter(request, last, new MockFilterChain());
+        }
+
+        assertThat(last.getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void streamKeepsItsSlotUntilTheAsyncResponseCompletes() throws Exception {
+        AdmissionControl control = newControl(10, 0, 600, 10);
+        AdmissionControlFilter filter = new AdmissionControlFilter(control);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/chat/stream");
+        request.setAsyncSupported(true);
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> req.startAsync());
+        assertThat(control.getActive()).isEqualTo(1);
+
+        request.getAsyncContext().complete();
+        assertThat(control.getActive()).isZero();
+    }
+}
@@ -0,0 +1,112 @@
+package io.jmix.ai.backend.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", meterRegistry);
+
+    private double count(String role) {
+        return meterRegistry.get("jmix.ai.requests.coalesced").tag("role", role).counter().count();
+    }
+
+    @Test
+    void concurrentCallsWithTheSameKeyRunOnce() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<SingleFlight.Shared<String>> leader = executor.submit(() -> flight.call("q", () -> {
+                executions.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return "answer";
+            }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<Future<SingleFlight.Shared<String>>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                followers.add(executor.submit(() -> flight.call("q", () -> {
+                    executions.incrementAndGet();
+                    return "own answer";
+                })));
+            }
+            // followers are attached once they are counted
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (count("follower") < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Shared<>("answer", true));
+            for (Future<SingleFlight.Shared<String>> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Shared<>("answer", false));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(executions).hasValue(1);
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(count("follower")).isEqualTo(3);
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    @Test
+    void keyIsReleasedWhenTheLeaderFinishes() {
+        assertThat(flight.call("q", () -> "first").value()).isEqualTo("first");
+        assertThat(flight.call("q", () -> "second").value()).isEqualTo("second");
+        assertThat(count("leader")).isEqualTo(2);
+    }
+
+    @Test
+    void followersGetTheLeaderFailure() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> leader = executor.submit(() -> flight.call("q", () -> {
+                leaderStarted.countDown();
+                await(release);
+                throw new IllegalStateException("model unavailable");
+            }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<SingleFlight.Shared<String>> follower = executor.submit(() -> flight.call("q", () -> "own answer"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (count("follower") < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("model unavailable");
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class)
+                    .hasRootCauseMessage("model unavailable");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
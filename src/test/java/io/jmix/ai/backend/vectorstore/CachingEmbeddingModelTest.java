@@ -0,0 +1,59 @@
+package io.jmix.ai.backend.vectorstore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingEmbeddingModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EmbeddingModel delegate = mock(EmbeddingModel.class);
+
+    private double lookups(String result) {
+        return meterRegistry.get("jmix.ai.embedding.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    void embedsEachNormalizedTextOnce() {
+        when(delegate.embed("how to add a button")).thenReturn(new float[]{1f, 2f});
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, "text-embedding-3-small", 1_000_000,
+                meterRegistry);
+
+        float[] first = model.embed("how to add  a button");
+        first[0] = 42f;
+        float[] second = model.embed("  how to add \n a   button ");
+
+        assertThat(second).containsExactly(1f, 2f);
+        verify(delegate, times(1)).embed("how to add a button");
+        assertThat(lookups("hit")).isEqualTo(1);
+        assertThat(lookups("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntriesBeyondTheSize() {
+        when(delegate.embed("a")).thenReturn(new float[100]);
+        when(delegate.embed("b")).thenReturn(new float[100]);
+        when(delegate.embed("c")).thenReturn(new float[100]);
+        // room for two entries of 100 floats
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, "m", 1_100, meterRegistry);
+
+        model.embed("a");
+        model.embed("b");
+        model.embed("a");
+        model.embed("c");
+
+        assertThat(model.size()).isEqualTo(2);
+        assertThat(model.sizeBytes()).isLessThanOrEqualTo(1_100);
+        model.embed("a");
+        model.embed("b");
+        verify(delegate, times(1)).embed("a");
+        verify(delegate, times(2)).embed("b");
+        assertThat(meterRegistry.get("jmix.ai.embedding.cache.evictions").counter().count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,32 @@
+package io.jmix.ai.backend.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnFilterExpressionConverterTest {
+
+    private final ColumnFilterExpressionConverter converter = new ColumnFilterExpressionConverter();
+    private final FilterExpressionBuilder fb = new FilterExpressionBuilder();
+
+    @Test
+    void targetsTheTypedColumnsWithInlinedLiterals() {
+        assertThat(converter.convertExpression(
+                fb.and(fb.eq("type", "docs-snippets"), fb.eq("jmixVersion", "v2")).build()))
+                .isEqualTo("(type = 'docs-snippets' AND jmix_version = 'v2')");
+        assertThat(converter.convertExpression(fb.in("source", "a.html", "o'b.html").build()))
+                .isEqualTo("source IN ('a.html', 'o''b.html')");
+        assertThat(converter.convertExpression(fb.ne("type", "trainings").build()))
+                .isEqualTo("type <> 'trainings'");
+    }
+
+    @Test
+    void otherAttributesFallBackToTheJsonPath() {
+        assertThat(converter.convertExpression(
+                fb.and(fb.eq("type", "docs"), fb.eq("topic", "ui")).build()))
+                .startsWith("(type = 'docs' AND metadata::jsonb @@ '")
+                .endsWith("'::jsonpath)")
+                .contains("topic");
+    }
+}
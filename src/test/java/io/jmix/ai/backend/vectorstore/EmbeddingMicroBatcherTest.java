@@ -0,0 +1,93 @@
+package io.jmix.ai.backend.vectorstore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingMicroBatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EmbeddingModel delegate = mock(EmbeddingModel.class);
+    // one thread per caller: the callers of a batch block until it is sent
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+    private EmbeddingMicroBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        callers.shutdownNow();
+    }
+
+    /** Embeds each text as a vector holding its length. */
+    private void stubLengthEmbeddings() {
+        when(delegate.embed(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[]{text.length()}).toList();
+        });
+    }
+
+    @Test
+    void concurrentCallersShareOneCallAndGetTheirOwnVectors() {
+        stubLengthEmbeddings();
+        // a long window: only a full batch can be sent in time
+        batcher = new EmbeddingMicroBatcher(true, Duration.ofSeconds(30), 3, 2, meterRegistry);
+        EmbeddingModel model = batcher.wrap(delegate);
+
+        List<CompletableFuture<float[]>> results = List.of("a", "bb", "ccc").stream()
+                .map(text -> CompletableFuture.supplyAsync(() -> model.embed(text), callers))
+                .toList();
+
+        assertThat(results).extracting(CompletableFuture::join)
+                .containsExactly(new float[]{1f}, new float[]{2f}, new float[]{3f});
+        verify(delegate, times(1)).embed(anyList());
+        assertThat(meterRegistry.get("jmix.ai.embedding.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void sendsAnIncompleteBatchAfterTheWindow() {
+        stubLengthEmbeddings();
+        batcher = new EmbeddingMicroBatcher(true, Duration.ofMillis(10), 64, 2, meterRegistry);
+
+        assertThat(batcher.wrap(delegate).embed("abcd")).containsExactly(4f);
+    }
+
+    @Test
+    void failedBatchFailsEveryCaller() {
+        when(delegate.embed(anyList())).thenThrow(new IllegalStateException("rate limited"));
+        batcher = new EmbeddingMicroBatcher(true, Duration.ofSeconds(30), 2, 2, meterRegistry);
+        EmbeddingModel model = batcher.wrap(delegate);
+
+        List<CompletableFuture<float[]>> results = List.of("a", "b").stream()
+                .map(text -> CompletableFuture.supplyAsync(() -> model.embed(text), callers))
+                .toList();
+
+        for (CompletableFuture<float[]> result : results) {
+            assertThatThrownBy(result::join)
+                    .isInstanceOf(CompletionException.class)
+                    .hasRootCauseMessage("rate limited");
+        }
+    }
+
+    @Test
+    void disabledBatcherReturnsTheDelegate() {
+        batcher = new EmbeddingMicroBatcher(false, Duration.ofMillis(5), 64, 1, meterRegistry);
+
+        assertThat(batcher.wrap(delegate)).isSameAs(delegate);
+    }
+}
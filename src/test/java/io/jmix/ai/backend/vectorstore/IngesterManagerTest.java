@@ -23,6 +23,9 @@ class IngesterManagerTest {
     @Mock
     private Ingester anotherIngester;
 
+    @Mock
+    private CorpusGeneration corpusGeneration;
+
     private IngesterManager ingesterManager;
 
     @BeforeEach
@@ -30,7 +33,7 @@ class IngesterManagerTest {
         lenient().when(docsIngester.getType()).thenReturn("docs");
         lenient().when(anotherIngester.getType()).thenReturn("another");
 
-        ingesterManager = new IngesterManager(Arrays.asList(docsIngester, anotherIngester));
+        ingesterManager = new IngesterManager(Arrays.asList(docsIngester, anotherIngester), corpusGeneration);
     }
 
     @Test
@@ -55,6 +58,7 @@ class IngesterManagerTest {
 
         verify(docsIngester).updateAll();
         verify(anotherIngester).updateAll();
+        verify(corpusGeneration).bump();
         assertThat(result).contains(List.of("docs", "another"));
     }
 
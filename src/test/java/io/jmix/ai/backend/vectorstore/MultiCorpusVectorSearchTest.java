@@ -0,0 +1,98 @@
+package io.jmix.ai.backend.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MultiCorpusVectorSearchTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final MultiCorpusVectorSearch search = new MultiCorpusVectorSearch(jdbcTemplate, embeddingModel);
+    private final FilterExpressionBuilder fb = new FilterExpressionBuilder();
+
+    @Test
+    void searchesAllCorporaInOneStatementAndGroupsTheResults() throws Exception {
+        when(embeddingModel.embed("query")).thenReturn(new float[]{0.5f, 0.25f});
+        ResultSet row = mock(ResultSet.class);
+        when(row.getInt("idx")).thenReturn(1);
+        when(row.getString("id")).thenReturn("doc-1");
+        when(row.getString("content")).thenReturn("text");
+        when(row.getString("metadata")).thenReturn("{\"type\": \"uisamples\"}");
+        when(row.getDouble("distance")).thenReturn(0.25);
+        Object[][] captured = new Object[2][];
+        doAnswer(invocation -> {
+            captured[0] = new Object[]{invocation.getArgument(0)};
+            // the varargs are expanded into the arguments of the invocation
+            captured[1] = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        List<List<Document>> results = search.search(List.of(
+                new MultiCorpusVectorSearch.CorpusQuery("query", fb.eq("type", "docs").build(), 10, 0.3),
+                new MultiCorpusVectorSearch.CorpusQuery("query", fb.eq("type", "uisamples").build(), 5, 0.0)));
+
+        assertThat((String) captured[0][0]).isEqualTo(
+                "(SELECT 0 AS idx, id, content, metadata, embedding <=> ?::vector AS distance " +
+                        "FROM vector_store WHERE type = 'docs' ORDER BY distance LIMIT ?)" +
+                        " UNION ALL " +
+                        "(SELECT 1 AS idx, id, content, metadata, embedding <=> ?::vector AS distance " +
+                        "FROM vector_store WHERE type = 'uisamples' ORDER BY distance LIMIT ?)" +
+                        " ORDER BY idx, distance");
+        assertThat(captured[1]).containsExactly("[0.5,0.25]", 10, "[0.5,0.25]", 5);
+        // the same text is embedded once for all corpora
+        verify(embeddingModel, times(1)).embed("query");
+
+        assertThat(results.get(0)).isEmpty();
+        assertThat(results.get(1)).singleElement().satisfies(document -> {
+            assertThat(document.getId()).isEqualTo("doc-1");
+            assertThat(document.getScore()).isEqualTo(0.75);
+            assertThat(document.getMetadata()).containsEntry("type", "uisamples").containsEntry("distance", 0.25f);
+        });
+    }
+
+    @Test
+    void dropsRowsBelowTheSimilarityThreshold() throws Exception {
+        when(embeddingModel.embed("query")).thenReturn(new float[]{1f});
+        ResultSet row = mock(ResultSet.class);
+        when(row.getInt("idx")).thenReturn(0);
+        when(row.getDouble("distance")).thenReturn(0.8);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        List<List<Document>> results = search.search(List.of(
+                new MultiCorpusVectorSearch.CorpusQuery("query", fb.eq("type", "docs").build(), 10, 0.3)));
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).isEmpty();
+    }
+
+    @Test
+    void noQueriesRunNoStatement() {
+        assertThat(search.search(List.of())).isEmpty();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -53,9 +53,9 @@ class VectorStoreRepositoryTest {
         assertThat(result).isSameAs(expected);
         verify(jdbcTemplate).query(
                 eq("SELECT id, content, metadata FROM vector_store " +
-                        "WHERE metadata::jsonb ->> 'type' = ? " +
-                        "AND metadata::jsonb ->> 'source' = ? " +
-                        "AND metadata::jsonb ->> 'jmixVersion' = ?"),
+                        "WHERE type = ? " +
+                        "AND source = ? " +
+                        "AND jmix_version = ?"),
                 any(RowMapper.class),
                 eq(CorpusType.DOCS_SNIPPETS), eq("search/search-properties.html"), eq(version.getId()));
     }
@@ -73,9 +73,9 @@ class VectorStoreRepositoryTest {
         assertThat(result).isSameAs(expected);
         verify(jdbcTemplate).query(
                 eq("SELECT id, content, metadata FROM vector_store " +
-                        "WHERE metadata::jsonb ->> 'type' = ? " +
-                        "AND metadata::jsonb ->> 'source' = ? " +
-                        "AND metadata::jsonb ->> 'jmixVersion' IS NULL"),
+                        "WHERE type = ? " +
+                        "AND source = ? " +
+                        "AND jmix_version IS NULL"),
                 any(RowMapper.class), eq("trainings"), eq("getting-started"));
     }
 